@@ -0,0 +1,55 @@
+package Acceleration;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * tests all four children with 256 bit vectors of the incubating vector api
+ * lives in the optional source root src-vector, so src compiles with plain javac,
+ * needs --add-modules jdk.incubator.vector to compile and run,
+ * WideBVH only loads this class if it was compiled and the module is present
+ * a ray lying exactly in a slab plane gives 0 * infinity = NaN for that plane, the lanewise min and max would
+ * spread it and count the child as miss, so NaN is ignored like in ScalarWideBoxTest and BoundingBox.intersect
+ */
+public class VectorWideBoxTest implements WideBoxTest {
+
+    /**
+     * four doubles per vector, one lane per child
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+
+    /**
+     * replaces NaN lanes, so they leave that bound of the interval open and do not restrict near or far
+     * @param t t of the planes of one slab of every child
+     * @param open -infinity for the min planes, +infinity for the max planes
+     * @return t without NaN
+     */
+    private static DoubleVector open(final DoubleVector t, final double open) {
+        return t.blend(open, t.test(VectorOperators.IS_NAN));
+    }
+
+    @Override
+    public int intersect(final double[] bounds, final int base, final double ox, final double oy, final double oz,
+                         final double invX, final double invY, final double invZ, final double tMax, final double[] tNear) {
+        DoubleVector t0 = open(DoubleVector.fromArray(SPECIES, bounds, base).sub(ox).mul(invX), Double.NEGATIVE_INFINITY);
+        DoubleVector t1 = open(DoubleVector.fromArray(SPECIES, bounds, base + 12).sub(ox).mul(invX), Double.POSITIVE_INFINITY);
+        DoubleVector near = t0.min(t1).max(0.0);
+        DoubleVector far = t0.max(t1).min(tMax);
+
+        t0 = open(DoubleVector.fromArray(SPECIES, bounds, base + 4).sub(oy).mul(invY), Double.NEGATIVE_INFINITY);
+        t1 = open(DoubleVector.fromArray(SPECIES, bounds, base + 16).sub(oy).mul(invY), Double.POSITIVE_INFINITY);
+        near = near.max(t0.min(t1));
+        far = far.min(t0.max(t1));
+
+        t0 = open(DoubleVector.fromArray(SPECIES, bounds, base + 8).sub(oz).mul(invZ), Double.NEGATIVE_INFINITY);
+        t1 = open(DoubleVector.fromArray(SPECIES, bounds, base + 20).sub(oz).mul(invZ), Double.POSITIVE_INFINITY);
+        near = near.max(t0.min(t1));
+        far = far.min(t0.max(t1));
+
+        final VectorMask<Double> hit = near.compare(VectorOperators.LE, far);
+        near.intoArray(tNear, 0);
+        return (int) hit.toLong();
+    }
+}
@@ -0,0 +1,91 @@
+package Acceleration;
+
+import Raytracer.Hit;
+import Raytracer.HitRecord;
+import Raytracer.Ray;
+import Raytracer.RayPacket;
+
+/**
+ * spatial data structure answering closest hit queries over bounded geometries
+ * World and Model delegate their hit calculation to an accelerator
+ * which one fits best depends on the scene, compare them with dump()
+ */
+public interface Accelerator {
+
+    /**
+     * calculation of closest hit point among all primitives
+     * returns null if no primitive is hit
+     * @param r incoming ray
+     * @return closest hit
+     */
+    default Hit hit(final Ray r) {
+        final HitRecord rec = new HitRecord();
+        return intersect(r, 0, Double.MAX_VALUE, rec) ? rec.toHit(r) : null;
+    }
+
+    /**
+     * allocation free closest hit query, primitives are asked through Geometry.intersect
+     * and only the final closest hit becomes a Hit through rec.toHit
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far, written only if true is returned
+     * @return true if a primitive is hit between tMin and tMax
+     */
+    boolean intersect(Ray r, double tMin, double tMax, HitRecord rec);
+
+    /**
+     * closest hits of a ray packet, kept in packet.hits where closer than the hits found so far
+     * traces every ray on its own unless an accelerator overrides it
+     * @param packet rays to trace
+     */
+    default void hit(final RayPacket packet) {
+        final HitRecord rec = packet.record;
+        for (int i = 0; i < packet.size(); i++) {
+            if (intersect(packet.rays[i], 0, packet.tMax(i), rec)) packet.offer(i, rec.toHit(packet.rays[i]));
+        }
+    }
+
+    /**
+     * any hit query used by shadow rays
+     * traversal stops at the first primitive hit before tMax
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if a primitive is hit before tMax
+     */
+    boolean occluded(Ray r, double tMax);
+
+    /**
+     * @return bounds of all primitives
+     */
+    BoundingBox bounds();
+
+    /**
+     * @return number of primitive references, primitives referenced from more than one node count more than once
+     */
+    int size();
+
+    /**
+     * @return number of nodes or cells
+     */
+    int nodeCount();
+
+    /**
+     * estimated size of the structure without the primitives themselves
+     * @return memory in bytes
+     */
+    long memoryBytes();
+
+    /**
+     * @return tests counted by all hit calls so far
+     */
+    AcceleratorStats statistics();
+
+    /**
+     * @return one line with node count, memory and average tests per ray
+     */
+    default String dump() {
+        return getClass().getSimpleName() + ": " + size() + " primitives, " + nodeCount() + " nodes, "
+                + String.format("%.1f", memoryBytes() / 1024.0) + "KB, " + statistics();
+    }
+}
@@ -0,0 +1,98 @@
+package Acceleration;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counts rays and tests of an accelerator
+ * hit calls count locally and record once per ray, so rendering threads do not contend
+ * off unless the jvm runs with -Draytracer.stats=true, record is called for every ray of every render
+ */
+public class AcceleratorStats {
+
+    /**
+     * true if counters are updated, constant so the jit removes the calls of record otherwise
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("raytracer.stats");
+
+    /**
+     * traced rays
+     */
+    private final LongAdder rays = new LongAdder();
+
+    /**
+     * box, cell or node tests
+     */
+    private final LongAdder nodeTests = new LongAdder();
+
+    /**
+     * primitive intersection tests
+     */
+    private final LongAdder primitiveTests = new LongAdder();
+
+    /**
+     * records the tests of one ray
+     * @param nodes box, cell or node tests
+     * @param primitives primitive intersection tests
+     */
+    public void record(final int nodes, final int primitives) {
+        if (!ENABLED) return;
+        rays.increment();
+        nodeTests.add(nodes);
+        primitiveTests.add(primitives);
+    }
+
+    /**
+     * records the tests of a ray packet, shared node tests are spread over its rays
+     * @param rays rays of packet
+     * @param nodes box, cell or node tests
+     * @param primitives primitive intersection tests
+     */
+    public void record(final int rays, final int nodes, final int primitives) {
+        if (!ENABLED) return;
+        this.rays.add(rays);
+        nodeTests.add(nodes);
+        primitiveTests.add(primitives);
+    }
+
+    /**
+     * resets all counters
+     */
+    public void reset() {
+        rays.reset();
+        nodeTests.reset();
+        primitiveTests.reset();
+    }
+
+    /**
+     * @return traced rays, 0 if counting is disabled
+     */
+    public long rays() {
+        return rays.sum();
+    }
+
+    /**
+     * @return average box, cell or node tests per ray
+     */
+    public double averageNodeTests() {
+        final long n = rays.sum();
+        return n == 0 ? 0 : (double) nodeTests.sum() / n;
+    }
+
+    /**
+     * @return average primitive intersection tests per ray
+     */
+    public double averagePrimitiveTests() {
+        final long n = rays.sum();
+        return n == 0 ? 0 : (double) primitiveTests.sum() / n;
+    }
+
+    @Override
+    public String toString() {
+        if (!ENABLED) return "AcceleratorStats{disabled, run with -Draytracer.stats=true}";
+        return "AcceleratorStats{" +
+                "rays=" + rays() +
+                ", nodeTestsPerRay=" + String.format("%.2f", averageNodeTests()) +
+                ", primitiveTestsPerRay=" + String.format("%.2f", averagePrimitiveTests()) +
+                '}';
+    }
+}
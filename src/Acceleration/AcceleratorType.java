@@ -0,0 +1,57 @@
+package Acceleration;
+
+import Geometry.Geometry;
+
+import java.util.List;
+
+/**
+ * available accelerators
+ */
+public enum AcceleratorType {
+
+    /**
+     * bounding volume hierarchy, good default for most scenes
+     */
+    BVH,
+
+    /**
+     * linear bounding volume hierarchy, builds in a fraction of the time, for scenes that change often
+     */
+    LBVH,
+
+    /**
+     * linear bounding volume hierarchy with optimized treelets, still fast to build and closer to BVH in traversal
+     */
+    LBVH_TREELETS,
+
+    /**
+     * uniform grid traversed with 3D-DDA, good for evenly distributed primitives of similar size
+     */
+    GRID,
+
+    /**
+     * kd-tree with SAH split planes, good for static meshes
+     */
+    KD_TREE;
+
+    /**
+     * builds an accelerator of this type
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     * @return accelerator
+     */
+    public Accelerator create(final List<? extends Geometry> items) {
+        switch (this) {
+            case GRID:
+                return new UniformGrid(items);
+            case KD_TREE:
+                return new KdTree(items);
+            case LBVH:
+                return new Acceleration.BVH(items, false);
+            case LBVH_TREELETS:
+                return new Acceleration.BVH(items, true);
+            default:
+                return new Acceleration.BVH(items);
+        }
+    }
+}
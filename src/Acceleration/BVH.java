@@ -0,0 +1,796 @@
+package Acceleration;
+
+import Geometry.Geometry;
+import Raytracer.HitRecord;
+import Raytracer.Ray;
+import Raytracer.RayPacket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * bounding volume hierarchy over bounded geometries
+ * nodes are stored in depth first order in flat primitive arrays,
+ * the left child of an inner node directly follows its parent
+ * closest hit traversal visits the nearer child first and skips
+ * every node that lies behind the closest hit found so far
+ */
+public class BVH implements Accelerator {
+
+    /**
+     * maximal depth of trees built with a SAH builder
+     */
+    static final int MAX_DEPTH = 64;
+
+    /**
+     * leaves a packet visits before it may fall back to single rays
+     */
+    private static final int DIVERGENCE_LEAVES = 4;
+
+    /**
+     * node stack of one thread
+     * traversal only works on these arrays and does not allocate
+     */
+    private static final class TraversalStack {
+        final int[] nodes;
+        final double[] tNear;
+        final int[] firstRay;
+        int boxTests;
+        int primitiveTests;
+
+        TraversalStack(final int size) {
+            nodes = new int[size];
+            tNear = new double[size];
+            firstRay = new int[size];
+        }
+    }
+
+    /**
+     * primitives ordered so that every leaf references a continuous range
+     */
+    final Geometry[] primitives;
+
+    /**
+     * six values per node: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    final double[] nodeBounds;
+
+    /**
+     * two values per node
+     * leaf: offset of first primitive and amount of primitives
+     * inner node: index of right child and 0
+     */
+    final int[] nodeData;
+
+    /**
+     * number of nodes in the tree
+     */
+    final int nodeCount;
+
+    /**
+     * depth of deepest leaf, linear builders are not limited to MAX_DEPTH
+     */
+    final int depth;
+
+    /**
+     * build time in milliseconds per million primitives
+     */
+    private final double buildMillisPerMillionPrimitives;
+
+    /**
+     * surface area heuristic cost of the tree directly after building
+     */
+    private final double builtCost;
+
+    /**
+     * sum of surface area times traversal or intersection cost over all nodes
+     * kept up to date by refit
+     */
+    private double weightedArea;
+
+    /**
+     * parent of every node, -1 for root, created on first refit
+     */
+    private int[] parents;
+
+    /**
+     * leaves referencing every primitive, created on first refit
+     * primitives cut by spatial splits are referenced from more than one leaf
+     */
+    private IdentityHashMap<Geometry, int[]> leavesOf;
+
+    /**
+     * four wide layout of this tree, null if binary traversal is used
+     */
+    private WideBVH wide;
+
+    /**
+     * counted tests of binary traversal
+     */
+    private final AcceleratorStats stats = new AcceleratorStats();
+
+    /**
+     * one traversal stack per rendering thread
+     */
+    private final ThreadLocal<TraversalStack> stacks;
+
+    /**
+     * Constructor builds the hierarchy with the binned SAH builder
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     */
+    public BVH(final List<? extends Geometry> items) {
+        this(new BVHBuilder(items));
+    }
+
+    /**
+     * Constructor builds the hierarchy with spatial splits
+     * primitives crossing a split plane are referenced from both sides
+     * throws IllegalArgumentException if items is null, contains unbounded geometries
+     * or maxOverhead is negative
+     * @param items bounded geometries
+     * @param maxOverhead allowed extra references as fraction of primitives, 0.3 allows 30% more
+     */
+    public BVH(final List<? extends Geometry> items, final double maxOverhead) {
+        this(new SpatialSplitBVHBuilder(items, maxOverhead));
+    }
+
+    /**
+     * Constructor takes the flattened hierarchy of a builder
+     * @param builder finished builder
+     */
+    BVH(final BVHBuilder builder) {
+        this(builder.primitives, builder.nodeBounds, builder.nodeData, builder.nodeCount, builder.millisPerMillionPrimitives());
+    }
+
+    /**
+     * Constructor builds the hierarchy with the linear builder
+     * much faster to build than the SAH builders but traversal is slower,
+     * use it for scenes that are rebuilt often
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     * @param optimizeTreelets true to reorder treelets after building, slower but lowers the SAH cost
+     */
+    public BVH(final List<? extends Geometry> items, final boolean optimizeTreelets) {
+        this(new LBVHBuilder(items, optimizeTreelets));
+    }
+
+    /**
+     * Constructor takes the flattened hierarchy of a linear builder
+     * @param builder finished builder
+     */
+    BVH(final LBVHBuilder builder) {
+        this(builder.primitives, builder.nodeBounds, builder.nodeData, builder.nodeCount, builder.millisPerMillionPrimitives());
+    }
+
+    /**
+     * Constructor takes the flattened hierarchy of a spatial split builder
+     * @param builder finished builder
+     */
+    BVH(final SpatialSplitBVHBuilder builder) {
+        this(builder.primitives, builder.nodeBounds, builder.nodeData, builder.nodeCount, builder.millisPerMillionPrimitives());
+    }
+
+    /**
+     * Constructor takes flattened arrays
+     * @param primitives primitives of all leaves
+     * @param nodeBounds six values per node
+     * @param nodeData two values per node
+     * @param nodeCount number of nodes
+     * @param buildMillisPerMillionPrimitives build time in milliseconds per million primitives
+     */
+    BVH(final Geometry[] primitives, final double[] nodeBounds, final int[] nodeData, final int nodeCount,
+        final double buildMillisPerMillionPrimitives) {
+        this.primitives = primitives;
+        this.nodeBounds = nodeBounds;
+        this.nodeData = nodeData;
+        this.nodeCount = nodeCount;
+        this.buildMillisPerMillionPrimitives = buildMillisPerMillionPrimitives;
+        this.depth = depth();
+        // packets falling back to single rays continue on the same stack
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(2 * depth + 2));
+        for (int node = 0; node < nodeCount; node++) {
+            weightedArea += area(node) * weight(node);
+        }
+        this.builtCost = sahCost();
+    }
+
+    /**
+     * selects four wide traversal
+     * wide nodes are collapsed from this tree and tested with the vector api if available
+     * has to be called before rendering starts
+     * @param wide true for four wide traversal, false for binary traversal
+     */
+    public void setWide(final boolean wide) {
+        if (!wide) this.wide = null;
+        else if (this.wide == null) this.wide = new WideBVH(this, true);
+    }
+
+    /**
+     * @return true if four wide traversal is used
+     */
+    public boolean isWide() {
+        return wide != null;
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        if (nodeCount == 0) return BoundingBox.EMPTY;
+        return new BoundingBox(nodeBounds[0], nodeBounds[1], nodeBounds[2], nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 8L * nodeBounds.length + 4L * nodeData.length + 8L * primitives.length;
+        if (wide != null) bytes += wide.memoryBytes();
+        return bytes;
+    }
+
+    /**
+     * counters of four wide traversal while it is selected
+     * @return tests counted by all hit calls so far
+     */
+    @Override
+    public AcceleratorStats statistics() {
+        return wide != null ? wide.statistics() : stats;
+    }
+
+    /**
+     * build time normalized to the amount of primitives
+     * comparable between scenes of different size
+     * @return build time in milliseconds per million primitives
+     */
+    public double buildMillisPerMillionPrimitives() {
+        return buildMillisPerMillionPrimitives;
+    }
+
+    @Override
+    public int size() {
+        return primitives.length;
+    }
+
+    /**
+     * @return bytes written by write
+     */
+    public int serializedSize() {
+        return 4 + 4 * primitives.length + 4 + 8 * nodeBounds.length + 4 * nodeData.length + 8;
+    }
+
+    /**
+     * writes the flat arrays of this hierarchy, primitives are written as indices
+     * @param out buffer with at least serializedSize() bytes remaining
+     * @param indexOf index of every primitive, resolved again by read
+     */
+    public void write(final ByteBuffer out, final ToIntFunction<Geometry> indexOf) {
+        out.putInt(primitives.length);
+        for (Geometry primitive : primitives) {
+            out.putInt(indexOf.applyAsInt(primitive));
+        }
+        out.putInt(nodeCount);
+        out.asDoubleBuffer().put(nodeBounds);
+        out.position(out.position() + 8 * nodeBounds.length);
+        out.asIntBuffer().put(nodeData);
+        out.position(out.position() + 4 * nodeData.length);
+        out.putDouble(buildMillisPerMillionPrimitives);
+    }
+
+    /**
+     * reads a hierarchy written by write
+     * throws IllegalArgumentException if the data does not fit the primitives
+     * @param in buffer positioned at the hierarchy
+     * @param primitive primitive of every index written
+     * @param primitiveCount amount of valid indices
+     * @return hierarchy
+     */
+    public static BVH read(final ByteBuffer in, final IntFunction<? extends Geometry> primitive, final int primitiveCount) {
+        final int primitiveTotal = in.getInt();
+        if (primitiveTotal < 0 || 4L * primitiveTotal > in.remaining()) throw new IllegalArgumentException("invalid primitive count");
+        final Geometry[] primitives = new Geometry[primitiveTotal];
+        for (int i = 0; i < primitives.length; i++) {
+            final int index = in.getInt();
+            if (index < 0 || index >= primitiveCount) throw new IllegalArgumentException("primitive index out of range");
+            primitives[i] = primitive.apply(index);
+        }
+        final int nodeCount = in.getInt();
+        if (nodeCount < 0 || 56L * nodeCount > in.remaining()) throw new IllegalArgumentException("invalid node count");
+        final double[] nodeBounds = new double[6 * nodeCount];
+        in.asDoubleBuffer().get(nodeBounds);
+        in.position(in.position() + 8 * nodeBounds.length);
+        final int[] nodeData = new int[2 * nodeCount];
+        in.asIntBuffer().get(nodeData);
+        in.position(in.position() + 4 * nodeData.length);
+        for (int node = 0; node < nodeCount; node++) {
+            final int value = nodeData[2 * node];
+            final int count = nodeData[2 * node + 1];
+            final boolean valid = count > 0 ? value >= 0 && value + count <= primitives.length : count == 0 && value > node + 1 && value < nodeCount;
+            if (!valid) throw new IllegalArgumentException("invalid node " + node);
+        }
+        return new BVH(primitives, nodeBounds, nodeData, nodeCount, in.getDouble());
+    }
+
+    /**
+     * children always follow their parent, so one pass in index order reaches every parent first
+     * @return depth of deepest leaf, 0 for a single leaf
+     */
+    private int depth() {
+        if (nodeCount == 0) return 0;
+        final int[] depths = new int[nodeCount];
+        int max = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            max = Math.max(max, depths[node]);
+            if (nodeData[2 * node + 1] > 0) continue;
+            depths[node + 1] = depths[node] + 1;
+            depths[nodeData[2 * node]] = depths[node] + 1;
+        }
+        return max;
+    }
+
+    /**
+     * surface area heuristic cost of the current tree
+     * expected amount of node visits and primitive tests of a random ray hitting the root
+     * @return cost of tree
+     */
+    public double sahCost() {
+        final double rootArea = nodeCount == 0 ? 0 : area(0);
+        return rootArea > 0 ? weightedArea / rootArea : 0;
+    }
+
+    /**
+     * quality loss caused by refitting
+     * @return current cost divided by cost directly after building
+     */
+    public double costRatio() {
+        return builtCost > 0 ? sahCost() / builtCost : 1;
+    }
+
+    /**
+     * updates the bounds of all nodes above moved primitives without changing the topology
+     * leaves are recalculated from the bounds of their primitives and the changes are carried
+     * up to the root, stopping at the first ancestor whose bounds stay the same
+     * the tree gets worse the farther primitives move, compare costRatio() to decide on a rebuild
+     * must not be called while rays are traced
+     * throws IllegalArgumentException if changed is null
+     * @param changed moved primitives, primitives not in this hierarchy are ignored
+     */
+    public void refit(final Collection<? extends Geometry> changed) {
+        if (changed == null) throw new IllegalArgumentException();
+        if (nodeCount == 0 || changed.isEmpty()) return;
+        if (parents == null) createRefitData();
+
+        for (Geometry geometry : changed) {
+            final int[] leaves = leavesOf.get(geometry);
+            if (leaves == null) continue;
+            for (int leaf : leaves) {
+                int node = leaf;
+                final int first = nodeData[2 * node];
+                BoundingBox box = BoundingBox.EMPTY;
+                for (int i = first; i < first + nodeData[2 * node + 1]; i++) {
+                    box = box.union(primitives[i].bounds());
+                }
+                while (setBounds(node, box) && node != 0) {
+                    node = parents[node];
+                    box = nodeBox(node + 1).union(nodeBox(nodeData[2 * node]));
+                }
+            }
+        }
+        if (wide != null) wide.refit(this);
+    }
+
+    /**
+     * creates parent links and leaves of every primitive
+     */
+    private void createRefitData() {
+        parents = new int[nodeCount];
+        leavesOf = new IdentityHashMap<Geometry, int[]>(2 * primitives.length);
+        parents[0] = -1;
+        for (int node = 0; node < nodeCount; node++) {
+            final int count = nodeData[2 * node + 1];
+            if (count > 0) {
+                final int first = nodeData[2 * node];
+                for (int i = first; i < first + count; i++) {
+                    final int[] leaves = leavesOf.get(primitives[i]);
+                    if (leaves == null) {
+                        leavesOf.put(primitives[i], new int[]{node});
+                    } else {
+                        final int[] grown = Arrays.copyOf(leaves, leaves.length + 1);
+                        grown[leaves.length] = node;
+                        leavesOf.put(primitives[i], grown);
+                    }
+                }
+            } else {
+                parents[node + 1] = node;
+                parents[nodeData[2 * node]] = node;
+            }
+        }
+    }
+
+    /**
+     * @param node index of node
+     * @return bounds of node
+     */
+    private BoundingBox nodeBox(final int node) {
+        final int b = 6 * node;
+        return new BoundingBox(nodeBounds[b], nodeBounds[b + 1], nodeBounds[b + 2], nodeBounds[b + 3], nodeBounds[b + 4], nodeBounds[b + 5]);
+    }
+
+    /**
+     * stores new bounds of a node and updates the weighted area
+     * @param node index of node
+     * @param box new bounds
+     * @return false if the bounds did not change
+     */
+    private boolean setBounds(final int node, final BoundingBox box) {
+        final int b = 6 * node;
+        if (nodeBounds[b] == box.minX && nodeBounds[b + 1] == box.minY && nodeBounds[b + 2] == box.minZ
+                && nodeBounds[b + 3] == box.maxX && nodeBounds[b + 4] == box.maxY && nodeBounds[b + 5] == box.maxZ) {
+            return false;
+        }
+        weightedArea -= area(node) * weight(node);
+        nodeBounds[b] = box.minX;
+        nodeBounds[b + 1] = box.minY;
+        nodeBounds[b + 2] = box.minZ;
+        nodeBounds[b + 3] = box.maxX;
+        nodeBounds[b + 4] = box.maxY;
+        nodeBounds[b + 5] = box.maxZ;
+        weightedArea += area(node) * weight(node);
+        return true;
+    }
+
+    /**
+     * @param node index of node
+     * @return surface area of node
+     */
+    private double area(final int node) {
+        final int b = 6 * node;
+        final double dx = nodeBounds[b + 3] - nodeBounds[b];
+        final double dy = nodeBounds[b + 4] - nodeBounds[b + 1];
+        final double dz = nodeBounds[b + 5] - nodeBounds[b + 2];
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * @param node index of node
+     * @return cost of visiting an inner node or intersecting all primitives of a leaf
+     */
+    private double weight(final int node) {
+        final int count = nodeData[2 * node + 1];
+        return count > 0 ? count : BVHBuilder.TRAVERSAL_COST;
+    }
+
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        if (wide != null) return wide.intersect(r, tMin, tMax, rec);
+        if (nodeCount == 0) return false;
+        final TraversalStack stack = stacks.get();
+        stack.boxTests = 0;
+        stack.primitiveTests = 0;
+        // infinite limits would turn slabs parallel to the ray into NaN
+        final boolean found = traverse(r, 0, tMin, Math.min(tMax, Double.MAX_VALUE), rec, stack, 0);
+        stats.record(stack.boxTests, stack.primitiveTests);
+        return found;
+    }
+
+    /**
+     * closest hit traversal of one ray through the subtree of a node
+     * tests are added to the counters of the stack
+     * @param r incoming ray
+     * @param root node to start at
+     * @param tMin t a hit has to lie behind
+     * @param tMax farthest t that is still of interest
+     * @param rec record of closest hit so far
+     * @param stack traversal stack of this thread
+     * @param base first free stack entry, entries below belong to a packet traversal in progress
+     * @return true if a hit before tMax was written into rec
+     */
+    private boolean traverse(final Ray r, final int root, final double tMin, double tMax, final HitRecord rec, final TraversalStack stack, final int base) {
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double invX = 1.0 / r.d.x, invY = 1.0 / r.d.y, invZ = 1.0 / r.d.z;
+
+        boolean found = false;
+
+        final int[] nodes = stack.nodes;
+        final double[] tNear = stack.tNear;
+        int sp = base;
+        int boxTests = 1;
+        int primitiveTests = 0;
+
+        final double tRoot = intersectNode(root, ox, oy, oz, invX, invY, invZ, tMax);
+        if (tRoot != Double.POSITIVE_INFINITY) {
+            nodes[sp] = root;
+            tNear[sp++] = tRoot;
+        }
+
+        while (sp > base) {
+            final int node = nodes[--sp];
+            if (tNear[sp] > tMax) continue;
+
+            final int count = nodeData[2 * node + 1];
+            if (count > 0) {
+                final int first = nodeData[2 * node];
+                primitiveTests += count;
+                for (int i = first; i < first + count; i++) {
+                    if (primitives[i].intersect(r, tMin, tMax, rec)) {
+                        found = true;
+                        tMax = rec.t;
+                    }
+                }
+                continue;
+            }
+
+            final int left = node + 1;
+            final int right = nodeData[2 * node];
+            final double tLeft = intersectNode(left, ox, oy, oz, invX, invY, invZ, tMax);
+            final double tRight = intersectNode(right, ox, oy, oz, invX, invY, invZ, tMax);
+            boxTests += 2;
+            final boolean hitLeft = tLeft != Double.POSITIVE_INFINITY;
+            final boolean hitRight = tRight != Double.POSITIVE_INFINITY;
+
+            // push farther child first so nearer child is visited first
+            if (hitLeft && hitRight) {
+                if (tLeft <= tRight) {
+                    nodes[sp] = right;
+                    tNear[sp++] = tRight;
+                    nodes[sp] = left;
+                    tNear[sp++] = tLeft;
+                } else {
+                    nodes[sp] = left;
+                    tNear[sp++] = tLeft;
+                    nodes[sp] = right;
+                    tNear[sp++] = tRight;
+                }
+            } else if (hitLeft) {
+                nodes[sp] = left;
+                tNear[sp++] = tLeft;
+            } else if (hitRight) {
+                nodes[sp] = right;
+                tNear[sp++] = tRight;
+            }
+        }
+        stack.boxTests += boxTests;
+        stack.primitiveTests += primitiveTests;
+        return found;
+    }
+
+    /**
+     * closest hits of a ray packet
+     * nodes are visited once for the whole packet and culled with the interval slab test of the packet,
+     * a node is only entered if one of its rays really hits its box, rays before the first one
+     * hitting a node miss all of its children as well, so children start searching at that ray
+     * leaves test each ray against their box first, so only entering rays reach the primitives
+     * once leaves are entered by fewer than RayPacket.MIN_SIZE rays on average the packet has diverged
+     * and the remaining subtrees are traversed ray by ray
+     * packets with diverging directions and four wide traversal trace every ray on its own
+     * @param packet rays to trace
+     */
+    @Override
+    public void hit(final RayPacket packet) {
+        if (wide != null || !packet.coherent) {
+            Accelerator.super.hit(packet);
+            return;
+        }
+        if (nodeCount == 0) return;
+
+        final TraversalStack stack = stacks.get();
+        final int[] nodes = stack.nodes;
+        final double[] tNear = stack.tNear;
+        final int[] firstRay = stack.firstRay;
+        final boolean[] active = packet.active;
+        final int size = packet.size();
+        double tMax = packet.tMax();
+        int sp = 0;
+        int boxTests = 1;
+        int primitiveTests = 0;
+        int leaves = 0;
+        int leafRays = 0;
+
+        final double tRoot = packet.intersect(nodeBounds, 0, tMax);
+        if (tRoot != Double.POSITIVE_INFINITY) {
+            nodes[sp] = 0;
+            firstRay[sp] = 0;
+            tNear[sp++] = tRoot;
+        }
+
+        while (sp > 0) {
+            final int node = nodes[--sp];
+            if (tNear[sp] > tMax) continue;
+
+            // interval test is conservative, search the first ray really hitting the box
+            int ray = firstRay[sp];
+            while (ray < size && !hitsNode(node, packet, ray)) ray++;
+            boxTests += Math.min(size, ray + 1) - firstRay[sp];
+            if (ray == size) continue;
+
+            final int count = nodeData[2 * node + 1];
+            if (count > 0) {
+                int entering = 1;
+                for (int i = 0; i < ray; i++) {
+                    active[i] = false;
+                }
+                active[ray] = true;
+                for (int i = ray + 1; i < size; i++) {
+                    active[i] = hitsNode(node, packet, i);
+                    if (active[i]) entering++;
+                }
+                boxTests += size - ray - 1;
+                final int first = nodeData[2 * node];
+                primitiveTests += count * entering;
+                for (int i = first; i < first + count; i++) {
+                    primitives[i].hit(packet);
+                }
+                tMax = packet.tMax();
+
+                // rays spread over many leaves, trace the remaining subtrees ray by ray
+                leaves++;
+                leafRays += entering;
+                if (leaves >= DIVERGENCE_LEAVES && leafRays < RayPacket.MIN_SIZE * leaves) {
+                    final HitRecord rec = packet.record;
+                    stack.boxTests = 0;
+                    stack.primitiveTests = 0;
+                    while (sp > 0) {
+                        final int next = nodes[--sp];
+                        for (int i = firstRay[sp]; i < size; i++) {
+                            if (traverse(packet.rays[i], next, 0, packet.tMax(i), rec, stack, sp)) packet.offer(i, rec.toHit(packet.rays[i]));
+                        }
+                    }
+                    boxTests += stack.boxTests;
+                    primitiveTests += stack.primitiveTests;
+                }
+                continue;
+            }
+
+            final int left = node + 1;
+            final int right = nodeData[2 * node];
+            final double tLeft = packet.intersect(nodeBounds, 6 * left, tMax);
+            final double tRight = packet.intersect(nodeBounds, 6 * right, tMax);
+            boxTests += 2;
+            final boolean hitLeft = tLeft != Double.POSITIVE_INFINITY;
+            final boolean hitRight = tRight != Double.POSITIVE_INFINITY;
+
+            // push farther child first so nearer child is visited first
+            if (hitLeft && hitRight) {
+                if (tLeft <= tRight) {
+                    nodes[sp] = right;
+                    firstRay[sp] = ray;
+                    tNear[sp++] = tRight;
+                    nodes[sp] = left;
+                    firstRay[sp] = ray;
+                    tNear[sp++] = tLeft;
+                } else {
+                    nodes[sp] = left;
+                    firstRay[sp] = ray;
+                    tNear[sp++] = tLeft;
+                    nodes[sp] = right;
+                    firstRay[sp] = ray;
+                    tNear[sp++] = tRight;
+                }
+            } else if (hitLeft) {
+                nodes[sp] = left;
+                firstRay[sp] = ray;
+                tNear[sp++] = tLeft;
+            } else if (hitRight) {
+                nodes[sp] = right;
+                firstRay[sp] = ray;
+                tNear[sp++] = tRight;
+            }
+        }
+        stats.record(size, boxTests, primitiveTests);
+    }
+
+    /**
+     * slab test of one ray of a packet against the box of a node
+     * @param node index of node
+     * @param packet ray packet
+     * @param i index of ray
+     * @return true if ray enters the box before its closest hit so far
+     */
+    private boolean hitsNode(final int node, final RayPacket packet, final int i) {
+        return intersectNode(node, packet.ox[i], packet.oy[i], packet.oz[i],
+                packet.invX[i], packet.invY[i], packet.invZ[i], packet.tMax(i)) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * any hit query used by shadow rays
+     * children are visited in stack order without sorting, the first primitive hit before tMax ends the traversal
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if a primitive is hit before tMax
+     */
+    @Override
+    public boolean occluded(final Ray r, final double tMax) {
+        if (wide != null) return wide.occluded(r, tMax);
+        if (nodeCount == 0) return false;
+
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double invX = 1.0 / r.d.x, invY = 1.0 / r.d.y, invZ = 1.0 / r.d.z;
+        // infinite limits would turn slabs parallel to the ray into NaN
+        final double limit = Math.min(tMax, Double.MAX_VALUE);
+
+        final int[] nodes = stacks.get().nodes;
+        int sp = 0;
+        int boxTests = 1;
+        int primitiveTests = 0;
+        if (intersectNode(0, ox, oy, oz, invX, invY, invZ, limit) != Double.POSITIVE_INFINITY) nodes[sp++] = 0;
+
+        while (sp > 0) {
+            final int node = nodes[--sp];
+            final int count = nodeData[2 * node + 1];
+            if (count > 0) {
+                final int first = nodeData[2 * node];
+                for (int i = first; i < first + count; i++) {
+                    primitiveTests++;
+                    if (primitives[i].occludes(r, tMax)) {
+                        stats.record(boxTests, primitiveTests);
+                        return true;
+                    }
+                }
+                continue;
+            }
+
+            final int left = node + 1;
+            final int right = nodeData[2 * node];
+            boxTests += 2;
+            if (intersectNode(right, ox, oy, oz, invX, invY, invZ, limit) != Double.POSITIVE_INFINITY) nodes[sp++] = right;
+            if (intersectNode(left, ox, oy, oz, invX, invY, invZ, limit) != Double.POSITIVE_INFINITY) nodes[sp++] = left;
+        }
+        stats.record(boxTests, primitiveTests);
+        return false;
+    }
+
+    /**
+     * slab test of a ray against the box of a node
+     * @param node index of node
+     * @param ox x value of ray origin
+     * @param oy y value of ray origin
+     * @param oz z value of ray origin
+     * @param invX inverted x value of ray direction
+     * @param invY inverted y value of ray direction
+     * @param invZ inverted z value of ray direction
+     * @param tMax farthest t that is still of interest
+     * @return t where the ray enters the box or Double.POSITIVE_INFINITY on miss
+     */
+    private double intersectNode(final int node, final double ox, final double oy, final double oz,
+                                 final double invX, final double invY, final double invZ, final double tMax) {
+        final int b = 6 * node;
+        double tNear = 0;
+        double tFar = tMax;
+
+        double t0 = (nodeBounds[b] - ox) * invX;
+        double t1 = (nodeBounds[b + 3] - ox) * invX;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        t0 = (nodeBounds[b + 1] - oy) * invY;
+        t1 = (nodeBounds[b + 4] - oy) * invY;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        t0 = (nodeBounds[b + 2] - oz) * invZ;
+        t1 = (nodeBounds[b + 5] - oz) * invZ;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        return tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        return "BVH{" +
+                "primitives=" + primitives.length +
+                ", nodes=" + nodeCount +
+                ", bounds=" + bounds() +
+                '}';
+    }
+}
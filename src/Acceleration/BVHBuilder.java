@@ -0,0 +1,535 @@
+package Acceleration;
+
+import Geometry.Geometry;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * builds a bounding volume hierarchy with a binned surface area heuristic (SAH)
+ * the build runs on a ForkJoinPool: large ranges bin their primitives in parallel chunks
+ * and both children of a node are built as independent tasks
+ * the tree is built from temporary node objects and then written in depth first
+ * order into the flat arrays used by BVH
+ */
+public class BVHBuilder {
+
+    /**
+     * number of bins per axis used to evaluate split candidates
+     */
+    static final int BIN_COUNT = 12;
+
+    /**
+     * leaves with at most this many primitives are not split further
+     * if splitting would not lower the SAH cost
+     */
+    static final int MAX_LEAF_SIZE = 4;
+
+    /**
+     * relative cost of visiting a node compared to intersecting a primitive
+     */
+    static final double TRAVERSAL_COST = 1.0;
+
+    /**
+     * ranges with more primitives build their children as separate tasks
+     */
+    private static final int PARALLEL_BUILD_THRESHOLD = 4096;
+
+    /**
+     * ranges with more primitives are binned in parallel chunks of this size
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 32768;
+
+    /**
+     * pool running all builds
+     */
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    /**
+     * temporary node of the hierarchy while building
+     * inner nodes have two children, leaves reference a range of primitives
+     */
+    static final class BuildNode {
+        BoundingBox bounds;
+        BuildNode left;
+        BuildNode right;
+        int start;
+        int count;
+        /**
+         * SAH cost of subtree times surface area, only used by LBVHBuilder
+         */
+        double cost;
+    }
+
+    /**
+     * primitives ordered so that every leaf references a continuous range
+     */
+    final Geometry[] primitives;
+
+    /**
+     * six values per primitive: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    private final double[] primitiveBounds;
+
+    /**
+     * three values per primitive: center of bounds
+     */
+    private final double[] centroids;
+
+    /**
+     * six values per node: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    double[] nodeBounds;
+
+    /**
+     * two values per node
+     * leaf: offset of first primitive and amount of primitives
+     * inner node: index of right child and 0, left child always follows its parent
+     */
+    int[] nodeData;
+
+    /**
+     * number of nodes in the tree
+     */
+    int nodeCount;
+
+    /**
+     * counts nodes while tasks build in parallel
+     */
+    private final AtomicInteger nodeCounter = new AtomicInteger();
+
+    /**
+     * time the build took in nanoseconds
+     */
+    final long buildNanos;
+
+    /**
+     * Constructor builds the hierarchy
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     */
+    public BVHBuilder(final List<? extends Geometry> items) {
+        if (items == null) throw new IllegalArgumentException();
+        final long start = System.nanoTime();
+        primitives = new Geometry[items.size()];
+        primitiveBounds = new double[6 * primitives.length];
+        centroids = new double[3 * primitives.length];
+        for (int i = 0; i < primitives.length; i++) {
+            primitives[i] = items.get(i);
+            final BoundingBox b = primitives[i].bounds();
+            if (b.isUnbounded()) throw new IllegalArgumentException("unbounded geometry in BVH");
+            setBounds(i, b);
+        }
+        final BuildNode root = primitives.length == 0 ? null : POOL.invoke(new BuildTask(0, primitives.length, 0));
+        nodeCount = nodeCounter.get();
+        flatten(root);
+        buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * stores bounds and centroid of a primitive
+     * @param i index of primitive
+     * @param b bounds of primitive
+     */
+    private void setBounds(final int i, final BoundingBox b) {
+        primitiveBounds[6 * i] = b.minX;
+        primitiveBounds[6 * i + 1] = b.minY;
+        primitiveBounds[6 * i + 2] = b.minZ;
+        primitiveBounds[6 * i + 3] = b.maxX;
+        primitiveBounds[6 * i + 4] = b.maxY;
+        primitiveBounds[6 * i + 5] = b.maxZ;
+        centroids[3 * i] = 0.5 * (b.minX + b.maxX);
+        centroids[3 * i + 1] = 0.5 * (b.minY + b.maxY);
+        centroids[3 * i + 2] = 0.5 * (b.minZ + b.maxZ);
+    }
+
+    /**
+     * @return build time in milliseconds per million primitives
+     */
+    public double millisPerMillionPrimitives() {
+        if (primitives.length == 0) return 0;
+        return (buildNanos / 1e6) / (primitives.length / 1e6);
+    }
+
+    /**
+     * builds the subtree over primitives in range [start, end)
+     * large ranges fork their children
+     */
+    private final class BuildTask extends RecursiveTask<BuildNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int depth;
+
+        BuildTask(final int start, final int end, final int depth) {
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BuildNode compute() {
+            return build(start, end, depth);
+        }
+    }
+
+    /**
+     * bounds of a range of primitives and of their centroids
+     * twelve values: six for bounds and six for centroid bounds
+     * large ranges are reduced in parallel chunks
+     */
+    private final class RangeBoundsTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        RangeBoundsTask(final int start, final int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (end - start > PARALLEL_CHUNK_SIZE) {
+                final int mid = (start + end) >>> 1;
+                final RangeBoundsTask left = new RangeBoundsTask(start, mid);
+                left.fork();
+                final double[] right = new RangeBoundsTask(mid, end).compute();
+                final double[] result = left.join();
+                for (int k = 0; k < 3; k++) {
+                    result[k] = Math.min(result[k], right[k]);
+                    result[k + 3] = Math.max(result[k + 3], right[k + 3]);
+                    result[k + 6] = Math.min(result[k + 6], right[k + 6]);
+                    result[k + 9] = Math.max(result[k + 9], right[k + 9]);
+                }
+                return result;
+            }
+            final double[] result = emptyRange();
+            for (int i = start; i < end; i++) {
+                for (int k = 0; k < 3; k++) {
+                    final double min = primitiveBounds[6 * i + k];
+                    final double max = primitiveBounds[6 * i + 3 + k];
+                    final double c = centroids[3 * i + k];
+                    if (min < result[k]) result[k] = min;
+                    if (max > result[k + 3]) result[k + 3] = max;
+                    if (c < result[k + 6]) result[k + 6] = c;
+                    if (c > result[k + 9]) result[k + 9] = c;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return range bounds that contain nothing
+     */
+    private static double[] emptyRange() {
+        final double[] result = new double[12];
+        for (int k = 0; k < 3; k++) {
+            result[k] = Double.POSITIVE_INFINITY;
+            result[k + 3] = Double.NEGATIVE_INFINITY;
+            result[k + 6] = Double.POSITIVE_INFINITY;
+            result[k + 9] = Double.NEGATIVE_INFINITY;
+        }
+        return result;
+    }
+
+    /**
+     * primitive counts and bounds of all bins on all three axes
+     * bounds of a bin are only valid if its count is greater than 0
+     */
+    private static final class Bins {
+        final int[] counts = new int[3 * BIN_COUNT];
+        final double[] bounds = new double[6 * 3 * BIN_COUNT];
+
+        void add(final int b, final double[] primitiveBounds, final int offset) {
+            if (counts[b]++ == 0) {
+                System.arraycopy(primitiveBounds, offset, bounds, 6 * b, 6);
+                return;
+            }
+            for (int k = 0; k < 3; k++) {
+                final double min = primitiveBounds[offset + k];
+                final double max = primitiveBounds[offset + 3 + k];
+                if (min < bounds[6 * b + k]) bounds[6 * b + k] = min;
+                if (max > bounds[6 * b + 3 + k]) bounds[6 * b + 3 + k] = max;
+            }
+        }
+
+        void merge(final Bins other) {
+            for (int b = 0; b < 3 * BIN_COUNT; b++) {
+                if (other.counts[b] == 0) continue;
+                if (counts[b] == 0) {
+                    System.arraycopy(other.bounds, 6 * b, bounds, 6 * b, 6);
+                } else {
+                    for (int k = 0; k < 3; k++) {
+                        bounds[6 * b + k] = Math.min(bounds[6 * b + k], other.bounds[6 * b + k]);
+                        bounds[6 * b + 3 + k] = Math.max(bounds[6 * b + 3 + k], other.bounds[6 * b + 3 + k]);
+                    }
+                }
+                counts[b] += other.counts[b];
+            }
+        }
+    }
+
+    /**
+     * sorts a range of primitives into the bins of every axis
+     * large ranges are binned in parallel chunks and merged
+     */
+    private final class BinTask extends RecursiveTask<Bins> {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final double[] range;
+
+        BinTask(final int start, final int end, final double[] range) {
+            this.start = start;
+            this.end = end;
+            this.range = range;
+        }
+
+        @Override
+        protected Bins compute() {
+            if (end - start > PARALLEL_CHUNK_SIZE) {
+                final int mid = (start + end) >>> 1;
+                final BinTask left = new BinTask(start, mid, range);
+                left.fork();
+                final Bins bins = new BinTask(mid, end, range).compute();
+                bins.merge(left.join());
+                return bins;
+            }
+            final Bins bins = new Bins();
+            for (int axis = 0; axis < 3; axis++) {
+                final double cMin = range[6 + axis];
+                final double extent = range[9 + axis] - cMin;
+                if (extent <= 0) continue;
+                for (int i = start; i < end; i++) {
+                    bins.add(axis * BIN_COUNT + binIndex(centroids[3 * i + axis], cMin, extent), primitiveBounds, 6 * i);
+                }
+            }
+            return bins;
+        }
+    }
+
+    /**
+     * builds subtree over primitives in range [start, end)
+     * split is chosen over all three axes with binned SAH
+     * @param start first primitive
+     * @param end last primitive exclusive
+     * @param depth depth of node
+     * @return node
+     */
+    private BuildNode build(final int start, final int end, final int depth) {
+        nodeCounter.incrementAndGet();
+        final BuildNode node = new BuildNode();
+        final int count = end - start;
+
+        final double[] range = new RangeBoundsTask(start, end).compute();
+        node.bounds = new BoundingBox(range[0], range[1], range[2], range[3], range[4], range[5]);
+
+        if (count == 1 || depth >= BVH.MAX_DEPTH - 1) {
+            return leaf(node, start, count);
+        }
+
+        final Bins bins = new BinTask(start, end, range).compute();
+
+        // evaluate split after every bin on every axis
+        int bestAxis = -1;
+        int bestSplit = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        final double[] rightArea = new double[BIN_COUNT];
+        final int[] rightCount = new int[BIN_COUNT];
+        final double[] acc = new double[6];
+
+        for (int axis = 0; axis < 3; axis++) {
+            if (range[9 + axis] - range[6 + axis] <= 0) continue;
+            final int first = axis * BIN_COUNT;
+
+            // sweep from the right to know area and count of every right side
+            clear(acc);
+            int accCount = 0;
+            for (int b = BIN_COUNT - 1; b > 0; b--) {
+                grow(acc, bins, first + b);
+                accCount += bins.counts[first + b];
+                rightArea[b] = area(acc);
+                rightCount[b] = accCount;
+            }
+
+            // sweep from the left and evaluate split after bin b - 1
+            clear(acc);
+            accCount = 0;
+            for (int b = 1; b < BIN_COUNT; b++) {
+                grow(acc, bins, first + b - 1);
+                accCount += bins.counts[first + b - 1];
+                if (accCount == 0 || rightCount[b] == 0) continue;
+                final double cost = area(acc) * accCount + rightArea[b] * rightCount[b];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestSplit = b;
+                }
+            }
+        }
+
+        if (bestAxis == -1) {
+            // all centroids at the same position
+            return leaf(node, start, count);
+        }
+
+        final double area = node.bounds.surfaceArea();
+        final double splitCost = area > 0 ? TRAVERSAL_COST + bestCost / area : TRAVERSAL_COST + count;
+        if (count <= MAX_LEAF_SIZE && splitCost >= count) {
+            return leaf(node, start, count);
+        }
+
+        // partition primitives in place
+        final double cMin = range[6 + bestAxis];
+        final double extent = range[9 + bestAxis] - cMin;
+        int mid = start;
+        for (int i = start; i < end; i++) {
+            if (binIndex(centroids[3 * i + bestAxis], cMin, extent) < bestSplit) {
+                swap(i, mid);
+                mid++;
+            }
+        }
+        if (mid == start || mid == end) mid = start + count / 2;
+
+        if (count > PARALLEL_BUILD_THRESHOLD) {
+            final BuildTask left = new BuildTask(start, mid, depth + 1);
+            left.fork();
+            node.right = build(mid, end, depth + 1);
+            node.left = left.join();
+        } else {
+            node.left = build(start, mid, depth + 1);
+            node.right = build(mid, end, depth + 1);
+        }
+        return node;
+    }
+
+    /**
+     * resets accumulated bounds to empty
+     * @param acc bounds to reset
+     */
+    private static void clear(final double[] acc) {
+        for (int k = 0; k < 3; k++) {
+            acc[k] = Double.POSITIVE_INFINITY;
+            acc[k + 3] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * grows accumulated bounds by the bounds of a bin
+     * empty bins are skipped
+     * @param acc accumulated bounds
+     * @param bins bins of all axes
+     * @param bin index of bin
+     */
+    private static void grow(final double[] acc, final Bins bins, final int bin) {
+        if (bins.counts[bin] == 0) return;
+        for (int k = 0; k < 3; k++) {
+            acc[k] = Math.min(acc[k], bins.bounds[6 * bin + k]);
+            acc[k + 3] = Math.max(acc[k + 3], bins.bounds[6 * bin + 3 + k]);
+        }
+    }
+
+    /**
+     * surface area of accumulated bounds
+     * @param acc accumulated bounds
+     * @return surface area or 0 if empty
+     */
+    private static double area(final double[] acc) {
+        final double dx = acc[3] - acc[0];
+        final double dy = acc[4] - acc[1];
+        final double dz = acc[5] - acc[2];
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * turns node into leaf
+     * @param node node to be leaf
+     * @param start first primitive
+     * @param count amount of primitives
+     * @return node
+     */
+    private BuildNode leaf(final BuildNode node, final int start, final int count) {
+        node.start = start;
+        node.count = count;
+        return node;
+    }
+
+    /**
+     * calculates bin of centroid value
+     * @param c centroid value on axis
+     * @param min minimal centroid value on axis
+     * @param extent extent of centroids on axis
+     * @return bin index
+     */
+    static int binIndex(final double c, final double min, final double extent) {
+        final int b = (int) (BIN_COUNT * ((c - min) / extent));
+        return b < 0 ? 0 : b >= BIN_COUNT ? BIN_COUNT - 1 : b;
+    }
+
+    /**
+     * swaps primitive, its bounds and its centroid
+     * @param i first index
+     * @param j second index
+     */
+    private void swap(final int i, final int j) {
+        final Geometry g = primitives[i];
+        primitives[i] = primitives[j];
+        primitives[j] = g;
+        for (int k = 0; k < 6; k++) {
+            final double b = primitiveBounds[6 * i + k];
+            primitiveBounds[6 * i + k] = primitiveBounds[6 * j + k];
+            primitiveBounds[6 * j + k] = b;
+        }
+        for (int k = 0; k < 3; k++) {
+            final double c = centroids[3 * i + k];
+            centroids[3 * i + k] = centroids[3 * j + k];
+            centroids[3 * j + k] = c;
+        }
+    }
+
+    /**
+     * writes the tree in depth first order into nodeBounds and nodeData
+     * @param root root of tree, may be null
+     */
+    private void flatten(final BuildNode root) {
+        nodeBounds = new double[6 * nodeCount];
+        nodeData = new int[2 * nodeCount];
+        if (root != null) flatten(root, 0, nodeBounds, nodeData);
+    }
+
+    /**
+     * writes node and its subtree starting at given index
+     * @param node node to write
+     * @param index index of node
+     * @param nodeBounds six values per node
+     * @param nodeData two values per node
+     * @return next free index
+     */
+    static int flatten(final BuildNode node, final int index, final double[] nodeBounds, final int[] nodeData) {
+        final BoundingBox b = node.bounds;
+        nodeBounds[6 * index] = b.minX;
+        nodeBounds[6 * index + 1] = b.minY;
+        nodeBounds[6 * index + 2] = b.minZ;
+        nodeBounds[6 * index + 3] = b.maxX;
+        nodeBounds[6 * index + 4] = b.maxY;
+        nodeBounds[6 * index + 5] = b.maxZ;
+
+        if (node.left == null) {
+            nodeData[2 * index] = node.start;
+            nodeData[2 * index + 1] = node.count;
+            return index + 1;
+        }
+        final int rightIndex = flatten(node.left, index + 1, nodeBounds, nodeData);
+        nodeData[2 * index] = rightIndex;
+        nodeData[2 * index + 1] = 0;
+        return flatten(node.right, rightIndex, nodeBounds, nodeData);
+    }
+}
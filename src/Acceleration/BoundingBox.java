@@ -0,0 +1,224 @@
+package Acceleration;
+
+import MathLib.Point3;
+
+import java.util.Objects;
+
+/**
+ * axis aligned bounding box used by acceleration structures
+ * unlike AxisAlignedBox it has no material and is never rendered
+ */
+public class BoundingBox {
+
+    /**
+     * sentinel for geometries without finite bounds like planes
+     */
+    public static final BoundingBox UNBOUNDED = new BoundingBox(
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    /**
+     * empty box, neutral element for union
+     */
+    public static final BoundingBox EMPTY = new BoundingBox(
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+    /**
+     * minimal point of box
+     */
+    public final double minX, minY, minZ;
+
+    /**
+     * maximal point of box
+     */
+    public final double maxX, maxY, maxZ;
+
+    /**
+     * constructor of BoundingBox
+     * @param minX minimal x value
+     * @param minY minimal y value
+     * @param minZ minimal z value
+     * @param maxX maximal x value
+     * @param maxY maximal y value
+     * @param maxZ maximal z value
+     */
+    public BoundingBox(final double minX, final double minY, final double minZ,
+                       final double maxX, final double maxY, final double maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * constructor of BoundingBox through two corner points
+     * throws IllegalArgumentException if a point is null
+     * @param min minimal point
+     * @param max maximal point
+     */
+    public BoundingBox(final Point3 min, final Point3 max) {
+        this(checked(min).x, min.y, min.z, checked(max).x, max.y, max.z);
+    }
+
+    private static Point3 checked(final Point3 p) {
+        if (p == null) throw new IllegalArgumentException();
+        return p;
+    }
+
+    /**
+     * returns smallest box containing this and given box
+     * throws IllegalArgumentException if box is null
+     * @param b second box
+     * @return new box
+     */
+    public BoundingBox union(final BoundingBox b) {
+        if (b == null) throw new IllegalArgumentException();
+        return new BoundingBox(Math.min(minX, b.minX), Math.min(minY, b.minY), Math.min(minZ, b.minZ),
+                Math.max(maxX, b.maxX), Math.max(maxY, b.maxY), Math.max(maxZ, b.maxZ));
+    }
+
+    /**
+     * returns smallest box containing this box and given point
+     * @param x x value of point
+     * @param y y value of point
+     * @param z z value of point
+     * @return new box
+     */
+    public BoundingBox union(final double x, final double y, final double z) {
+        return new BoundingBox(Math.min(minX, x), Math.min(minY, y), Math.min(minZ, z),
+                Math.max(maxX, x), Math.max(maxY, y), Math.max(maxZ, z));
+    }
+
+    /**
+     * returns box grown by epsilon on every side
+     * @param epsilon amount to grow
+     * @return new box
+     */
+    public BoundingBox expand(final double epsilon) {
+        return new BoundingBox(minX - epsilon, minY - epsilon, minZ - epsilon,
+                maxX + epsilon, maxY + epsilon, maxZ + epsilon);
+    }
+
+    /**
+     * @return true if box is infinite in any direction
+     */
+    public boolean isUnbounded() {
+        return Double.isInfinite(minX) || Double.isInfinite(minY) || Double.isInfinite(minZ)
+                || Double.isInfinite(maxX) || Double.isInfinite(maxY) || Double.isInfinite(maxZ);
+    }
+
+    /**
+     * @return true if box contains no point
+     */
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    /**
+     * surface area of box, used by the surface area heuristic
+     * @return surface area or 0 for empty boxes
+     */
+    public double surfaceArea() {
+        if (isEmpty()) return 0;
+        final double dx = maxX - minX;
+        final double dy = maxY - minY;
+        final double dz = maxZ - minZ;
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * center of box on given axis
+     * @param axis 0 for x, 1 for y, 2 for z
+     * @return center value
+     */
+    public double center(final int axis) {
+        return 0.5 * (min(axis) + max(axis));
+    }
+
+    /**
+     * @param axis 0 for x, 1 for y, 2 for z
+     * @return minimal value on axis
+     */
+    public double min(final int axis) {
+        return axis == 0 ? minX : axis == 1 ? minY : minZ;
+    }
+
+    /**
+     * @param axis 0 for x, 1 for y, 2 for z
+     * @return maximal value on axis
+     */
+    public double max(final int axis) {
+        return axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+    }
+
+    /**
+     * slab test of a ray against the box
+     * directions are passed inverted so the division is done once per ray
+     * @param ox x value of ray origin
+     * @param oy y value of ray origin
+     * @param oz z value of ray origin
+     * @param invX inverted x value of ray direction
+     * @param invY inverted y value of ray direction
+     * @param invZ inverted z value of ray direction
+     * @param tMax farthest t that is still of interest
+     * @return t where the ray enters the box or Double.POSITIVE_INFINITY on miss
+     */
+    public double intersect(final double ox, final double oy, final double oz,
+                            final double invX, final double invY, final double invZ, final double tMax) {
+        double tNear = 0;
+        double tFar = tMax;
+
+        double t0 = (minX - ox) * invX;
+        double t1 = (maxX - ox) * invX;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        t0 = (minY - oy) * invY;
+        t1 = (maxY - oy) * invY;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        t0 = (minZ - oz) * invZ;
+        t1 = (maxZ - oz) * invZ;
+        if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+
+        return tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BoundingBox that = (BoundingBox) o;
+        return Double.compare(that.minX, minX) == 0 &&
+                Double.compare(that.minY, minY) == 0 &&
+                Double.compare(that.minZ, minZ) == 0 &&
+                Double.compare(that.maxX, maxX) == 0 &&
+                Double.compare(that.maxY, maxY) == 0 &&
+                Double.compare(that.maxZ, maxZ) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox{" +
+                "minX=" + minX +
+                ", minY=" + minY +
+                ", minZ=" + minZ +
+                ", maxX=" + maxX +
+                ", maxY=" + maxY +
+                ", maxZ=" + maxZ +
+                '}';
+    }
+}
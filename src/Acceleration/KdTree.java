@@ -0,0 +1,489 @@
+package Acceleration;
+
+import Geometry.Geometry;
+import Raytracer.HitRecord;
+import Raytracer.Ray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * kd-tree over bounded geometries
+ * split planes are chosen with the surface area heuristic over all primitive bounds,
+ * primitives crossing a plane are referenced from both children
+ * nodes are stored in flat arrays, the child below the plane directly follows its parent
+ * traversal walks front to back along the ray and stops at the first leaf
+ * that contains the closest hit
+ */
+public class KdTree implements Accelerator {
+
+    /**
+     * cost of traversing a node relative to intersecting a primitive
+     */
+    private static final double TRAVERSAL_COST = 1.0;
+
+    /**
+     * cost of intersecting a primitive
+     */
+    private static final double INTERSECTION_COST = 8.0;
+
+    /**
+     * cost reduction of splits with an empty side
+     */
+    private static final double EMPTY_BONUS = 0.5;
+
+    /**
+     * nodes with at most this many primitives become leaves
+     */
+    private static final int MAX_LEAF_SIZE = 1;
+
+    /**
+     * upper bound of the depth, also size of the traversal stack
+     */
+    private static final int MAX_DEPTH = 60;
+
+    /**
+     * marks a leaf in the lower two bits of the node info
+     */
+    private static final int LEAF = 3;
+
+    /**
+     * start or end of a primitive on an axis
+     */
+    private static final class Edge implements Comparable<Edge> {
+        double t;
+        int primitive;
+        boolean start;
+
+        @Override
+        public int compareTo(final Edge e) {
+            if (t == e.t) return start == e.start ? 0 : start ? -1 : 1;
+            return t < e.t ? -1 : 1;
+        }
+    }
+
+    /**
+     * node stack of one thread
+     */
+    private static final class TraversalStack {
+        final int[] nodes = new int[MAX_DEPTH + 1];
+        final double[] tMin = new double[MAX_DEPTH + 1];
+        final double[] tMax = new double[MAX_DEPTH + 1];
+    }
+
+    /**
+     * primitives of the tree
+     */
+    private final Geometry[] primitives;
+
+    /**
+     * bounds of every primitive while building
+     */
+    private BoundingBox[] primitiveBounds;
+
+    /**
+     * bounds of tree
+     */
+    private final BoundingBox bounds;
+
+    /**
+     * position of the split plane of every inner node
+     */
+    private double[] splits = new double[64];
+
+    /**
+     * two values per node
+     * inner node: axis and index of the child above the plane
+     * leaf: LEAF | amount of primitives shifted by 2 and offset in primitiveIndices
+     */
+    private int[] nodeInfo = new int[128];
+
+    /**
+     * primitive indices of all leaves
+     */
+    private int[] primitiveIndices = new int[64];
+
+    /**
+     * used entries of primitiveIndices
+     */
+    private int referenceCount;
+
+    /**
+     * number of nodes
+     */
+    private int nodeCount;
+
+    /**
+     * counted tests
+     */
+    private final AcceleratorStats stats = new AcceleratorStats();
+
+    /**
+     * one traversal stack per rendering thread
+     */
+    private final ThreadLocal<TraversalStack> stacks = ThreadLocal.withInitial(TraversalStack::new);
+
+    /**
+     * Constructor builds the tree
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     */
+    public KdTree(final List<? extends Geometry> items) {
+        if (items == null) throw new IllegalArgumentException();
+        primitives = items.toArray(new Geometry[0]);
+        primitiveBounds = new BoundingBox[primitives.length];
+        BoundingBox b = BoundingBox.EMPTY;
+        final int[] all = new int[primitives.length];
+        for (int i = 0; i < primitives.length; i++) {
+            primitiveBounds[i] = primitives[i].bounds();
+            if (primitiveBounds[i].isUnbounded()) throw new IllegalArgumentException("unbounded geometry in kd-tree");
+            b = b.union(primitiveBounds[i]);
+            all[i] = i;
+        }
+        bounds = b;
+        if (primitives.length > 0) {
+            final int maxDepth = (int) Math.min(MAX_DEPTH, Math.round(8 + 1.3 * Math.log(primitives.length) / Math.log(2)));
+            build(bounds, all, all.length, maxDepth, 0);
+        }
+        splits = Arrays.copyOf(splits, nodeCount);
+        nodeInfo = Arrays.copyOf(nodeInfo, 2 * nodeCount);
+        primitiveIndices = Arrays.copyOf(primitiveIndices, referenceCount);
+        primitiveBounds = null;
+    }
+
+    /**
+     * builds the subtree over given primitives
+     * the best plane is searched on the longest axis first and on the others if no plane helps
+     * @param nodeBounds bounds of node
+     * @param prims primitives of node
+     * @param count amount of primitives
+     * @param depth remaining depth
+     * @param badRefines amount of splits above that raised the cost
+     */
+    private void build(final BoundingBox nodeBounds, final int[] prims, final int count, final int depth, int badRefines) {
+        final int node = addNode();
+        if (count <= MAX_LEAF_SIZE || depth == 0 || nodeBounds.surfaceArea() <= 0) {
+            leaf(node, prims, count);
+            return;
+        }
+        final double invTotalArea = 1.0 / nodeBounds.surfaceArea();
+        final double oldCost = INTERSECTION_COST * count;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestOffset = -1;
+        Edge[] bestEdges = null;
+
+        int axis = longestAxis(nodeBounds);
+        for (int retries = 0; retries < 3 && bestAxis == -1; retries++, axis = (axis + 1) % 3) {
+            final Edge[] edges = new Edge[2 * count];
+            for (int i = 0; i < count; i++) {
+                edges[2 * i] = edge(primitiveBounds[prims[i]].min(axis), prims[i], true);
+                edges[2 * i + 1] = edge(primitiveBounds[prims[i]].max(axis), prims[i], false);
+            }
+            Arrays.sort(edges);
+
+            final int other0 = (axis + 1) % 3;
+            final int other1 = (axis + 2) % 3;
+            final double d0 = nodeBounds.max(other0) - nodeBounds.min(other0);
+            final double d1 = nodeBounds.max(other1) - nodeBounds.min(other1);
+            final double min = nodeBounds.min(axis);
+            final double max = nodeBounds.max(axis);
+            int below = 0;
+            int above = count;
+            for (int i = 0; i < 2 * count; i++) {
+                if (!edges[i].start) above--;
+                final double t = edges[i].t;
+                if (t > min && t < max) {
+                    final double belowArea = 2 * (d0 * d1 + (t - min) * (d0 + d1));
+                    final double aboveArea = 2 * (d0 * d1 + (max - t) * (d0 + d1));
+                    final double bonus = above == 0 || below == 0 ? EMPTY_BONUS : 0;
+                    final double cost = TRAVERSAL_COST + INTERSECTION_COST * (1 - bonus)
+                            * (belowArea * invTotalArea * below + aboveArea * invTotalArea * above);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestOffset = i;
+                        bestEdges = edges;
+                    }
+                }
+                if (edges[i].start) below++;
+            }
+        }
+
+        if (bestCost > oldCost) badRefines++;
+        if ((bestCost > oldCost && count < 16) || bestAxis == -1 || badRefines == 3) {
+            leaf(node, prims, count);
+            return;
+        }
+
+        // primitives starting before the plane go below, primitives ending after it go above
+        final int[] belowPrims = new int[count];
+        final int[] abovePrims = new int[count];
+        int belowCount = 0;
+        int aboveCount = 0;
+        for (int i = 0; i < bestOffset; i++) {
+            if (bestEdges[i].start) belowPrims[belowCount++] = bestEdges[i].primitive;
+        }
+        for (int i = bestOffset + 1; i < 2 * count; i++) {
+            if (!bestEdges[i].start) abovePrims[aboveCount++] = bestEdges[i].primitive;
+        }
+
+        final double split = bestEdges[bestOffset].t;
+        splits[node] = split;
+        build(clamp(nodeBounds, bestAxis, split, true), belowPrims, belowCount, depth - 1, badRefines);
+        nodeInfo[2 * node] = bestAxis;
+        nodeInfo[2 * node + 1] = nodeCount;
+        build(clamp(nodeBounds, bestAxis, split, false), abovePrims, aboveCount, depth - 1, badRefines);
+    }
+
+    /**
+     * @param t position on axis
+     * @param primitive index of primitive
+     * @param start true if the primitive starts at t
+     * @return edge
+     */
+    private static Edge edge(final double t, final int primitive, final boolean start) {
+        final Edge e = new Edge();
+        e.t = t;
+        e.primitive = primitive;
+        e.start = start;
+        return e;
+    }
+
+    /**
+     * @param b box
+     * @return axis with the largest extent
+     */
+    private static int longestAxis(final BoundingBox b) {
+        final double dx = b.maxX - b.minX, dy = b.maxY - b.minY, dz = b.maxZ - b.minZ;
+        return dx >= dy && dx >= dz ? 0 : dy >= dz ? 1 : 2;
+    }
+
+    /**
+     * cuts a box at a plane
+     * @param b box
+     * @param axis axis of plane
+     * @param split position of plane
+     * @param below true for the part below the plane
+     * @return part of box
+     */
+    private static BoundingBox clamp(final BoundingBox b, final int axis, final double split, final boolean below) {
+        final double[] min = {b.minX, b.minY, b.minZ};
+        final double[] max = {b.maxX, b.maxY, b.maxZ};
+        if (below) max[axis] = split;
+        else min[axis] = split;
+        return new BoundingBox(min[0], min[1], min[2], max[0], max[1], max[2]);
+    }
+
+    /**
+     * appends a node, growing the arrays if needed
+     * @return index of node
+     */
+    private int addNode() {
+        if (nodeCount == splits.length) {
+            splits = Arrays.copyOf(splits, 2 * nodeCount);
+            nodeInfo = Arrays.copyOf(nodeInfo, 4 * nodeCount);
+        }
+        return nodeCount++;
+    }
+
+    /**
+     * turns node into leaf and appends its primitives
+     * @param node index of node
+     * @param prims primitives of leaf
+     * @param count amount of primitives
+     */
+    private void leaf(final int node, final int[] prims, final int count) {
+        if (referenceCount + count > primitiveIndices.length) {
+            primitiveIndices = Arrays.copyOf(primitiveIndices, Math.max(2 * primitiveIndices.length, referenceCount + count));
+        }
+        System.arraycopy(prims, 0, primitiveIndices, referenceCount, count);
+        nodeInfo[2 * node] = LEAF | (count << 2);
+        nodeInfo[2 * node + 1] = referenceCount;
+        referenceCount += count;
+    }
+
+    @Override
+    public boolean intersect(final Ray r, final double tFrom, final double limit, final HitRecord rec) {
+        if (nodeCount == 0) return false;
+        final double[] o = {r.o.x, r.o.y, r.o.z};
+        final double[] inv = {1.0 / r.d.x, 1.0 / r.d.y, 1.0 / r.d.z};
+
+        // interval of the ray within the bounds of the tree, infinite limits would turn parallel slabs into NaN
+        double tMin = 0;
+        double tMax = Math.min(limit, Double.MAX_VALUE);
+        for (int axis = 0; axis < 3; axis++) {
+            double t0 = (bounds.min(axis) - o[axis]) * inv[axis];
+            double t1 = (bounds.max(axis) - o[axis]) * inv[axis];
+            if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+            if (t0 > tMin) tMin = t0;
+            if (t1 < tMax) tMax = t1;
+        }
+        if (tMin > tMax) {
+            stats.record(1, 0);
+            return false;
+        }
+
+        final TraversalStack stack = stacks.get();
+        int sp = 0;
+        int node = 0;
+        int nodes = 0;
+        int tests = 0;
+        boolean found = false;
+        // the clipped interval only picks and culls children, flat primitives have tMin == tMax and hit exactly there
+        double closest = limit;
+
+        while (true) {
+            if (closest < tMin) break;
+            nodes++;
+            final int info = nodeInfo[2 * node];
+            if ((info & LEAF) != LEAF) {
+                final int axis = info;
+                final double tPlane = (splits[node] - o[axis]) * inv[axis];
+                final boolean belowFirst = o[axis] < splits[node] || (o[axis] == splits[node] && inv[axis] <= 0);
+                final int first = belowFirst ? node + 1 : nodeInfo[2 * node + 1];
+                final int second = belowFirst ? nodeInfo[2 * node + 1] : node + 1;
+
+                if (tPlane > tMax || tPlane <= 0) {
+                    node = first;
+                } else if (tPlane < tMin) {
+                    node = second;
+                } else {
+                    stack.nodes[sp] = second;
+                    stack.tMin[sp] = tPlane;
+                    stack.tMax[sp++] = tMax;
+                    node = first;
+                    tMax = tPlane;
+                }
+                continue;
+            }
+
+            final int count = info >>> 2;
+            final int offset = nodeInfo[2 * node + 1];
+            for (int k = offset; k < offset + count; k++) {
+                tests++;
+                if (primitives[primitiveIndices[k]].intersect(r, tFrom, closest, rec)) {
+                    found = true;
+                    closest = rec.t;
+                }
+            }
+            if (sp == 0) break;
+            node = stack.nodes[--sp];
+            tMin = stack.tMin[sp];
+            tMax = stack.tMax[sp];
+        }
+        stats.record(nodes, tests);
+        return found;
+    }
+
+    /**
+     * any hit query used by shadow rays
+     * walks the same front to back order as hit but stops at the first primitive hit before tMax
+     * primitives reaching out of their leaf still occlude, so any hit ends the traversal
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if a primitive is hit before tMax
+     */
+    @Override
+    public boolean occluded(final Ray r, final double tMax) {
+        if (nodeCount == 0) return false;
+        final double[] o = {r.o.x, r.o.y, r.o.z};
+        final double[] inv = {1.0 / r.d.x, 1.0 / r.d.y, 1.0 / r.d.z};
+
+        // interval of the ray within the bounds of the tree and before tMax
+        double tMin = 0;
+        double tFar = Math.min(tMax, Double.MAX_VALUE);
+        for (int axis = 0; axis < 3; axis++) {
+            double t0 = (bounds.min(axis) - o[axis]) * inv[axis];
+            double t1 = (bounds.max(axis) - o[axis]) * inv[axis];
+            if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+            if (t0 > tMin) tMin = t0;
+            if (t1 < tFar) tFar = t1;
+        }
+        if (tMin > tFar) {
+            stats.record(1, 0);
+            return false;
+        }
+
+        final TraversalStack stack = stacks.get();
+        int sp = 0;
+        int node = 0;
+        int nodes = 0;
+        int tests = 0;
+
+        while (true) {
+            nodes++;
+            final int info = nodeInfo[2 * node];
+            if ((info & LEAF) != LEAF) {
+                final int axis = info;
+                final double tPlane = (splits[node] - o[axis]) * inv[axis];
+                final boolean belowFirst = o[axis] < splits[node] || (o[axis] == splits[node] && inv[axis] <= 0);
+                final int first = belowFirst ? node + 1 : nodeInfo[2 * node + 1];
+                final int second = belowFirst ? nodeInfo[2 * node + 1] : node + 1;
+
+                if (tPlane > tFar || tPlane <= 0) {
+                    node = first;
+                } else if (tPlane < tMin) {
+                    node = second;
+                } else {
+                    stack.nodes[sp] = second;
+                    stack.tMin[sp] = tPlane;
+                    stack.tMax[sp++] = tFar;
+                    node = first;
+                    tFar = tPlane;
+                }
+                continue;
+            }
+
+            final int count = info >>> 2;
+            final int offset = nodeInfo[2 * node + 1];
+            for (int k = offset; k < offset + count; k++) {
+                tests++;
+                if (primitives[primitiveIndices[k]].occludes(r, tMax)) {
+                    stats.record(nodes, tests);
+                    return true;
+                }
+            }
+            if (sp == 0) break;
+            node = stack.nodes[--sp];
+            tMin = stack.tMin[sp];
+            tFar = stack.tMax[sp];
+        }
+        stats.record(nodes, tests);
+        return false;
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return bounds;
+    }
+
+    @Override
+    public int size() {
+        return referenceCount;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 8L * splits.length + 4L * nodeInfo.length + 4L * primitiveIndices.length + 8L * primitives.length;
+    }
+
+    @Override
+    public AcceleratorStats statistics() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "KdTree{" +
+                "primitives=" + primitives.length +
+                ", nodes=" + nodeCount +
+                ", references=" + referenceCount +
+                '}';
+    }
+}
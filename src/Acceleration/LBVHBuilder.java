@@ -0,0 +1,509 @@
+package Acceleration;
+
+import Geometry.Geometry;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * builds a linear bounding volume hierarchy (LBVH) for scenes that change often
+ * primitives are sorted by the morton code of their centroid with a parallel radix sort,
+ * every inner node then finds its range and split independently from the sorted codes
+ * (Karras 2012), so the topology is emitted in parallel without evaluating any SAH
+ * small subtrees are collapsed into leaves and an optional pass reorders treelets
+ * of seven leaves into their cheapest topology (Karras and Aila 2013)
+ * the tree is written into the same flat arrays as BVHBuilder
+ */
+public class LBVHBuilder {
+
+    /**
+     * scenes with at most this many primitives use 30 bit codes, 10 bits per axis
+     * larger scenes use 63 bit codes, 21 bits per axis
+     */
+    private static final int SHORT_CODE_LIMIT = 1 << 16;
+
+    /**
+     * bits sorted per radix sort pass
+     */
+    private static final int RADIX_BITS = 8;
+
+    /**
+     * primitives or nodes handled by one parallel chunk
+     */
+    private static final int CHUNK_SIZE = 16384;
+
+    /**
+     * leaves of a treelet
+     */
+    private static final int TREELET_SIZE = 7;
+
+    /**
+     * subtrees up to this depth optimize their treelets as separate tasks
+     */
+    private static final int PARALLEL_TREELET_DEPTH = 6;
+
+    /**
+     * pool running all builds
+     */
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    /**
+     * primitives sorted by morton code, every leaf references a continuous range
+     */
+    final Geometry[] primitives;
+
+    /**
+     * six values per node: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    double[] nodeBounds;
+
+    /**
+     * two values per node
+     * leaf: offset of first primitive and amount of primitives
+     * inner node: index of right child and 0, left child always follows its parent
+     */
+    int[] nodeData;
+
+    /**
+     * number of nodes in the tree
+     */
+    int nodeCount;
+
+    /**
+     * time the build took in nanoseconds
+     */
+    final long buildNanos;
+
+    /**
+     * bounds of every primitive in sorted order
+     */
+    private final BoundingBox[] primitiveBounds;
+
+    /**
+     * sorted morton codes
+     */
+    private long[] codes;
+
+    /**
+     * Constructor builds the hierarchy
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     * @param optimizeTreelets true to reorder treelets after building, slower but lowers the SAH cost
+     */
+    public LBVHBuilder(final List<? extends Geometry> items, final boolean optimizeTreelets) {
+        if (items == null) throw new IllegalArgumentException();
+        final long start = System.nanoTime();
+        final int n = items.size();
+        final Geometry[] unsorted = items.toArray(new Geometry[0]);
+        final BoundingBox[] unsortedBounds = new BoundingBox[n];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            final BoundingBox b = unsorted[i].bounds();
+            if (b.isUnbounded()) throw new IllegalArgumentException("unbounded geometry in BVH");
+            unsortedBounds[i] = b;
+            minX = Math.min(minX, b.center(0));
+            minY = Math.min(minY, b.center(1));
+            minZ = Math.min(minZ, b.center(2));
+            maxX = Math.max(maxX, b.center(0));
+            maxY = Math.max(maxY, b.center(1));
+            maxZ = Math.max(maxZ, b.center(2));
+        }
+
+        // morton codes of centroids within the centroid bounds
+        final int bitsPerAxis = n <= SHORT_CODE_LIMIT ? 10 : 21;
+        final double scale = (1 << bitsPerAxis) - 1;
+        final double sx = maxX > minX ? scale / (maxX - minX) : 0;
+        final double sy = maxY > minY ? scale / (maxY - minY) : 0;
+        final double sz = maxZ > minZ ? scale / (maxZ - minZ) : 0;
+        final double cx = minX, cy = minY, cz = minZ;
+        final long[] keys = new long[n];
+        final int[] order = new int[n];
+        forEachChunk(n, i -> {
+            final BoundingBox b = unsortedBounds[i];
+            keys[i] = morton((long) ((b.center(0) - cx) * sx), (long) ((b.center(1) - cy) * sy), (long) ((b.center(2) - cz) * sz));
+            order[i] = i;
+        });
+        radixSort(keys, order, 3 * bitsPerAxis);
+
+        codes = keys;
+        primitives = new Geometry[n];
+        primitiveBounds = new BoundingBox[n];
+        forEachChunk(n, i -> {
+            primitives[i] = unsorted[order[i]];
+            primitiveBounds[i] = unsortedBounds[order[i]];
+        });
+
+        BVHBuilder.BuildNode root = null;
+        if (n > 0) {
+            root = emitHierarchy(n);
+            POOL.invoke(new BoundsTask(root));
+            if (optimizeTreelets) POOL.invoke(new TreeletTask(root, 0));
+        }
+        codes = null;
+
+        nodeCount = root == null ? 0 : count(root);
+        nodeBounds = new double[6 * nodeCount];
+        nodeData = new int[2 * nodeCount];
+        if (root != null) BVHBuilder.flatten(root, 0, nodeBounds, nodeData);
+        buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return build time in milliseconds per million primitives
+     */
+    public double millisPerMillionPrimitives() {
+        if (primitives.length == 0) return 0;
+        return (buildNanos / 1e6) / (primitives.length / 1e6);
+    }
+
+    /**
+     * interleaves the bits of three coordinates
+     * @param x x coordinate with at most 21 bits
+     * @param y y coordinate with at most 21 bits
+     * @param z z coordinate with at most 21 bits
+     * @return morton code
+     */
+    static long morton(final long x, final long y, final long z) {
+        return (spread(x) << 2) | (spread(y) << 1) | spread(z);
+    }
+
+    /**
+     * inserts two zero bits after each of the lower 21 bits
+     * @param v value
+     * @return spread value
+     */
+    private static long spread(long v) {
+        v &= 0x1fffffL;
+        v = (v | v << 32) & 0x1f00000000ffffL;
+        v = (v | v << 16) & 0x1f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    /**
+     * sorts keys and carries values along, least significant digit first
+     * every pass counts digits per chunk in parallel and scatters every chunk in parallel
+     * @param keys keys to sort
+     * @param values values moved with their keys
+     * @param bits significant bits of keys
+     */
+    private static void radixSort(final long[] keys, final int[] values, final int bits) {
+        final int n = keys.length;
+        final int buckets = 1 << RADIX_BITS;
+        final int chunks = Math.max(1, (n + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        long[] srcKeys = keys, dstKeys = new long[n];
+        int[] srcValues = values, dstValues = new int[n];
+
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            final int[][] offsets = new int[chunks][buckets];
+            final long[] sk = srcKeys;
+            final int s = shift;
+            POOL.invoke(new ChunkTask(0, chunks, c -> {
+                final int[] count = offsets[c];
+                for (int i = c * CHUNK_SIZE, end = Math.min(n, i + CHUNK_SIZE); i < end; i++) {
+                    count[(int) (sk[i] >>> s) & (buckets - 1)]++;
+                }
+            }));
+
+            // exclusive prefix over digits first and chunks second keeps the sort stable
+            int sum = 0;
+            for (int d = 0; d < buckets; d++) {
+                for (int c = 0; c < chunks; c++) {
+                    final int count = offsets[c][d];
+                    offsets[c][d] = sum;
+                    sum += count;
+                }
+            }
+
+            final int[] sv = srcValues;
+            final long[] dk = dstKeys;
+            final int[] dv = dstValues;
+            POOL.invoke(new ChunkTask(0, chunks, c -> {
+                final int[] offset = offsets[c];
+                for (int i = c * CHUNK_SIZE, end = Math.min(n, i + CHUNK_SIZE); i < end; i++) {
+                    final int target = offset[(int) (sk[i] >>> s) & (buckets - 1)]++;
+                    dk[target] = sk[i];
+                    dv[target] = sv[i];
+                }
+            }));
+
+            srcKeys = dk;
+            dstKeys = sk;
+            srcValues = dv;
+            dstValues = sv;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcValues, 0, values, 0, n);
+        }
+    }
+
+    /**
+     * runs an action for every chunk in a range of chunks
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final IntConsumer action;
+
+        ChunkTask(final int start, final int end, final IntConsumer action) {
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                final int mid = (start + end) >>> 1;
+                invokeAll(new ChunkTask(start, mid, action), new ChunkTask(mid, end, action));
+            } else if (end > start) {
+                action.accept(start);
+            }
+        }
+    }
+
+    /**
+     * runs an action for every index, chunks of indices in parallel
+     * @param n amount of indices
+     * @param action action per index
+     */
+    private static void forEachChunk(final int n, final IntConsumer action) {
+        final int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        POOL.invoke(new ChunkTask(0, chunks, c -> {
+            for (int i = c * CHUNK_SIZE, end = Math.min(n, i + CHUNK_SIZE); i < end; i++) {
+                action.accept(i);
+            }
+        }));
+    }
+
+    /**
+     * creates n - 1 inner nodes and n leaves and links them
+     * every inner node finds its range and split on its own, so all nodes are linked in parallel
+     * @param n amount of primitives
+     * @return root
+     */
+    private BVHBuilder.BuildNode emitHierarchy(final int n) {
+        final BVHBuilder.BuildNode[] leaves = new BVHBuilder.BuildNode[n];
+        final BVHBuilder.BuildNode[] inner = new BVHBuilder.BuildNode[Math.max(0, n - 1)];
+        forEachChunk(n, i -> {
+            leaves[i] = new BVHBuilder.BuildNode();
+            leaves[i].start = i;
+            leaves[i].count = 1;
+            if (i < n - 1) inner[i] = new BVHBuilder.BuildNode();
+        });
+        if (n == 1) return leaves[0];
+
+        forEachChunk(n - 1, i -> {
+            // direction of the range from the longer common prefix with a neighbour
+            final int d = delta(i, i + 1) - delta(i, i - 1) >= 0 ? 1 : -1;
+            final int deltaMin = delta(i, i - d);
+            int lMax = 2;
+            while (delta(i, i + lMax * d) > deltaMin) lMax *= 2;
+            int l = 0;
+            for (int t = lMax / 2; t >= 1; t /= 2) {
+                if (delta(i, i + (l + t) * d) > deltaMin) l += t;
+            }
+            final int j = i + l * d;
+
+            // split at the highest differing bit within the range
+            final int deltaNode = delta(i, j);
+            int s = 0;
+            int div = 2;
+            while (true) {
+                final int t = (l + div - 1) / div;
+                if (delta(i, i + (s + t) * d) > deltaNode) s += t;
+                if (t <= 1) break;
+                div *= 2;
+            }
+            final int gamma = i + s * d + Math.min(d, 0);
+            // inner nodes keep their range in start and count until BoundsTask
+            inner[i].start = Math.min(i, j);
+            inner[i].count = l + 1;
+            inner[i].left = Math.min(i, j) == gamma ? leaves[gamma] : inner[gamma];
+            inner[i].right = Math.max(i, j) == gamma + 1 ? leaves[gamma + 1] : inner[gamma + 1];
+        });
+        return inner[0];
+    }
+
+    /**
+     * length of the common prefix of two codes, equal codes are told apart by their index
+     * @param i first index
+     * @param j second index
+     * @return common prefix length or -1 if j is out of range
+     */
+    private int delta(final int i, final int j) {
+        if (j < 0 || j >= codes.length) return -1;
+        final long a = codes[i];
+        final long b = codes[j];
+        if (a == b) return 64 + Integer.numberOfLeadingZeros(i ^ j);
+        return Long.numberOfLeadingZeros(a ^ b);
+    }
+
+    /**
+     * calculates bounds and SAH cost bottom up and collapses small subtrees into leaves
+     * ranges of primitives are still continuous here since the tree follows the sorted order
+     */
+    private final class BoundsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BVHBuilder.BuildNode node;
+
+        BoundsTask(final BVHBuilder.BuildNode node) {
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                node.bounds = primitiveBounds[node.start];
+                node.cost = node.bounds.surfaceArea();
+                return;
+            }
+            final BoundsTask left = new BoundsTask(node.left);
+            final BoundsTask right = new BoundsTask(node.right);
+            if (node.count > CHUNK_SIZE) invokeAll(left, right);
+            else {
+                left.compute();
+                right.compute();
+            }
+            node.bounds = node.left.bounds.union(node.right.bounds);
+            final double area = node.bounds.surfaceArea();
+            node.cost = BVHBuilder.TRAVERSAL_COST * area + node.left.cost + node.right.cost;
+
+            if (node.count <= BVHBuilder.MAX_LEAF_SIZE && node.count * area <= node.cost) {
+                node.left = null;
+                node.right = null;
+                node.cost = node.count * area;
+            } else {
+                node.count = 0;
+            }
+        }
+    }
+
+    /**
+     * optimizes the treelets of all children before the treelet of a node
+     */
+    private static final class TreeletTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BVHBuilder.BuildNode node;
+        private final int depth;
+
+        TreeletTask(final BVHBuilder.BuildNode node, final int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) return;
+            final TreeletTask left = new TreeletTask(node.left, depth + 1);
+            final TreeletTask right = new TreeletTask(node.right, depth + 1);
+            if (depth < PARALLEL_TREELET_DEPTH) invokeAll(left, right);
+            else {
+                left.compute();
+                right.compute();
+            }
+            optimizeTreelet(node);
+        }
+    }
+
+    /**
+     * forms a treelet below node by opening the largest inner treelet leaf until seven leaves are found,
+     * then finds the cheapest binary tree over these leaves with dynamic programming over all subsets
+     * and rebuilds the treelet with it if that lowers the cost
+     * @param root root of treelet
+     */
+    private static void optimizeTreelet(final BVHBuilder.BuildNode root) {
+        final BVHBuilder.BuildNode[] leaves = new BVHBuilder.BuildNode[TREELET_SIZE];
+        final BVHBuilder.BuildNode[] inner = new BVHBuilder.BuildNode[TREELET_SIZE - 1];
+        int leafCount = 2;
+        int innerCount = 1;
+        leaves[0] = root.left;
+        leaves[1] = root.right;
+        inner[0] = root;
+        while (leafCount < TREELET_SIZE) {
+            int largest = -1;
+            for (int i = 0; i < leafCount; i++) {
+                if (leaves[i].left == null) continue;
+                if (largest == -1 || leaves[i].bounds.surfaceArea() > leaves[largest].bounds.surfaceArea()) largest = i;
+            }
+            if (largest == -1) break;
+            final BVHBuilder.BuildNode open = leaves[largest];
+            inner[innerCount++] = open;
+            leaves[largest] = open.left;
+            leaves[leafCount++] = open.right;
+        }
+        if (leafCount < 3) return;
+
+        final int subsets = 1 << leafCount;
+        final BoundingBox[] bounds = new BoundingBox[subsets];
+        final double[] cost = new double[subsets];
+        final int[] partition = new int[subsets];
+        for (int s = 1; s < subsets; s++) {
+            final int low = Integer.numberOfTrailingZeros(s);
+            if (s == (1 << low)) {
+                bounds[s] = leaves[low].bounds;
+                cost[s] = leaves[low].cost;
+                continue;
+            }
+            bounds[s] = bounds[s & (s - 1)].union(leaves[low].bounds);
+        }
+        // subsets in increasing order, every proper subset is smaller than its set
+        for (int s = 1; s < subsets; s++) {
+            if (Integer.bitCount(s) < 2) continue;
+            double best = Double.POSITIVE_INFINITY;
+            for (int p = (s - 1) & s; p > 0; p = (p - 1) & s) {
+                final double c = cost[p] + cost[s ^ p];
+                if (c < best) {
+                    best = c;
+                    partition[s] = p;
+                }
+            }
+            cost[s] = BVHBuilder.TRAVERSAL_COST * bounds[s].surfaceArea() + best;
+        }
+
+        if (cost[subsets - 1] >= root.cost * (1 - 1e-9)) return;
+        final int[] next = {0};
+        rebuild(subsets - 1, leaves, inner, next, bounds, cost, partition);
+    }
+
+    /**
+     * writes the optimal topology of a subset of treelet leaves into the inner nodes of the treelet
+     * @param s subset of leaves
+     * @param leaves leaves of treelet
+     * @param inner inner nodes of treelet, reused in order, the first is the treelet root
+     * @param next next unused inner node
+     * @param bounds bounds of every subset
+     * @param cost cost of every subset
+     * @param partition best left part of every subset
+     * @return node of subset
+     */
+    private static BVHBuilder.BuildNode rebuild(final int s, final BVHBuilder.BuildNode[] leaves, final BVHBuilder.BuildNode[] inner,
+                                                final int[] next, final BoundingBox[] bounds, final double[] cost, final int[] partition) {
+        if (Integer.bitCount(s) == 1) return leaves[Integer.numberOfTrailingZeros(s)];
+        final BVHBuilder.BuildNode node = inner[next[0]++];
+        node.left = rebuild(partition[s], leaves, inner, next, bounds, cost, partition);
+        node.right = rebuild(s ^ partition[s], leaves, inner, next, bounds, cost, partition);
+        node.bounds = bounds[s];
+        node.cost = cost[s];
+        return node;
+    }
+
+    /**
+     * @param node root of subtree
+     * @return number of nodes in subtree
+     */
+    private static int count(final BVHBuilder.BuildNode node) {
+        if (node.left == null) return 1;
+        return 1 + count(node.left) + count(node.right);
+    }
+}
@@ -0,0 +1,42 @@
+package Acceleration;
+
+/**
+ * tests the four children one after another
+ * used if the vector api is not available
+ */
+public class ScalarWideBoxTest implements WideBoxTest {
+
+    @Override
+    public int intersect(final double[] bounds, final int base, final double ox, final double oy, final double oz,
+                         final double invX, final double invY, final double invZ, final double tMax, final double[] tNear) {
+        int mask = 0;
+        for (int i = 0; i < 4; i++) {
+            double near = 0;
+            double far = tMax;
+
+            double t0 = (bounds[base + i] - ox) * invX;
+            double t1 = (bounds[base + 12 + i] - ox) * invX;
+            if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+            if (t0 > near) near = t0;
+            if (t1 < far) far = t1;
+
+            t0 = (bounds[base + 4 + i] - oy) * invY;
+            t1 = (bounds[base + 16 + i] - oy) * invY;
+            if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+            if (t0 > near) near = t0;
+            if (t1 < far) far = t1;
+
+            t0 = (bounds[base + 8 + i] - oz) * invZ;
+            t1 = (bounds[base + 20 + i] - oz) * invZ;
+            if (t0 > t1) { final double tmp = t0; t0 = t1; t1 = tmp; }
+            if (t0 > near) near = t0;
+            if (t1 < far) far = t1;
+
+            if (near <= far) {
+                mask |= 1 << i;
+                tNear[i] = near;
+            }
+        }
+        return mask;
+    }
+}
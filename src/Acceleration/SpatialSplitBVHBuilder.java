@@ -0,0 +1,494 @@
+package Acceleration;
+
+import Geometry.Geometry;
+import Geometry.Triangle;
+import MathLib.Point3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * builds a bounding volume hierarchy with spatial splits (SBVH)
+ * besides the binned object splits of BVHBuilder every node also tries to cut space
+ * at a plane, primitives crossing the plane are referenced from both children
+ * with bounds clipped to their side, which helps with long thin triangles
+ * whose boxes overlap heavily
+ * the amount of extra references is limited by a memory budget
+ * leaves may reference the same primitive, so primitives can occur more than once
+ */
+public class SpatialSplitBVHBuilder {
+
+    /**
+     * spatial splits are only tried if the children of the best object split overlap
+     * by more than this fraction of the surface area of the root
+     */
+    private static final double OVERLAP_THRESHOLD = 1e-5;
+
+    /**
+     * one reference of a primitive with bounds clipped to the part in a node
+     */
+    private static final class Reference {
+        final int index;
+        final BoundingBox bounds;
+
+        Reference(final int index, final BoundingBox bounds) {
+            this.index = index;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * best split found for a node
+     * object splits partition by bin of centroid, spatial splits by position of plane
+     */
+    private static final class Split {
+        boolean spatial;
+        int axis;
+        int bin;
+        double min;
+        double extent;
+        double position;
+        double cost = Double.POSITIVE_INFINITY;
+        BoundingBox left;
+        BoundingBox right;
+        int leftCount;
+        int rightCount;
+    }
+
+    /**
+     * geometries the hierarchy is built over
+     */
+    private final Geometry[] items;
+
+    /**
+     * references may not exceed this amount
+     */
+    private final int maxReferences;
+
+    /**
+     * references created so far
+     */
+    private int references;
+
+    /**
+     * surface area of root
+     */
+    private final double rootArea;
+
+    /**
+     * primitives of all leaves in depth first order
+     */
+    private final ArrayList<Geometry> ordered = new ArrayList<Geometry>();
+
+    /**
+     * primitives ordered so that every leaf references a continuous range
+     * primitives split by a plane occur once per leaf
+     */
+    final Geometry[] primitives;
+
+    /**
+     * six values per node: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    double[] nodeBounds;
+
+    /**
+     * two values per node
+     * leaf: offset of first primitive and amount of primitives
+     * inner node: index of right child and 0, left child always follows its parent
+     */
+    int[] nodeData;
+
+    /**
+     * number of nodes in the tree
+     */
+    int nodeCount;
+
+    /**
+     * time the build took in nanoseconds
+     */
+    final long buildNanos;
+
+    /**
+     * Constructor builds the hierarchy
+     * throws IllegalArgumentException if items is null, contains unbounded geometries
+     * or maxOverhead is negative
+     * @param items bounded geometries, triangles are clipped exactly, other geometries by their bounds
+     * @param maxOverhead allowed extra references as fraction of primitives, 0.3 allows 30% more
+     */
+    public SpatialSplitBVHBuilder(final List<? extends Geometry> items, final double maxOverhead) {
+        if (items == null || maxOverhead < 0) throw new IllegalArgumentException();
+        final long start = System.nanoTime();
+        this.items = items.toArray(new Geometry[0]);
+        this.maxReferences = (int) Math.min(Integer.MAX_VALUE - 8, this.items.length * (1.0 + maxOverhead));
+
+        final ArrayList<Reference> refs = new ArrayList<Reference>(this.items.length);
+        BoundingBox bounds = BoundingBox.EMPTY;
+        for (int i = 0; i < this.items.length; i++) {
+            final BoundingBox b = this.items[i].bounds();
+            if (b.isUnbounded()) throw new IllegalArgumentException("unbounded geometry in BVH");
+            refs.add(new Reference(i, b));
+            bounds = bounds.union(b);
+        }
+        references = refs.size();
+        rootArea = bounds.surfaceArea();
+
+        final BVHBuilder.BuildNode root = refs.isEmpty() ? null : build(refs, 0);
+        primitives = ordered.toArray(new Geometry[0]);
+        nodeBounds = new double[6 * nodeCount];
+        nodeData = new int[2 * nodeCount];
+        if (root != null) BVHBuilder.flatten(root, 0, nodeBounds, nodeData);
+        buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return build time in milliseconds per million primitives
+     */
+    public double millisPerMillionPrimitives() {
+        if (items.length == 0) return 0;
+        return (buildNanos / 1e6) / (items.length / 1e6);
+    }
+
+    /**
+     * @return amount of references in all leaves divided by amount of primitives
+     */
+    public double referenceRatio() {
+        return items.length == 0 ? 1 : (double) primitives.length / items.length;
+    }
+
+    /**
+     * builds subtree over references
+     * @param refs references of node
+     * @param depth depth of node
+     * @return node
+     */
+    private BVHBuilder.BuildNode build(final List<Reference> refs, final int depth) {
+        nodeCount++;
+        final BVHBuilder.BuildNode node = new BVHBuilder.BuildNode();
+        BoundingBox bounds = BoundingBox.EMPTY;
+        for (Reference ref : refs) bounds = bounds.union(ref.bounds);
+        node.bounds = bounds;
+
+        final int count = refs.size();
+        if (count == 1 || depth >= BVH.MAX_DEPTH - 1) return leaf(node, refs);
+
+        Split best = objectSplit(refs);
+        if (references < maxReferences && (best == null || overlap(best.left, best.right) / rootArea > OVERLAP_THRESHOLD)) {
+            final Split spatial = spatialSplit(refs, bounds);
+            if (spatial != null && (best == null || spatial.cost < best.cost)) best = spatial;
+        }
+        if (best == null) {
+            // all centroids at the same position and nothing to cut
+            return leaf(node, refs);
+        }
+
+        final double area = bounds.surfaceArea();
+        final double splitCost = area > 0 ? BVHBuilder.TRAVERSAL_COST + best.cost / area : BVHBuilder.TRAVERSAL_COST + count;
+        if (count <= BVHBuilder.MAX_LEAF_SIZE && splitCost >= count) return leaf(node, refs);
+
+        final ArrayList<Reference> left = new ArrayList<Reference>();
+        final ArrayList<Reference> right = new ArrayList<Reference>();
+        if (best.spatial) partitionSpatial(refs, best, left, right);
+        else partitionObject(refs, best, left, right);
+        if (left.isEmpty() || right.isEmpty()) {
+            left.clear();
+            right.clear();
+            left.addAll(refs.subList(0, count / 2));
+            right.addAll(refs.subList(count / 2, count));
+        }
+
+        node.left = build(left, depth + 1);
+        node.right = build(right, depth + 1);
+        return node;
+    }
+
+    /**
+     * turns node into leaf and appends its primitives
+     * @param node node to be leaf
+     * @param refs references of node
+     * @return node
+     */
+    private BVHBuilder.BuildNode leaf(final BVHBuilder.BuildNode node, final List<Reference> refs) {
+        node.start = ordered.size();
+        node.count = refs.size();
+        for (Reference ref : refs) ordered.add(items[ref.index]);
+        return node;
+    }
+
+    /**
+     * best binned SAH split of references by their centroids
+     * @param refs references of node
+     * @return split or null if all centroids are at the same position
+     */
+    private Split objectSplit(final List<Reference> refs) {
+        final double[] cMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        final double[] cMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Reference ref : refs) {
+            for (int axis = 0; axis < 3; axis++) {
+                final double c = ref.bounds.center(axis);
+                if (c < cMin[axis]) cMin[axis] = c;
+                if (c > cMax[axis]) cMax[axis] = c;
+            }
+        }
+
+        Split best = null;
+        for (int axis = 0; axis < 3; axis++) {
+            final double extent = cMax[axis] - cMin[axis];
+            if (extent <= 0) continue;
+            final BoundingBox[] binBounds = new BoundingBox[BVHBuilder.BIN_COUNT];
+            final int[] binCounts = new int[BVHBuilder.BIN_COUNT];
+            for (Reference ref : refs) {
+                final int b = BVHBuilder.binIndex(ref.bounds.center(axis), cMin[axis], extent);
+                binBounds[b] = binCounts[b]++ == 0 ? ref.bounds : binBounds[b].union(ref.bounds);
+            }
+            final Split split = sweep(false, axis, binBounds, binCounts, binCounts);
+            if (split != null && (best == null || split.cost < best.cost)) {
+                split.min = cMin[axis];
+                split.extent = extent;
+                best = split;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * best split cutting space into bins of equal size
+     * references are clipped to every bin they cross
+     * @param refs references of node
+     * @param bounds bounds of node
+     * @return split or null if the node is flat on every axis
+     */
+    private Split spatialSplit(final List<Reference> refs, final BoundingBox bounds) {
+        Split best = null;
+        for (int axis = 0; axis < 3; axis++) {
+            final double min = bounds.min(axis);
+            final double extent = bounds.max(axis) - min;
+            if (extent <= 0) continue;
+            final BoundingBox[] binBounds = new BoundingBox[BVHBuilder.BIN_COUNT];
+            final int[] entries = new int[BVHBuilder.BIN_COUNT];
+            final int[] exits = new int[BVHBuilder.BIN_COUNT];
+            for (Reference ref : refs) {
+                final int first = BVHBuilder.binIndex(ref.bounds.min(axis), min, extent);
+                final int last = BVHBuilder.binIndex(ref.bounds.max(axis), min, extent);
+                entries[first]++;
+                exits[last]++;
+                for (int b = first; b <= last; b++) {
+                    final BoundingBox clipped = first == last ? ref.bounds
+                            : clip(ref, axis, planePosition(min, extent, b), planePosition(min, extent, b + 1));
+                    if (clipped == null) continue;
+                    binBounds[b] = binBounds[b] == null ? clipped : binBounds[b].union(clipped);
+                }
+            }
+            final Split split = sweep(true, axis, binBounds, entries, exits);
+            if (split != null && (best == null || split.cost < best.cost)) {
+                split.min = min;
+                split.extent = extent;
+                split.position = planePosition(min, extent, split.bin);
+                best = split;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * evaluates the split after every bin of an axis
+     * @param spatial true if bins cut space
+     * @param axis axis of bins
+     * @param binBounds bounds of every bin, null if empty
+     * @param leftCounts references counted on the left side of a split after this bin
+     * @param rightCounts references counted on the right side of a split before this bin
+     * @return cheapest split on this axis or null if every split leaves one side empty
+     */
+    private static Split sweep(final boolean spatial, final int axis, final BoundingBox[] binBounds,
+                               final int[] leftCounts, final int[] rightCounts) {
+        final int bins = binBounds.length;
+        final BoundingBox[] rightBounds = new BoundingBox[bins];
+        final int[] rightCount = new int[bins];
+        BoundingBox acc = BoundingBox.EMPTY;
+        int accCount = 0;
+        for (int b = bins - 1; b > 0; b--) {
+            if (binBounds[b] != null) acc = acc.union(binBounds[b]);
+            accCount += rightCounts[b];
+            rightBounds[b] = acc;
+            rightCount[b] = accCount;
+        }
+
+        Split best = null;
+        acc = BoundingBox.EMPTY;
+        accCount = 0;
+        for (int b = 1; b < bins; b++) {
+            if (binBounds[b - 1] != null) acc = acc.union(binBounds[b - 1]);
+            accCount += leftCounts[b - 1];
+            if (accCount == 0 || rightCount[b] == 0) continue;
+            final double cost = acc.surfaceArea() * accCount + rightBounds[b].surfaceArea() * rightCount[b];
+            if (best == null || cost < best.cost) {
+                if (best == null) best = new Split();
+                best.spatial = spatial;
+                best.axis = axis;
+                best.bin = b;
+                best.cost = cost;
+                best.left = acc;
+                best.right = rightBounds[b];
+                best.leftCount = accCount;
+                best.rightCount = rightCount[b];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * distributes references by the bin of their centroid
+     * @param refs references of node
+     * @param split object split
+     * @param left references of left child
+     * @param right references of right child
+     */
+    private void partitionObject(final List<Reference> refs, final Split split, final List<Reference> left, final List<Reference> right) {
+        for (Reference ref : refs) {
+            if (BVHBuilder.binIndex(ref.bounds.center(split.axis), split.min, split.extent) < split.bin) left.add(ref);
+            else right.add(ref);
+        }
+    }
+
+    /**
+     * distributes references by the side of the plane they are on
+     * a reference crossing the plane is moved completely to one side if that is cheaper
+     * than splitting it, otherwise it is clipped into both children
+     * @param refs references of node
+     * @param split spatial split
+     * @param left references of left child
+     * @param right references of right child
+     */
+    private void partitionSpatial(final List<Reference> refs, final Split split, final List<Reference> left, final List<Reference> right) {
+        final int axis = split.axis;
+        final double position = split.position;
+        BoundingBox leftBounds = split.left;
+        BoundingBox rightBounds = split.right;
+        int leftCount = split.leftCount;
+        int rightCount = split.rightCount;
+
+        for (Reference ref : refs) {
+            if (ref.bounds.max(axis) <= position) {
+                left.add(ref);
+                continue;
+            }
+            if (ref.bounds.min(axis) >= position) {
+                right.add(ref);
+                continue;
+            }
+
+            final BoundingBox leftPart = clip(ref, axis, Double.NEGATIVE_INFINITY, position);
+            final BoundingBox rightPart = clip(ref, axis, position, Double.POSITIVE_INFINITY);
+            if (leftPart == null) {
+                right.add(ref);
+                continue;
+            }
+            if (rightPart == null) {
+                left.add(ref);
+                continue;
+            }
+
+            // reference unsplitting: compare keeping the whole reference on one side with splitting it
+            final BoundingBox leftUnion = leftBounds.union(ref.bounds);
+            final BoundingBox rightUnion = rightBounds.union(ref.bounds);
+            final double splitCost = leftBounds.surfaceArea() * leftCount + rightBounds.surfaceArea() * rightCount;
+            final double leftCost = leftUnion.surfaceArea() * leftCount + rightBounds.surfaceArea() * (rightCount - 1);
+            final double rightCost = leftBounds.surfaceArea() * (leftCount - 1) + rightUnion.surfaceArea() * rightCount;
+            if (references < maxReferences && splitCost <= Math.min(leftCost, rightCost)) {
+                left.add(new Reference(ref.index, leftPart));
+                right.add(new Reference(ref.index, rightPart));
+                references++;
+            } else if (leftCost <= rightCost) {
+                left.add(ref);
+                leftBounds = leftUnion;
+                rightCount--;
+            } else {
+                right.add(ref);
+                rightBounds = rightUnion;
+                leftCount--;
+            }
+        }
+    }
+
+    /**
+     * bounds of the part of a reference between two planes
+     * triangles are clipped at their edges, other geometries only by their bounds
+     * @param ref reference to clip
+     * @param axis axis of planes
+     * @param lo lower plane
+     * @param hi upper plane
+     * @return clipped bounds or null if nothing remains
+     */
+    private BoundingBox clip(final Reference ref, final int axis, final double lo, final double hi) {
+        BoundingBox box = ref.bounds;
+        final Geometry geometry = items[ref.index];
+        if (geometry instanceof Triangle) {
+            box = clipTriangle((Triangle) geometry, axis, lo, hi);
+            if (box.isEmpty()) return null;
+        }
+        final double[] min = {Math.max(box.minX, ref.bounds.minX), Math.max(box.minY, ref.bounds.minY), Math.max(box.minZ, ref.bounds.minZ)};
+        final double[] max = {Math.min(box.maxX, ref.bounds.maxX), Math.min(box.maxY, ref.bounds.maxY), Math.min(box.maxZ, ref.bounds.maxZ)};
+        min[axis] = Math.max(min[axis], lo);
+        max[axis] = Math.min(max[axis], hi);
+        if (min[0] > max[0] || min[1] > max[1] || min[2] > max[2]) return null;
+        return new BoundingBox(min[0], min[1], min[2], max[0], max[1], max[2]);
+    }
+
+    /**
+     * bounds of the corners of a triangle between two planes and of the points where its edges cross them
+     * @param t triangle
+     * @param axis axis of planes
+     * @param lo lower plane
+     * @param hi upper plane
+     * @return bounds, empty if the triangle lies outside
+     */
+    private static BoundingBox clipTriangle(final Triangle t, final int axis, final double lo, final double hi) {
+        final Point3[] corners = {t.a, t.b, t.c};
+        BoundingBox box = BoundingBox.EMPTY;
+        for (int i = 0; i < 3; i++) {
+            final Point3 p = corners[i];
+            final Point3 q = corners[(i + 1) % 3];
+            final double pa = coordinate(p, axis);
+            final double qa = coordinate(q, axis);
+            if (pa >= lo && pa <= hi) box = box.union(p.x, p.y, p.z);
+            for (double plane : new double[]{lo, hi}) {
+                if ((pa < plane && qa > plane) || (pa > plane && qa < plane)) {
+                    final double s = (plane - pa) / (qa - pa);
+                    box = box.union(p.x + s * (q.x - p.x), p.y + s * (q.y - p.y), p.z + s * (q.z - p.z));
+                }
+            }
+        }
+        return box;
+    }
+
+    /**
+     * @param p point
+     * @param axis 0 for x, 1 for y, 2 for z
+     * @return coordinate of point on axis
+     */
+    private static double coordinate(final Point3 p, final int axis) {
+        return axis == 0 ? p.x : axis == 1 ? p.y : p.z;
+    }
+
+    /**
+     * @param min minimum of node on axis
+     * @param extent extent of node on axis
+     * @param b index of bin
+     * @return position of the plane in front of bin b
+     */
+    private static double planePosition(final double min, final double extent, final int b) {
+        return b == BVHBuilder.BIN_COUNT ? min + extent : min + extent * b / BVHBuilder.BIN_COUNT;
+    }
+
+    /**
+     * @param a first box
+     * @param b second box
+     * @return surface area of the intersection of both boxes, 0 if they are disjoint
+     */
+    private static double overlap(final BoundingBox a, final BoundingBox b) {
+        final double dx = Math.min(a.maxX, b.maxX) - Math.max(a.minX, b.minX);
+        final double dy = Math.min(a.maxY, b.maxY) - Math.max(a.minY, b.minY);
+        final double dz = Math.min(a.maxZ, b.maxZ) - Math.max(a.minZ, b.minZ);
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+}
@@ -0,0 +1,361 @@
+package Acceleration;
+
+import Geometry.Geometry;
+import Raytracer.HitRecord;
+import Raytracer.Ray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * uniform grid over bounded geometries
+ * every cell references all primitives whose bounds overlap it, stored as one
+ * flat index array with an offset per cell
+ * rays walk through the cells in order with 3D-DDA and stop as soon as
+ * the closest hit lies within the current cell
+ */
+public class UniformGrid implements Accelerator {
+
+    /**
+     * aimed amount of cells per primitive
+     */
+    private static final double CELLS_PER_PRIMITIVE = 2.0;
+
+    /**
+     * maximal amount of cells per axis
+     */
+    private static final int MAX_RESOLUTION = 256;
+
+    /**
+     * per thread mailbox so primitives in several cells are only tested once per ray
+     */
+    private static final class Mailbox {
+        int[] lastRay;
+        int ray;
+    }
+
+    /**
+     * primitives of the grid
+     */
+    private final Geometry[] primitives;
+
+    /**
+     * bounds of grid
+     */
+    private final BoundingBox bounds;
+
+    /**
+     * amount of cells per axis
+     */
+    private final int nx, ny, nz;
+
+    /**
+     * size of a cell per axis
+     */
+    private final double cellX, cellY, cellZ;
+
+    /**
+     * offset of the first primitive index of every cell, one more entry than cells
+     */
+    private final int[] cellStart;
+
+    /**
+     * primitive indices of all cells
+     */
+    private final int[] cellItems;
+
+    /**
+     * counted tests
+     */
+    private final AcceleratorStats stats = new AcceleratorStats();
+
+    /**
+     * one mailbox per rendering thread
+     */
+    private final ThreadLocal<Mailbox> mailboxes = ThreadLocal.withInitial(Mailbox::new);
+
+    /**
+     * Constructor builds the grid
+     * resolution follows the extent of the bounds so cells are close to cubes
+     * throws IllegalArgumentException if items is null or contains unbounded geometries
+     * @param items bounded geometries
+     */
+    public UniformGrid(final List<? extends Geometry> items) {
+        if (items == null) throw new IllegalArgumentException();
+        primitives = items.toArray(new Geometry[0]);
+        final BoundingBox[] itemBounds = new BoundingBox[primitives.length];
+        BoundingBox b = BoundingBox.EMPTY;
+        for (int i = 0; i < primitives.length; i++) {
+            itemBounds[i] = primitives[i].bounds();
+            if (itemBounds[i].isUnbounded()) throw new IllegalArgumentException("unbounded geometry in grid");
+            b = b.union(itemBounds[i]);
+        }
+        // flat scenes still need a volume
+        bounds = primitives.length == 0 ? BoundingBox.EMPTY : b.expand(1e-6 * Math.max(1, Math.max(b.maxX - b.minX, Math.max(b.maxY - b.minY, b.maxZ - b.minZ))));
+
+        final double dx = bounds.maxX - bounds.minX;
+        final double dy = bounds.maxY - bounds.minY;
+        final double dz = bounds.maxZ - bounds.minZ;
+        final double cellsPerUnit = primitives.length == 0 ? 0 : Math.cbrt(CELLS_PER_PRIMITIVE * primitives.length / (dx * dy * dz));
+        nx = resolution(dx, cellsPerUnit);
+        ny = resolution(dy, cellsPerUnit);
+        nz = resolution(dz, cellsPerUnit);
+        cellX = dx / nx;
+        cellY = dy / ny;
+        cellZ = dz / nz;
+
+        // count references per cell, then fill them in a second pass
+        cellStart = new int[nx * ny * nz + 1];
+        for (BoundingBox ib : itemBounds) {
+            forEachCell(ib, cell -> cellStart[cell + 1]++);
+        }
+        for (int c = 0; c < nx * ny * nz; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[cellStart[nx * ny * nz]];
+        final int[] fill = new int[nx * ny * nz];
+        for (int i = 0; i < itemBounds.length; i++) {
+            final int item = i;
+            forEachCell(itemBounds[i], cell -> cellItems[cellStart[cell] + fill[cell]++] = item);
+        }
+    }
+
+    /**
+     * callback for every cell overlapped by a box
+     */
+    private interface CellAction {
+        void apply(int cell);
+    }
+
+    /**
+     * calls action for every cell overlapped by a box
+     * @param b box
+     * @param action action to run
+     */
+    private void forEachCell(final BoundingBox b, final CellAction action) {
+        final int x0 = cell(b.minX, bounds.minX, cellX, nx), x1 = cell(b.maxX, bounds.minX, cellX, nx);
+        final int y0 = cell(b.minY, bounds.minY, cellY, ny), y1 = cell(b.maxY, bounds.minY, cellY, ny);
+        final int z0 = cell(b.minZ, bounds.minZ, cellZ, nz), z1 = cell(b.maxZ, bounds.minZ, cellZ, nz);
+        for (int z = z0; z <= z1; z++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    action.apply(x + nx * (y + ny * z));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param extent extent of bounds on axis
+     * @param cellsPerUnit cells per unit of length
+     * @return amount of cells on axis
+     */
+    private static int resolution(final double extent, final double cellsPerUnit) {
+        final int n = (int) Math.round(extent * cellsPerUnit);
+        return n < 1 ? 1 : Math.min(n, MAX_RESOLUTION);
+    }
+
+    /**
+     * @param value coordinate
+     * @param min minimum of grid on axis
+     * @param size size of cell on axis
+     * @param n amount of cells on axis
+     * @return index of cell on axis, clamped to the grid
+     */
+    private static int cell(final double value, final double min, final double size, final int n) {
+        final int c = (int) ((value - min) / size);
+        return c < 0 ? 0 : c >= n ? n - 1 : c;
+    }
+
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        if (primitives.length == 0) return false;
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double dx = r.d.x, dy = r.d.y, dz = r.d.z;
+        // infinite limits would turn slabs parallel to the ray into NaN
+        double closest = Math.min(tMax, Double.MAX_VALUE);
+        final double tEnter = bounds.intersect(ox, oy, oz, 1.0 / dx, 1.0 / dy, 1.0 / dz, closest);
+        if (tEnter == Double.POSITIVE_INFINITY) {
+            stats.record(1, 0);
+            return false;
+        }
+
+        final Mailbox mailbox = mailboxes.get();
+        if (mailbox.lastRay == null || mailbox.lastRay.length < primitives.length) {
+            mailbox.lastRay = new int[primitives.length];
+            mailbox.ray = 0;
+        }
+        final int[] lastRay = mailbox.lastRay;
+        if (++mailbox.ray == 0) {
+            // stamps wrapped around, old stamps could match again
+            Arrays.fill(mailbox.lastRay, 0);
+            mailbox.ray = 1;
+        }
+        final int ray = mailbox.ray;
+
+        // cell of entry point and distances to next cell borders
+        int x = cell(ox + tEnter * dx, bounds.minX, cellX, nx);
+        int y = cell(oy + tEnter * dy, bounds.minY, cellY, ny);
+        int z = cell(oz + tEnter * dz, bounds.minZ, cellZ, nz);
+        final int stepX = dx >= 0 ? 1 : -1, stepY = dy >= 0 ? 1 : -1, stepZ = dz >= 0 ? 1 : -1;
+        final int endX = dx >= 0 ? nx : -1, endY = dy >= 0 ? ny : -1, endZ = dz >= 0 ? nz : -1;
+        final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellX / Math.abs(dx);
+        final double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellY / Math.abs(dy);
+        final double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : cellZ / Math.abs(dz);
+        double nextX = dx == 0 ? Double.POSITIVE_INFINITY : (bounds.minX + (x + (dx > 0 ? 1 : 0)) * cellX - ox) / dx;
+        double nextY = dy == 0 ? Double.POSITIVE_INFINITY : (bounds.minY + (y + (dy > 0 ? 1 : 0)) * cellY - oy) / dy;
+        double nextZ = dz == 0 ? Double.POSITIVE_INFINITY : (bounds.minZ + (z + (dz > 0 ? 1 : 0)) * cellZ - oz) / dz;
+
+        boolean found = false;
+        int cells = 1;
+        int tests = 0;
+        while (true) {
+            final int c = x + nx * (y + ny * z);
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                final int i = cellItems[k];
+                if (lastRay[i] == ray) continue;
+                lastRay[i] = ray;
+                tests++;
+                if (primitives[i].intersect(r, tMin, closest, rec)) {
+                    found = true;
+                    closest = rec.t;
+                }
+            }
+
+            // hits behind the border of this cell may be beaten by primitives of the next cells
+            final double tExit = Math.min(nextX, Math.min(nextY, nextZ));
+            if (closest <= tExit) break;
+
+            cells++;
+            if (nextX <= nextY && nextX <= nextZ) {
+                x += stepX;
+                if (x == endX) break;
+                nextX += deltaX;
+            } else if (nextY <= nextZ) {
+                y += stepY;
+                if (y == endY) break;
+                nextY += deltaY;
+            } else {
+                z += stepZ;
+                if (z == endZ) break;
+                nextZ += deltaZ;
+            }
+        }
+        stats.record(cells, tests);
+        return found;
+    }
+
+    /**
+     * any hit query used by shadow rays
+     * walks the cells like hit but stops at the first primitive hit before tMax
+     * or once the next cell starts behind tMax
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if a primitive is hit before tMax
+     */
+    @Override
+    public boolean occluded(final Ray r, final double tMax) {
+        if (primitives.length == 0) return false;
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double dx = r.d.x, dy = r.d.y, dz = r.d.z;
+        final double tEnter = bounds.intersect(ox, oy, oz, 1.0 / dx, 1.0 / dy, 1.0 / dz, Math.min(tMax, Double.MAX_VALUE));
+        if (tEnter == Double.POSITIVE_INFINITY) {
+            stats.record(1, 0);
+            return false;
+        }
+
+        final Mailbox mailbox = mailboxes.get();
+        if (mailbox.lastRay == null || mailbox.lastRay.length < primitives.length) {
+            mailbox.lastRay = new int[primitives.length];
+            mailbox.ray = 0;
+        }
+        final int[] lastRay = mailbox.lastRay;
+        if (++mailbox.ray == 0) {
+            Arrays.fill(mailbox.lastRay, 0);
+            mailbox.ray = 1;
+        }
+        final int ray = mailbox.ray;
+
+        int x = cell(ox + tEnter * dx, bounds.minX, cellX, nx);
+        int y = cell(oy + tEnter * dy, bounds.minY, cellY, ny);
+        int z = cell(oz + tEnter * dz, bounds.minZ, cellZ, nz);
+        final int stepX = dx >= 0 ? 1 : -1, stepY = dy >= 0 ? 1 : -1, stepZ = dz >= 0 ? 1 : -1;
+        final int endX = dx >= 0 ? nx : -1, endY = dy >= 0 ? ny : -1, endZ = dz >= 0 ? nz : -1;
+        final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellX / Math.abs(dx);
+        final double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellY / Math.abs(dy);
+        final double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : cellZ / Math.abs(dz);
+        double nextX = dx == 0 ? Double.POSITIVE_INFINITY : (bounds.minX + (x + (dx > 0 ? 1 : 0)) * cellX - ox) / dx;
+        double nextY = dy == 0 ? Double.POSITIVE_INFINITY : (bounds.minY + (y + (dy > 0 ? 1 : 0)) * cellY - oy) / dy;
+        double nextZ = dz == 0 ? Double.POSITIVE_INFINITY : (bounds.minZ + (z + (dz > 0 ? 1 : 0)) * cellZ - oz) / dz;
+
+        int cells = 1;
+        int tests = 0;
+        while (true) {
+            final int c = x + nx * (y + ny * z);
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                final int i = cellItems[k];
+                if (lastRay[i] == ray) continue;
+                lastRay[i] = ray;
+                tests++;
+                if (primitives[i].occludes(r, tMax)) {
+                    stats.record(cells, tests);
+                    return true;
+                }
+            }
+
+            // next cell starts behind the occluding range
+            if (Math.min(nextX, Math.min(nextY, nextZ)) >= tMax) break;
+
+            cells++;
+            if (nextX <= nextY && nextX <= nextZ) {
+                x += stepX;
+                if (x == endX) break;
+                nextX += deltaX;
+            } else if (nextY <= nextZ) {
+                y += stepY;
+                if (y == endY) break;
+                nextY += deltaY;
+            } else {
+                z += stepZ;
+                if (z == endZ) break;
+                nextZ += deltaZ;
+            }
+        }
+        stats.record(cells, tests);
+        return false;
+    }
+
+    @Override
+    public BoundingBox bounds() {
+        return bounds;
+    }
+
+    @Override
+    public int size() {
+        return primitives.length;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nx * ny * nz;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 4L * (cellStart.length + cellItems.length) + 8L * primitives.length;
+    }
+
+    @Override
+    public AcceleratorStats statistics() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "UniformGrid{" +
+                "primitives=" + primitives.length +
+                ", resolution=" + nx + "x" + ny + "x" + nz +
+                ", references=" + cellItems.length +
+                '}';
+    }
+}
@@ -0,0 +1,433 @@
+package Acceleration;
+
+import Geometry.Geometry;
+import Raytracer.Hit;
+import Raytracer.HitRecord;
+import Raytracer.Ray;
+
+import java.util.Arrays;
+
+/**
+ * four wide bounding volume hierarchy collapsed from a binary BVH
+ * every node stores the bounds of its four children as structure of arrays
+ * so all children are tested with one WideBoxTest call
+ * leaves keep the primitive ranges of the binary tree
+ */
+public class WideBVH {
+
+    /**
+     * true if VectorWideBoxTest was compiled from src-vector and the incubating vector api can be used in this vm
+     */
+    public static final boolean SIMD_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && WideBVH.class.getResource("VectorWideBoxTest.class") != null;
+
+    /**
+     * amount of children per node
+     */
+    private static final int WIDTH = 4;
+
+    /**
+     * node stack of one thread
+     * entries >= 0 are wide nodes, entries < 0 are leaf slots encoded as -(slot + 1)
+     */
+    private static final class TraversalStack {
+        final int[] entries;
+        final double[] tNear;
+        final double[] childNear = new double[WIDTH];
+        final int[] order = new int[WIDTH];
+
+        TraversalStack(final int size) {
+            entries = new int[size];
+            tNear = new double[size];
+        }
+    }
+
+    /**
+     * primitives of the binary tree
+     */
+    private final Geometry[] primitives;
+
+    /**
+     * 24 values per node: minX[4], minY[4], minZ[4], maxX[4], maxY[4], maxZ[4]
+     */
+    private double[] childBounds;
+
+    /**
+     * four values per node
+     * leaf slot: offset of first primitive, inner slot: index of child node
+     */
+    private int[] childOffsets;
+
+    /**
+     * four values per node
+     * leaf slot: amount of primitives, inner slot: 0, empty slot: -1
+     */
+    private int[] childCounts;
+
+    /**
+     * bit mask of used slots per node
+     */
+    private int[] childMasks;
+
+    /**
+     * slot of every binary node as WIDTH * node + slot, -1 if the binary node was collapsed away
+     */
+    private final int[] slotOf;
+
+    /**
+     * number of wide nodes
+     */
+    private int nodeCount;
+
+    /**
+     * box test of all four children
+     */
+    private final WideBoxTest boxTest;
+
+    /**
+     * bounds of root
+     */
+    private BoundingBox bounds;
+
+    /**
+     * counted tests
+     */
+    private final AcceleratorStats stats = new AcceleratorStats();
+
+    /**
+     * one traversal stack per rendering thread
+     */
+    private final ThreadLocal<TraversalStack> stacks;
+
+    /**
+     * Constructor collapses a binary BVH
+     * @param bvh binary hierarchy
+     * @param simd true to test children with the vector api, ignored if it is not available
+     */
+    public WideBVH(final BVH bvh, final boolean simd) {
+        if (bvh == null) throw new IllegalArgumentException();
+        this.primitives = bvh.primitives;
+        this.bounds = bvh.bounds();
+        // every visited node pushes at most three more entries than it pops
+        // and the wide tree is never deeper than the binary one
+        final int stackSize = 3 * bvh.depth + 1;
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(stackSize));
+        this.boxTest = simd && SIMD_AVAILABLE ? vectorBoxTest() : new ScalarWideBoxTest();
+
+        final int capacity = Math.max(1, bvh.nodeCount);
+        this.childBounds = new double[24 * capacity];
+        this.childOffsets = new int[WIDTH * capacity];
+        this.childCounts = new int[WIDTH * capacity];
+        this.childMasks = new int[capacity];
+        this.slotOf = new int[bvh.nodeCount];
+        Arrays.fill(slotOf, -1);
+
+        if (bvh.nodeCount > 0) {
+            if (bvh.nodeData[1] > 0) {
+                // root is a leaf, wrap it in a wide node with a single slot
+                nodeCount = 1;
+                Arrays.fill(childCounts, 0, WIDTH, -1);
+                setSlot(bvh, 0, 0, 0);
+            } else {
+                collapse(bvh, 0);
+            }
+        }
+
+        // wide tree has fewer nodes than the binary one
+        childBounds = Arrays.copyOf(childBounds, 24 * nodeCount);
+        childOffsets = Arrays.copyOf(childOffsets, WIDTH * nodeCount);
+        childCounts = Arrays.copyOf(childCounts, WIDTH * nodeCount);
+        childMasks = Arrays.copyOf(childMasks, nodeCount);
+    }
+
+    /**
+     * loads the vector box test reflectively so this class also works without src-vector and the module
+     * @return vector box test or scalar test if loading fails
+     */
+    private static WideBoxTest vectorBoxTest() {
+        try {
+            return (WideBoxTest) Class.forName("Acceleration.VectorWideBoxTest").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.out.println("vector api not usable, falling back to scalar box test: " + e);
+            return new ScalarWideBoxTest();
+        }
+    }
+
+    /**
+     * @return true if children are tested with the vector api
+     */
+    public boolean usesSimd() {
+        return !(boxTest instanceof ScalarWideBoxTest);
+    }
+
+    /**
+     * @return number of wide nodes
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * estimated size without the primitives
+     * @return memory in bytes
+     */
+    public long memoryBytes() {
+        return 8L * childBounds.length + 4L * (childOffsets.length + childCounts.length + childMasks.length + slotOf.length);
+    }
+
+    /**
+     * box tests count four per wide node
+     * @return tests counted by all hit calls so far
+     */
+    public AcceleratorStats statistics() {
+        return stats;
+    }
+
+    /**
+     * creates a wide node for an inner node of the binary tree
+     * the child with the largest surface area is opened until four children are collected
+     * @param bvh binary hierarchy
+     * @param binaryNode inner node of binary tree
+     * @return index of wide node
+     */
+    private int collapse(final BVH bvh, final int binaryNode) {
+        final int node = nodeCount++;
+        final int[] children = new int[WIDTH];
+        int childCount = 2;
+        children[0] = binaryNode + 1;
+        children[1] = bvh.nodeData[2 * binaryNode];
+
+        while (childCount < WIDTH) {
+            int largest = -1;
+            double largestArea = -1;
+            for (int i = 0; i < childCount; i++) {
+                if (bvh.nodeData[2 * children[i] + 1] > 0) continue;
+                final double area = area(bvh.nodeBounds, children[i]);
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = i;
+                }
+            }
+            if (largest == -1) break;
+            final int open = children[largest];
+            children[largest] = open + 1;
+            children[childCount++] = bvh.nodeData[2 * open];
+        }
+
+        Arrays.fill(childCounts, WIDTH * node, WIDTH * node + WIDTH, -1);
+        for (int i = 0; i < childCount; i++) {
+            setSlot(bvh, node, i, children[i]);
+        }
+        return node;
+    }
+
+    /**
+     * writes a binary node into a slot of a wide node
+     * inner binary nodes are collapsed recursively
+     * @param bvh binary hierarchy
+     * @param node wide node
+     * @param slot slot within wide node
+     * @param binaryNode node of binary tree
+     */
+    private void setSlot(final BVH bvh, final int node, final int slot, final int binaryNode) {
+        final int base = 24 * node;
+        for (int axis = 0; axis < 6; axis++) {
+            childBounds[base + 4 * axis + slot] = bvh.nodeBounds[6 * binaryNode + axis];
+        }
+        childMasks[node] |= 1 << slot;
+        slotOf[binaryNode] = WIDTH * node + slot;
+        final int count = bvh.nodeData[2 * binaryNode + 1];
+        if (count > 0) {
+            childOffsets[WIDTH * node + slot] = bvh.nodeData[2 * binaryNode];
+            childCounts[WIDTH * node + slot] = count;
+        } else {
+            childCounts[WIDTH * node + slot] = 0;
+            childOffsets[WIDTH * node + slot] = collapse(bvh, binaryNode);
+        }
+    }
+
+    /**
+     * copies the bounds of all binary nodes into their slots after the binary tree was refit
+     * @param bvh binary hierarchy this tree was collapsed from
+     */
+    void refit(final BVH bvh) {
+        for (int binaryNode = 0; binaryNode < slotOf.length; binaryNode++) {
+            final int slot = slotOf[binaryNode];
+            if (slot < 0) continue;
+            final int base = 24 * (slot / WIDTH) + slot % WIDTH;
+            for (int axis = 0; axis < 6; axis++) {
+                childBounds[base + 4 * axis] = bvh.nodeBounds[6 * binaryNode + axis];
+            }
+        }
+        bounds = bvh.bounds();
+    }
+
+    /**
+     * surface area of a binary node
+     * @param nodeBounds bounds of binary tree
+     * @param node index of node
+     * @return surface area
+     */
+    private static double area(final double[] nodeBounds, final int node) {
+        final int b = 6 * node;
+        final double dx = nodeBounds[b + 3] - nodeBounds[b];
+        final double dy = nodeBounds[b + 4] - nodeBounds[b + 1];
+        final double dz = nodeBounds[b + 5] - nodeBounds[b + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    /**
+     * @return bounds of all primitives in the hierarchy
+     */
+    public BoundingBox bounds() {
+        return bounds;
+    }
+
+    /**
+     * calculation of closest hit point within the hierarchy
+     * returns null if no primitive is hit
+     * @param r incoming ray
+     * @return closest hit
+     */
+    public Hit hit(final Ray r) {
+        final HitRecord rec = new HitRecord();
+        return intersect(r, 0, Double.MAX_VALUE, rec) ? rec.toHit(r) : null;
+    }
+
+    /**
+     * allocation free closest hit query within the hierarchy, see Accelerator.intersect
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param limit t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if a primitive is hit between tMin and limit
+     */
+    public boolean intersect(final Ray r, final double tMin, final double limit, final HitRecord rec) {
+        if (nodeCount == 0) return false;
+
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double invX = 1.0 / r.d.x, invY = 1.0 / r.d.y, invZ = 1.0 / r.d.z;
+
+        boolean found = false;
+        // infinite limits would turn slabs parallel to the ray into NaN
+        double tMax = Math.min(limit, Double.MAX_VALUE);
+
+        final TraversalStack stack = stacks.get();
+        final int[] entries = stack.entries;
+        final double[] tNear = stack.tNear;
+        final double[] childNear = stack.childNear;
+        final int[] order = stack.order;
+        int sp = 0;
+        int boxTests = 0;
+        int primitiveTests = 0;
+        entries[sp] = 0;
+        tNear[sp++] = 0;
+
+        while (sp > 0) {
+            final int entry = entries[--sp];
+            if (tNear[sp] > tMax) continue;
+
+            if (entry < 0) {
+                final int slot = -entry - 1;
+                final int first = childOffsets[slot];
+                final int count = childCounts[slot];
+                primitiveTests += count;
+                for (int i = first; i < first + count; i++) {
+                    if (primitives[i].intersect(r, tMin, tMax, rec)) {
+                        found = true;
+                        tMax = rec.t;
+                    }
+                }
+                continue;
+            }
+
+            boxTests += WIDTH;
+            final int mask = boxTest.intersect(childBounds, 24 * entry, ox, oy, oz, invX, invY, invZ, tMax, childNear)
+                    & childMasks[entry];
+            if (mask == 0) continue;
+
+            // sort hit children by distance, farthest first
+            int hits = 0;
+            for (int i = 0; i < WIDTH; i++) {
+                if ((mask & (1 << i)) == 0) continue;
+                int j = hits++;
+                while (j > 0 && childNear[order[j - 1]] < childNear[i]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+
+            for (int k = 0; k < hits; k++) {
+                final int i = order[k];
+                final int slot = WIDTH * entry + i;
+                entries[sp] = childCounts[slot] > 0 ? -(slot + 1) : childOffsets[slot];
+                tNear[sp++] = childNear[i];
+            }
+        }
+        stats.record(boxTests, primitiveTests);
+        return found;
+    }
+
+    /**
+     * any hit query within the hierarchy
+     * hit children are pushed unsorted, the first primitive hit before tMax ends the traversal
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if a primitive is hit before tMax
+     */
+    public boolean occluded(final Ray r, final double tMax) {
+        if (nodeCount == 0) return false;
+
+        final double ox = r.o.x, oy = r.o.y, oz = r.o.z;
+        final double invX = 1.0 / r.d.x, invY = 1.0 / r.d.y, invZ = 1.0 / r.d.z;
+        // infinite limits would turn slabs parallel to the ray into NaN
+        final double limit = Math.min(tMax, Double.MAX_VALUE);
+
+        final TraversalStack stack = stacks.get();
+        final int[] entries = stack.entries;
+        final double[] childNear = stack.childNear;
+        int sp = 0;
+        int boxTests = 0;
+        int primitiveTests = 0;
+        entries[sp++] = 0;
+
+        while (sp > 0) {
+            final int entry = entries[--sp];
+
+            if (entry < 0) {
+                final int slot = -entry - 1;
+                final int first = childOffsets[slot];
+                final int count = childCounts[slot];
+                for (int i = first; i < first + count; i++) {
+                    primitiveTests++;
+                    if (primitives[i].occludes(r, tMax)) {
+                        stats.record(boxTests, primitiveTests);
+                        return true;
+                    }
+                }
+                continue;
+            }
+
+            boxTests += WIDTH;
+            final int mask = boxTest.intersect(childBounds, 24 * entry, ox, oy, oz, invX, invY, invZ, limit, childNear)
+                    & childMasks[entry];
+            for (int i = 0; i < WIDTH; i++) {
+                if ((mask & (1 << i)) == 0) continue;
+                final int slot = WIDTH * entry + i;
+                entries[sp++] = childCounts[slot] > 0 ? -(slot + 1) : childOffsets[slot];
+            }
+        }
+        stats.record(boxTests, primitiveTests);
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "WideBVH{" +
+                "primitives=" + primitives.length +
+                ", nodes=" + nodeCount +
+                ", simd=" + usesSimd() +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+package Acceleration;
+
+/**
+ * tests a ray against the four child boxes of a wide BVH node at once
+ * child bounds are stored as structure of arrays, 24 values per node:
+ * minX[4], minY[4], minZ[4], maxX[4], maxY[4], maxZ[4]
+ */
+public interface WideBoxTest {
+
+    /**
+     * slab test against all four children of a node
+     * @param bounds bounds of all wide nodes
+     * @param base offset of node in bounds
+     * @param ox x value of ray origin
+     * @param oy y value of ray origin
+     * @param oz z value of ray origin
+     * @param invX inverted x value of ray direction
+     * @param invY inverted y value of ray direction
+     * @param invZ inverted z value of ray direction
+     * @param tMax farthest t that is still of interest
+     * @param tNear receives entry t of every hit child
+     * @return bit mask of hit children
+     */
+    int intersect(final double[] bounds, final int base, final double ox, final double oy, final double oz,
+                  final double invX, final double invY, final double invZ, final double tMax, final double[] tNear);
+}
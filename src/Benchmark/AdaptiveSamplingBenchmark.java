@@ -0,0 +1,111 @@
+package Benchmark;
+
+import Image.FrameBuffer;
+import MathLib.Point2;
+import Raytracer.AdaptiveSampler;
+import Raytracer.Color;
+import Raytracer.PixelTracer;
+import Raytracer.SceneType;
+import Raytracer.Tile;
+import Raytracer.TileScheduler;
+import Raytracer.World;
+import Sampling.RandomSamplingPattern;
+import Sampling.SamplingPattern;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compares uniform sampling with adaptive sampling on the glass, bunny and earth scenes
+ * the error of both is the root mean square difference to the render with every sample of the pattern
+ * optional arguments: samples of the pattern, minimum samples of adaptive sampling
+ */
+public class AdaptiveSamplingBenchmark {
+
+    /**
+     * size of rendered image
+     */
+    private static final int WIDTH = 320, HEIGHT = 240;
+
+    /**
+     * noise thresholds of adaptive sampling
+     */
+    private static final double[] THRESHOLDS = {0.02, 0.01, 0.005};
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int minSamples = args.length > 1 ? Integer.parseInt(args[1]) : AdaptiveSampler.DEFAULT_MIN_SAMPLES;
+        ArrayList<Point2> points = RandomSamplingPattern.getRandomPattern(samples);
+        List<Tile> tiles = TileScheduler.tiles(WIDTH, HEIGHT, TileScheduler.DEFAULT_TILE_SIZE);
+
+        for (SceneType scene : SceneType.values()) {
+            World world = scene.create(new SamplingPattern(points));
+            System.out.println("---- " + scene);
+            FrameBuffer reference = uniform(world, tiles, points.size());
+            for (int n = minSamples; n < points.size(); n *= 2) {
+                long start = System.nanoTime();
+                FrameBuffer image = uniform(world, tiles, n);
+                System.out.printf("uniform %-10d %9d rays  rmse %.5f  %6.0fms%n", n, (long) n * WIDTH * HEIGHT,
+                        rmse(image, reference), (System.nanoTime() - start) / 1e6);
+            }
+            for (double threshold : THRESHOLDS) {
+                AdaptiveSampler sampler = new AdaptiveSampler(world, world.cam, WIDTH, HEIGHT, minSamples, threshold);
+                FrameBuffer image = new FrameBuffer(WIDTH, HEIGHT);
+                long start = System.nanoTime();
+                for (Tile tile : tiles) {
+                    sampler.render(tile, image);
+                }
+                System.out.printf("adaptive %-9s %9d rays  rmse %.5f  %6.0fms  %.1f samples/pixel, %d pixels refined%n", threshold,
+                        sampler.rays(), rmse(image, reference), (System.nanoTime() - start) / 1e6,
+                        sampler.rays() / (double) (WIDTH * HEIGHT), sampler.refined());
+            }
+        }
+    }
+
+    /**
+     * renders every pixel with the first samples of the sampling pattern
+     * @param world scene
+     * @param tiles tiles of image
+     * @param samples amount of samples per pixel
+     * @return rendered image
+     */
+    private static FrameBuffer uniform(final World world, final List<Tile> tiles, final int samples) {
+        PixelTracer tracer = new PixelTracer(world, world.cam, WIDTH, HEIGHT);
+        FrameBuffer image = new FrameBuffer(WIDTH, HEIGHT);
+        for (Tile tile : tiles) {
+            double[] sums = new double[tile.pixels() * 3];
+            for (int sample = 0; sample < samples; sample++) {
+                tracer.traceSample(tile, world.cam.pattern.points.get(sample), sums);
+            }
+            float[] rgb = new float[sums.length];
+            for (int i = 0; i < sums.length; i++) {
+                rgb[i] = (float) (sums[i] / samples);
+            }
+            image.set(tile, rgb);
+        }
+        return image;
+    }
+
+    /**
+     * @return root mean square difference of the colors clamped to 0 to 1, like they are shown
+     */
+    private static double rmse(final FrameBuffer image, final FrameBuffer reference) {
+        double sum = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                Color a = image.get(x, y);
+                Color b = reference.get(x, y);
+                sum += square(clamp(a.r) - clamp(b.r)) + square(clamp(a.g) - clamp(b.g)) + square(clamp(a.b) - clamp(b.b));
+            }
+        }
+        return Math.sqrt(sum / (WIDTH * HEIGHT * 3));
+    }
+
+    private static double clamp(final double value) {
+        return Math.min(1, Math.max(0, value));
+    }
+
+    private static double square(final double value) {
+        return value * value;
+    }
+}
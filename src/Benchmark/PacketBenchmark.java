@@ -0,0 +1,167 @@
+package Benchmark;
+
+import Acceleration.BoundingBox;
+import Camera.PerspectiveCamera;
+import Geometry.Geometry;
+import Geometry.Model;
+import Geometry.Node;
+import Geometry.Sphere;
+import Geometry.Transform;
+import Lighting.Light;
+import Material.LambertMaterial;
+import MathLib.Point2;
+import MathLib.Point3;
+import MathLib.Vector3;
+import Raytracer.Color;
+import Raytracer.Hit;
+import Raytracer.Ray;
+import Raytracer.RayPacket;
+import Raytracer.World;
+import Sampling.SamplingPattern;
+import Texture.SingleColorTexture;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * compares primary visibility of single rays with ray packets of 4x4 and 8x8 pixel tiles
+ * on the stanford bunny, a field of spheres and a grid of bunny instances
+ * optional argument: number of spheres
+ */
+public class PacketBenchmark {
+
+    /**
+     * rounds that are not measured so the jit can compile the traversal
+     */
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * measured rounds
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * size of rendered image
+     */
+    private static final int WIDTH = 640, HEIGHT = 480;
+
+    public static void main(String[] args) {
+        int sphereCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        LambertMaterial mat = new LambertMaterial(new SingleColorTexture(new Color(1, 1, 1)));
+
+        ArrayList<Geometry> bunny = new ArrayList<Geometry>();
+        bunny.add(new Model("bunny.obj", mat));
+        run("bunny", bunny);
+
+        Random random = new Random(42);
+        ArrayList<Geometry> spheres = new ArrayList<Geometry>();
+        for (int i = 0; i < sphereCount; i++) {
+            spheres.add(new Sphere(new Point3(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 0.2 + random.nextDouble() * 0.5, mat));
+        }
+        run(sphereCount + " spheres", spheres);
+
+        ArrayList<Geometry> instances = new ArrayList<Geometry>();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                ArrayList<Geometry> items = new ArrayList<Geometry>();
+                items.add(new Model("bunny.obj", mat));
+                instances.add(new Node(mat, new Transform().translation(new Vector3(0.2 * x, 0.2 * y, 0)), items));
+            }
+        }
+        run("64 bunny nodes", instances);
+    }
+
+    /**
+     * renders primary rays of one view onto the scene with single rays and with packets
+     * @param name name of scene
+     * @param items geometries of scene
+     */
+    private static void run(final String name, final ArrayList<Geometry> items) {
+        World world = new World(items, new ArrayList<Light>(), new Color(0, 0, 0), new Color(0, 0, 0), 1.0, null);
+        Ray[] rays = primaryRays(world.getAccelerator().bounds());
+        System.out.println("---- " + name + ": " + rays.length + " rays");
+        double single = measureSingle(world, rays);
+        for (int tile : new int[]{4, 8}) {
+            double packets = measurePackets(world, rays, tile);
+            System.out.printf("%dx%d packet speedup: %.2fx%n", tile, tile, packets / single);
+        }
+    }
+
+    /**
+     * traces every ray on its own for all rounds
+     * @param world scene
+     * @param rays rays of all pixels, row by row
+     * @return million rays per second of the fastest round
+     */
+    private static double measureSingle(final World world, final Ray[] rays) {
+        double best = 0;
+        int hits = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            hits = 0;
+            long start = System.nanoTime();
+            for (Ray r : rays) {
+                if (world.hit(r) != null) hits++;
+            }
+            double mraysPerSecond = rays.length / ((System.nanoTime() - start) / 1000.0);
+            if (round >= WARMUP_ROUNDS) best = Math.max(best, mraysPerSecond);
+        }
+        System.out.printf("%-12s %8.3f Mrays/s (%d hits)%n", "single", best, hits);
+        return best;
+    }
+
+    /**
+     * traces the rays of every tile as one packet for all rounds
+     * @param world scene
+     * @param rays rays of all pixels, row by row
+     * @param tile edge length of tiles in pixels
+     * @return million rays per second of the fastest round
+     */
+    private static double measurePackets(final World world, final Ray[] rays, final int tile) {
+        double best = 0;
+        int hits = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            hits = 0;
+            long start = System.nanoTime();
+            for (int y0 = 0; y0 < HEIGHT; y0 += tile) {
+                for (int x0 = 0; x0 < WIDTH; x0 += tile) {
+                    int w = Math.min(tile, WIDTH - x0);
+                    int h = Math.min(tile, HEIGHT - y0);
+                    Ray[] tileRays = new Ray[w * h];
+                    for (int y = 0; y < h; y++) {
+                        System.arraycopy(rays, (y0 + y) * WIDTH + x0, tileRays, y * w, w);
+                    }
+                    RayPacket packet = new RayPacket(tileRays);
+                    world.hit(packet);
+                    for (Hit hit : packet.hits) {
+                        if (hit != null) hits++;
+                    }
+                }
+            }
+            double mraysPerSecond = rays.length / ((System.nanoTime() - start) / 1000.0);
+            if (round >= WARMUP_ROUNDS) best = Math.max(best, mraysPerSecond);
+        }
+        System.out.printf("%-12s %8.3f Mrays/s (%d hits)%n", tile + "x" + tile, best, hits);
+        return best;
+    }
+
+    /**
+     * creates one primary ray per pixel of a camera looking at the box from the front
+     * @param b box to look at
+     * @return rays row by row
+     */
+    private static Ray[] primaryRays(final BoundingBox b) {
+        double size = Math.max(b.maxX - b.minX, Math.max(b.maxY - b.minY, b.maxZ - b.minZ));
+        Point3 center = new Point3(b.center(0), b.center(1), b.center(2));
+        Point3 eye = new Point3(center.x, center.y, b.maxZ + size);
+        ArrayList<Point2> points = new ArrayList<Point2>();
+        points.add(new Point2(0.5, 0.5));
+        PerspectiveCamera cam = new PerspectiveCamera(eye, center.sub(eye), new Vector3(0, 1, 0), Math.PI / 3.0, new SamplingPattern(points));
+        Ray[] rays = new Ray[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                rays[y * WIDTH + x] = cam.rayFor(WIDTH, HEIGHT, x, y).iterator().next();
+            }
+        }
+        return rays;
+    }
+}
@@ -0,0 +1,81 @@
+package Benchmark;
+
+import Image.FrameBuffer;
+import MathLib.Point2;
+import Raytracer.PixelOrder;
+import Raytracer.PixelTracer;
+import Raytracer.SceneType;
+import Raytracer.Tile;
+import Raytracer.TileScheduler;
+import Raytracer.World;
+import Sampling.SamplingPattern;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * renders the bunny and the earth texture scene with every pixel order on one thread
+ * the images are the same, only how long the nodes, triangles and texels of neighbouring rays stay cached differs
+ * optional arguments: tile size, samples per pixel
+ */
+public class PixelOrderBenchmark {
+
+    /**
+     * rounds that are not measured so the jit can compile the tracing
+     */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /**
+     * measured rounds
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * size of rendered image
+     */
+    private static final int WIDTH = 640, HEIGHT = 480;
+
+    public static void main(String[] args) {
+        int tileSize = args.length > 0 ? Integer.parseInt(args[0]) : TileScheduler.DEFAULT_TILE_SIZE;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        ArrayList<Point2> points = new ArrayList<Point2>();
+        for (int i = 0; i < samples; i++) {
+            // same points for every order, so every order traces the same rays
+            points.add(new Point2((i + 0.5) / samples, (i * 0.618034 + 0.5) % 1.0));
+        }
+        System.out.println("tile size: " + tileSize + ", samples: " + samples);
+
+        for (SceneType scene : new SceneType[]{SceneType.BUNNY, SceneType.EARTH}) {
+            World world = scene.create(new SamplingPattern(points));
+            System.out.println("---- " + scene);
+            double scanline = 0;
+            for (PixelOrder order : PixelOrder.values()) {
+                world.setPixelOrder(order);
+                double raysPerSecond = measure(world, TileScheduler.tiles(WIDTH, HEIGHT, tileSize));
+                if (order == PixelOrder.SCANLINE) scanline = raysPerSecond;
+                System.out.printf("%-10s %8.3f Mrays/s  speedup %.2fx%n", order, raysPerSecond / 1e6, raysPerSecond / scanline);
+            }
+        }
+    }
+
+    /**
+     * renders the image tile by tile for all rounds
+     * @param world scene
+     * @param tiles tiles of image
+     * @return primary rays per second of the fastest round
+     */
+    private static double measure(final World world, final List<Tile> tiles) {
+        double best = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            PixelTracer tracer = new PixelTracer(world, world.cam, WIDTH, HEIGHT);
+            FrameBuffer image = new FrameBuffer(WIDTH, HEIGHT);
+            long start = System.nanoTime();
+            for (Tile tile : tiles) {
+                tracer.render(tile, image);
+            }
+            double raysPerSecond = tracer.rays() / ((System.nanoTime() - start) / 1e9);
+            if (round >= WARMUP_ROUNDS) best = Math.max(best, raysPerSecond);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,116 @@
+package Benchmark;
+
+import Camera.Camera;
+import Camera.PerspectiveCamera;
+import Geometry.Geometry;
+import Geometry.Plane;
+import Geometry.Sphere;
+import Lighting.DirectionalLight;
+import Lighting.Light;
+import Material.LambertMaterial;
+import Material.RefractionMaterial;
+import MathLib.Point3;
+import MathLib.Vector3;
+import Raytracer.Color;
+import Raytracer.Ray;
+import Raytracer.Tile;
+import Raytracer.TileScheduler;
+import Raytracer.World;
+import Sampling.RandomSamplingPattern;
+import Sampling.SamplingPattern;
+import Texture.ImageTexture;
+import Texture.SingleColorTexture;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * renders the glass sphere scene of Raytracer with the tile scheduler on a growing number of threads
+ * the glass spheres cover few tiles but cost most of the time, so uneven splits show up as poor scaling
+ * optional arguments: largest thread count, tile size
+ */
+public class TileSchedulerBenchmark {
+
+    /**
+     * rounds that are not measured so the jit can compile the tracing
+     */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /**
+     * measured rounds
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * size of rendered image
+     */
+    private static final int WIDTH = 640, HEIGHT = 480;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int tileSize = args.length > 1 ? Integer.parseInt(args[1]) : TileScheduler.DEFAULT_TILE_SIZE;
+        World world = glassScene();
+        System.out.println("available cores: " + Runtime.getRuntime().availableProcessors() + ", tile size: " + tileSize);
+
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double ms = measure(world, new TileScheduler(threads, tileSize));
+            if (threads == 1) single = ms;
+            System.out.printf("%3d threads %8.1f ms  speedup %.2fx%n", threads, ms, single / ms);
+        }
+    }
+
+    /**
+     * renders the image for all rounds
+     * @param world scene
+     * @param scheduler scheduler to render with
+     * @return milliseconds of the fastest round
+     */
+    private static double measure(final World world, final TileScheduler scheduler) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            DoubleAdder checksum = new DoubleAdder();
+            long start = System.nanoTime();
+            scheduler.render(WIDTH, HEIGHT, tile -> checksum.add(shade(world, tile)));
+            double ms = (System.nanoTime() - start) / 1e6;
+            if (round >= WARMUP_ROUNDS) best = Math.min(best, ms);
+        }
+        return best;
+    }
+
+    /**
+     * shades every ray of a tile like RayTracingThread without writing pixels
+     * @param world scene
+     * @param tile pixels to shade
+     * @return sum of all color channels
+     */
+    private static double shade(final World world, final Tile tile) {
+        final Camera cam = world.cam;
+        double sum = 0;
+        for (int y = tile.y; y < tile.endY(); y++) {
+            for (int x = tile.x; x < tile.endX(); x++) {
+                for (Ray r : cam.rayFor(WIDTH, HEIGHT, x, HEIGHT - y - 1)) {
+                    Color c = world.colorOf(world.hit(r));
+                    sum += c.r + c.g + c.b;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return scene of Raytracer: textured ground and four glass spheres
+     */
+    private static World glassScene() {
+        ArrayList<Geometry> itemList = new ArrayList<Geometry>();
+        ArrayList<Light> lightSources = new ArrayList<Light>();
+        lightSources.add(new DirectionalLight(new Color(1, 1, 1), false, new Vector3(-1, -1, -1)));
+        itemList.add(new Plane(new LambertMaterial(new ImageTexture("ground2.jpg"))));
+        itemList.add(new Sphere(new Point3(.3, 0.5, .4), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+        itemList.add(new Sphere(new Point3(-.05, 0.1, .3), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+        itemList.add(new Sphere(new Point3(.3, 0.3, -.3), 0.05, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+        itemList.add(new Sphere(new Point3(0, .7, 0), 0.4, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+        Camera cam = new PerspectiveCamera(new Point3(1, 1, 0), new Vector3(-1, -1, 0), new Vector3(0, 1, 0), Math.PI / 4.0, new SamplingPattern(RandomSamplingPattern.getRandomPattern(1)));
+        return new World(itemList, lightSources, new Color(0, 0, 0), new Color(0.1, 0.1, 0.1), 1.0, cam);
+    }
+}
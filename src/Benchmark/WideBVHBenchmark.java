@@ -0,0 +1,124 @@
+package Benchmark;
+
+import Acceleration.BVH;
+import Acceleration.BoundingBox;
+import Acceleration.WideBVH;
+import Camera.PerspectiveCamera;
+import Geometry.Geometry;
+import Geometry.Mesh;
+import Geometry.Sphere;
+import Material.LambertMaterial;
+import MathLib.Point2;
+import MathLib.Point3;
+import MathLib.Vector3;
+import Raytracer.Color;
+import Raytracer.Hit;
+import Raytracer.Ray;
+import Sampling.SamplingPattern;
+import Texture.SingleColorTexture;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * compares binary BVH traversal with four wide traversal using scalar and vector box tests
+ * on the stanford bunny and on a large field of spheres
+ * compile src-vector and run with --add-modules jdk.incubator.vector to include the vector api
+ * optional argument: number of spheres
+ */
+public class WideBVHBenchmark {
+
+    /**
+     * rounds that are not measured so the jit can compile the traversal
+     */
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * measured rounds
+     */
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int sphereCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        System.out.println("vector api available: " + WideBVH.SIMD_AVAILABLE);
+
+        BVH bunny = new BVH(Mesh.load("bunny.obj").f);
+        run("bunny", bunny);
+
+        Random random = new Random(42);
+        LambertMaterial mat = new LambertMaterial(new SingleColorTexture(new Color(1, 1, 1)));
+        ArrayList<Geometry> spheres = new ArrayList<Geometry>();
+        for (int i = 0; i < sphereCount; i++) {
+            spheres.add(new Sphere(new Point3(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 0.2 + random.nextDouble() * 0.5, mat));
+        }
+        run(sphereCount + " spheres", new BVH(spheres));
+    }
+
+    /**
+     * renders primary rays of a 640x480 view onto the bounds of the hierarchy with every traversal
+     * @param name name of scene
+     * @param bvh binary hierarchy of scene
+     */
+    private static void run(final String name, final BVH bvh) {
+        Ray[] rays = primaryRays(bvh.bounds(), 640, 480);
+        WideBVH scalar = new WideBVH(bvh, false);
+        WideBVH simd = new WideBVH(bvh, true);
+
+        System.out.println("---- " + name + ": " + bvh.nodeCount() + " binary nodes, " + scalar.nodeCount() + " wide nodes, " + rays.length + " rays");
+        double binary = measure("binary", rays, r -> bvh.hit(r));
+        double wideScalar = measure("wide scalar", rays, scalar::hit);
+        System.out.printf("wide scalar speedup: %.2fx%n", wideScalar / binary);
+        if (simd.usesSimd()) {
+            double wideSimd = measure("wide simd", rays, simd::hit);
+            System.out.printf("wide simd speedup: %.2fx%n", wideSimd / binary);
+        }
+    }
+
+    /**
+     * traces every ray for all rounds
+     * @param name name of traversal
+     * @param rays rays to trace
+     * @param traversal closest hit query
+     * @return million rays per second of the fastest round
+     */
+    private static double measure(final String name, final Ray[] rays, final Function<Ray, Hit> traversal) {
+        double best = 0;
+        int hits = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            hits = 0;
+            long start = System.nanoTime();
+            for (Ray r : rays) {
+                if (traversal.apply(r) != null) hits++;
+            }
+            double mraysPerSecond = rays.length / ((System.nanoTime() - start) / 1000.0);
+            if (round >= WARMUP_ROUNDS) best = Math.max(best, mraysPerSecond);
+        }
+        System.out.printf("%-12s %8.3f Mrays/s (%d hits)%n", name, best, hits);
+        return best;
+    }
+
+    /**
+     * creates one primary ray per pixel of a camera looking at the box from the front
+     * @param b box to look at
+     * @param w width of image
+     * @param h height of image
+     * @return rays
+     */
+    private static Ray[] primaryRays(final BoundingBox b, final int w, final int h) {
+        double size = Math.max(b.maxX - b.minX, Math.max(b.maxY - b.minY, b.maxZ - b.minZ));
+        Point3 center = new Point3(b.center(0), b.center(1), b.center(2));
+        Point3 eye = new Point3(center.x, center.y, b.maxZ + size);
+        ArrayList<Point2> points = new ArrayList<Point2>();
+        points.add(new Point2(0.5, 0.5));
+        PerspectiveCamera cam = new PerspectiveCamera(eye, center.sub(eye), new Vector3(0, 1, 0), Math.PI / 3.0, new SamplingPattern(points));
+
+        Ray[] rays = new Ray[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                rays[y * w + x] = cam.rayFor(w, h, x, y).iterator().next();
+            }
+        }
+        return rays;
+    }
+}
@@ -1,9 +1,11 @@
 package Camera;
 
+import Geometry.Transform;
 import MathLib.*;
 import Raytracer.*;
 import Sampling.SamplingPattern;
 
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
@@ -73,7 +75,33 @@ public abstract class Camera {
      * @param y y coordinate of pixel
      * @return set of rays
      */
-    public abstract Set<Ray> rayFor(final int w, final int h, final int x, final int y);
+    public Set<Ray> rayFor(final int w, final int h, final int x, final int y){
+        Set<Ray> set = new HashSet<Ray>();
+        for(Point2 p : pattern.points){
+            set.add(rayFor(w, h, x, y, p));
+        }
+        return set;
+    }
+
+    /**
+     * calculates the ray through one sample point of a pixel
+     * @param w height of picture
+     * @param h width of picture
+     * @param x x coordinate of pixel
+     * @param y y coordinate of pixel
+     * @param p offset of sample point within the pixel
+     * @return ray through sample point
+     */
+    public abstract Ray rayFor(final int w, final int h, final int x, final int y, final Point2 p);
+
+    /**
+     * creates a camera of the same kind with eye position, gaze and up vector transformed
+     * used to move the camera from frame to frame of an animation
+     * throws IllegalArgumentException if tf is null
+     * @param tf transformation of camera
+     * @return transformed camera
+     */
+    public abstract Camera transformed(final Transform tf);
 
     @Override
     public boolean equals(Object o) {
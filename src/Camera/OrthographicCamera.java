@@ -1,12 +1,11 @@
 package Camera;
 
+import Geometry.Transform;
 import MathLib.*;
 import Raytracer.*;
 import Sampling.SamplingPattern;
 
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * OrthographicCamera
@@ -35,32 +34,32 @@ public class OrthographicCamera extends Camera {
     }
 
     /**
-     * calculates set of rays on one pixel
-     * number of rays is defined through SamplingPattern in Constructor
+     * calculates the ray through one sample point of a pixel
      * @param w height of picture
      * @param h width of picture
      * @param x x coordinate of pixel
      * @param y y coordinate of pixel
-     * @return ray of single pixel
+     * @param p offset of sample point within the pixel
+     * @return ray through sample point
      */
-    public Set<Ray> rayFor(final int w, final int h, final int x, final int y){
+    public Ray rayFor(final int w, final int h, final int x, final int y, final Point2 p){
+        Vector3 d = this.w.mul(-1);
+        double a = (double)w / (double) h;
 
-        Set<Ray> set = new HashSet<Ray>();
-        for(Point2 p : pattern.points){
-            Vector3 d = this.w.mul(-1);
-            double a = (double)w / (double) h;
+        double partOne = s * ((x + p.x) - (w - 1) / 2) / (w - 1);
+        Vector3 uVector = this.u.mul(partOne * a);
 
-            double partOne = s * ((x + p.x) - (w - 1) / 2) / (w - 1);
-            Vector3 uVector = this.u.mul(partOne * a);
+        double partTwo = s * ((y + p.y) - (h - 1) / 2) / (h - 1);
+        Vector3 vVector = this.v.mul(partTwo);
 
-            double partTwo = s * ((y + p.y) - (h - 1) / 2) / (h - 1);
-            Vector3 vVector = this.v.mul(partTwo);
-
-            Point3 o = this.e.add(uVector.add(vVector));
-            set.add(new Ray(o, d));
-        }
+        Point3 o = this.e.add(uVector.add(vVector));
+        return new Ray(o, d);
+    }
 
-        return set;
+    @Override
+    public Camera transformed(final Transform tf){
+        if(tf == null) throw new IllegalArgumentException();
+        return new OrthographicCamera(tf.m.mul(e), tf.m.mul(g), tf.m.mul(t), s, pattern);
     }
 
     @Override
@@ -1,13 +1,12 @@
 package Camera;
 
+import Geometry.Transform;
 import MathLib.*;
 import Raytracer.*;
 import Sampling.SamplingPattern;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * camera object with additional angle setting
@@ -34,31 +33,33 @@ public class PerspectiveCamera extends Camera{
     }
 
     /**
-     * calculates set of rays on one pixel
-     * number of rays is defined through SamplingPattern in Constructor
+     * calculates the ray through one sample point of a pixel
      * @param w height of picture
      * @param h width of picture
      * @param x x coordinate of pixel
      * @param y y coordinate of pixel
-     * @return ray of single pixel
+     * @param p offset of sample point within the pixel
+     * @return ray through sample point
      */
-    public Set<Ray> rayFor(final int w, final int h, final int x, final int y){
+    public Ray rayFor(final int w, final int h, final int x, final int y, final Point2 p){
         Point3 o = this.e;
 
-        Set<Ray> set = new HashSet<Ray>();
-        for(Point2 p: pattern.points){
-            double partOne = (h / 2.0) / Math.tan(angle / 2.0);
-            double partTwo = (x + p.x)  - ((w - 1.0) / 2.0);
-            double partThree = (y + p.y) - ((h - 1.0) / 2.0);
+        double partOne = (h / 2.0) / Math.tan(angle / 2.0);
+        double partTwo = (x + p.x)  - ((w - 1.0) / 2.0);
+        double partThree = (y + p.y) - ((h - 1.0) / 2.0);
 
-            Vector3 uVector = this.u.mul(partTwo);
-            Vector3 vVector = this.v.mul(partThree);
+        Vector3 uVector = this.u.mul(partTwo);
+        Vector3 vVector = this.v.mul(partThree);
 
-            Vector3 r = this.w.mul(-1).mul(partOne).add(uVector).add(vVector);
-            Vector3 d = r.normalized();
-            set.add(new Ray(o, d));
-        }
-        return set;
+        Vector3 r = this.w.mul(-1).mul(partOne).add(uVector).add(vVector);
+        Vector3 d = r.normalized();
+        return new Ray(o, d);
+    }
+
+    @Override
+    public Camera transformed(final Transform tf){
+        if(tf == null) throw new IllegalArgumentException();
+        return new PerspectiveCamera(tf.m.mul(e), tf.m.mul(g), tf.m.mul(t), angle, pattern);
     }
 
     @Override
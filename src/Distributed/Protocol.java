@@ -0,0 +1,136 @@
+package Distributed;
+
+import MathLib.Point2;
+import Raytracer.SceneType;
+import Raytracer.Tile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * messages between RenderCoordinator and RenderWorker over one tcp connection
+ * the coordinator sends the job once, then keeps as many tiles in flight as the worker has render threads,
+ * the worker answers every tile with its pixels as soon as it is finished, so answers may come in another order
+ * a tile with negative width ends the connection
+ */
+final class Protocol {
+
+    /**
+     * first value of a job, guards against connections of other programs
+     */
+    static final int MAGIC = 0x52544a32;
+
+    private Protocol() {
+    }
+
+    /**
+     * job every tile of a connection belongs to
+     */
+    static final class Job {
+
+        final SceneType scene;
+        final int width;
+        final int height;
+        final ArrayList<Point2> points;
+
+        /**
+         * amount of render threads of the worker, also the amount of tiles in flight
+         */
+        final int threads;
+
+        Job(final SceneType scene, final int width, final int height, final ArrayList<Point2> points, final int threads) {
+            this.scene = scene;
+            this.width = width;
+            this.height = height;
+            this.points = points;
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * the sampling points are sent as well, every worker has to trace the same rays
+     */
+    static void writeJob(final DataOutputStream out, final Job job) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(job.scene.name());
+        out.writeInt(job.width);
+        out.writeInt(job.height);
+        out.writeInt(job.points.size());
+        for (Point2 p : job.points) {
+            out.writeDouble(p.x);
+            out.writeDouble(p.y);
+        }
+        out.writeInt(job.threads);
+        out.flush();
+    }
+
+    static Job readJob(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a render job");
+        final SceneType scene = SceneType.valueOf(in.readUTF());
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final int count = in.readInt();
+        final ArrayList<Point2> points = new ArrayList<Point2>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(new Point2(in.readDouble(), in.readDouble()));
+        }
+        final int threads = in.readInt();
+        if (threads < 1) throw new IOException("job without render threads");
+        return new Job(scene, width, height, points, threads);
+    }
+
+    static void writeTile(final DataOutputStream out, final Tile tile) throws IOException {
+        writeBounds(out, tile.x, tile.y, tile.width, tile.height);
+        out.flush();
+    }
+
+    static void writeEnd(final DataOutputStream out) throws IOException {
+        writeBounds(out, 0, 0, -1, -1);
+        out.flush();
+    }
+
+    private static void writeBounds(final DataOutputStream out, final int x, final int y, final int width, final int height) throws IOException {
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    /**
+     * @return tile or null at the end of the connection
+     */
+    static Tile readTile(final DataInputStream in) throws IOException {
+        final int x = in.readInt();
+        final int y = in.readInt();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        if (width < 0) return null;
+        return new Tile(x, y, width, height);
+    }
+
+    /**
+     * @param rgb red, green and blue per pixel of tile, row by row
+     */
+    static void writePixels(final DataOutputStream out, final Tile tile, final float[] rgb) throws IOException {
+        writeBounds(out, tile.x, tile.y, tile.width, tile.height);
+        for (float value : rgb) {
+            out.writeFloat(value);
+        }
+        out.flush();
+    }
+
+    /**
+     * reads the pixels of an answer, the tile in front of them is read with readTile
+     * @param tile tile of answer
+     * @return red, green and blue per pixel of tile, row by row
+     */
+    static float[] readPixels(final DataInputStream in, final Tile tile) throws IOException {
+        final float[] rgb = new float[tile.pixels() * 3];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = in.readFloat();
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,294 @@
+package Distributed;
+
+import Image.FrameBuffer;
+import Raytracer.SceneType;
+import Raytracer.Tile;
+import Raytracer.TileScheduler;
+import Sampling.SamplingPattern;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * renders an image on several local worker processes, each with its own heap and garbage collector
+ * workers are started as RenderWorker processes connecting back over tcp on the loopback address,
+ * every worker loads the scene itself, renders on several threads and gets one tile per thread from a shared queue,
+ * it gets the next tile as soon as one of them is answered
+ * the tiles of a worker that dies or hangs are put back at the front of the queue and rendered by other ones
+ * a worker hangs if a tile takes TILE_TIMEOUT_FACTOR times longer than the slowest tile so far
+ */
+public class RenderCoordinator {
+
+    /**
+     * time all workers have to connect after they were started in milliseconds
+     */
+    public static final int CONNECT_TIMEOUT = 30_000;
+
+    /**
+     * time between checks whether every worker died in milliseconds
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    /**
+     * time a worker has for its first tile in milliseconds, it loads the scene before
+     */
+    public static final int FIRST_TILE_TIMEOUT = 120_000;
+
+    /**
+     * shortest time a worker has for a tile in milliseconds
+     */
+    public static final int MIN_TILE_TIMEOUT = 5_000;
+
+    /**
+     * a worker is lost once a tile takes this many times longer than the slowest tile so far
+     */
+    public static final int TILE_TIMEOUT_FACTOR = 10;
+
+    /**
+     * amount of worker processes
+     */
+    public final int workers;
+
+    /**
+     * amount of render threads of every worker, also the amount of tiles in flight per worker
+     */
+    public final int threads;
+
+    /**
+     * edge length of tiles in pixels
+     */
+    public final int tileSize;
+
+    /**
+     * extra arguments of the first worker, e.g. --crash-after to test lost workers, empty otherwise
+     */
+    private final List<String> firstWorkerArguments;
+
+    /**
+     * constructor of RenderCoordinator
+     * throws IllegalArgumentException if workers, threads or tileSize is smaller than 1
+     * @param workers amount of worker processes
+     * @param threads amount of render threads of every worker
+     * @param tileSize edge length of tiles in pixels
+     */
+    public RenderCoordinator(final int workers, final int threads, final int tileSize) {
+        this(workers, threads, tileSize, new ArrayList<String>());
+    }
+
+    /**
+     * constructor of RenderCoordinator passing extra arguments to the first worker
+     * throws IllegalArgumentException if workers, threads or tileSize is smaller than 1 or firstWorkerArguments is null
+     * @param workers amount of worker processes
+     * @param threads amount of render threads of every worker
+     * @param tileSize edge length of tiles in pixels
+     * @param firstWorkerArguments extra arguments of the first worker
+     */
+    public RenderCoordinator(final int workers, final int threads, final int tileSize, final List<String> firstWorkerArguments) {
+        if (workers < 1 || threads < 1 || tileSize < 1 || firstWorkerArguments == null) throw new IllegalArgumentException();
+        this.workers = workers;
+        this.threads = threads;
+        this.tileSize = tileSize;
+        this.firstWorkerArguments = firstWorkerArguments;
+    }
+
+    /**
+     * starts the workers, renders every tile on them and stops them again
+     * throws IllegalArgumentException if scene or pattern is null or the size is smaller than 1
+     * @param scene scene every worker loads
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param pattern sampling pattern, sent to the workers so all of them trace the same rays
+     * @return rendered image
+     * @throws IOException if no worker connects or every worker died before the image was finished
+     */
+    public FrameBuffer render(final SceneType scene, final int width, final int height, final SamplingPattern pattern) throws IOException {
+        if (scene == null || pattern == null || width < 1 || height < 1) throw new IllegalArgumentException();
+        long start = System.currentTimeMillis();
+        FrameBuffer image = new FrameBuffer(width, height);
+        List<Tile> tiles = TileScheduler.tiles(width, height, tileSize);
+        BlockingDeque<Tile> pending = new LinkedBlockingDeque<Tile>(tiles);
+        CountDownLatch remaining = new CountDownLatch(tiles.size());
+        AtomicInteger alive = new AtomicInteger();
+        AtomicLong slowestTile = new AtomicLong();
+        Protocol.Job job = new Protocol.Job(scene, width, height, pattern.points, threads);
+
+        ArrayList<Process> processes = new ArrayList<Process>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < workers; i++) {
+                processes.add(start(server.getLocalPort(), i == 0 ? firstWorkerArguments : new ArrayList<String>()));
+            }
+
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            for (int i = 0; i < workers; i++) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    System.out.println("only " + i + " of " + workers + " workers connected");
+                    break;
+                }
+                alive.incrementAndGet();
+                Thread connection = new Thread(new Connection(i, socket, job, image, pending, remaining, alive, slowestTile), "render worker " + i);
+                connection.setDaemon(true);
+                connection.start();
+            }
+
+            while (!remaining.await(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (alive.get() == 0) throw new IOException("every worker died, " + remaining.getCount() + " of " + tiles.size() + " tiles left");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("rendering interrupted");
+        } finally {
+            for (Process process : processes) {
+                // workers exit after the end message, only lost or hanging ones are left
+                if (!waitFor(process)) process.destroyForcibly();
+            }
+        }
+
+        System.out.println(width + "x" + height + " rendered on " + workers + " workers with " + threads + " threads in " + (System.currentTimeMillis() - start) + "ms");
+        return image;
+    }
+
+    /**
+     * starts one worker process with the class path and jvm options of this process
+     * @param port port of coordinator on the loopback address
+     * @param arguments extra arguments of worker
+     * @return process of worker
+     * @throws IOException if the process cannot be started
+     */
+    private static Process start(final int port, final List<String> arguments) throws IOException {
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // debugger and agents would ask for the same port in every worker
+            if (!option.startsWith("-agentlib") && !option.startsWith("-javaagent") && !option.startsWith("-Xrunjdwp")) command.add(option);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(RenderWorker.class.getName());
+        command.add(InetAddress.getLoopbackAddress().getHostAddress());
+        command.add(String.valueOf(port));
+        command.addAll(arguments);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * @return true if the process ended within a second
+     */
+    private static boolean waitFor(final Process process) {
+        try {
+            return process.waitFor(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * sends tiles of the queue to one worker until every tile is finished
+     * keeps one tile per render thread of the worker in flight, so none of its threads waits for the network
+     * puts every tile in flight back into the queue if the connection fails or the oldest one times out
+     */
+    private static final class Connection implements Runnable {
+
+        private final int index;
+        private final Socket socket;
+        private final Protocol.Job job;
+        private final FrameBuffer image;
+        private final BlockingDeque<Tile> pending;
+        private final CountDownLatch remaining;
+        private final AtomicInteger alive;
+        private final AtomicLong slowestTile;
+
+        Connection(final int index, final Socket socket, final Protocol.Job job, final FrameBuffer image,
+                   final BlockingDeque<Tile> pending, final CountDownLatch remaining, final AtomicInteger alive, final AtomicLong slowestTile) {
+            this.index = index;
+            this.socket = socket;
+            this.job = job;
+            this.image = image;
+            this.pending = pending;
+            this.remaining = remaining;
+            this.alive = alive;
+            this.slowestTile = slowestTile;
+        }
+
+        @Override
+        public void run() {
+            int tiles = 0;
+            // tiles sent but not answered yet with the time they were sent, oldest first
+            Map<Tile, Long> inFlight = new LinkedHashMap<Tile, Long>();
+            try (Socket s = socket) {
+                s.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                Protocol.writeJob(out, job);
+                // time of the first answer, tiles sent before waited for the scene to load
+                long loaded = 0;
+
+                while (remaining.getCount() > 0) {
+                    while (inFlight.size() < job.threads) {
+                        Tile tile = inFlight.isEmpty() ? pending.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS) : pending.poll();
+                        if (tile == null) break;
+                        inFlight.put(tile, System.currentTimeMillis());
+                        Protocol.writeTile(out, tile);
+                    }
+                    if (inFlight.isEmpty()) continue;
+
+                    long oldest = Math.max(loaded, inFlight.values().iterator().next());
+                    long timeout = loaded == 0 ? FIRST_TILE_TIMEOUT
+                            : oldest + Math.max(MIN_TILE_TIMEOUT, TILE_TIMEOUT_FACTOR * slowestTile.get()) - System.currentTimeMillis();
+                    s.setSoTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, timeout)));
+                    Tile tile = Protocol.readTile(in);
+                    Long sent = tile == null ? null : inFlight.get(tile);
+                    if (sent == null) throw new IOException("answer to a tile that was not sent: " + tile);
+                    image.set(tile, Protocol.readPixels(in, tile));
+                    inFlight.remove(tile);
+                    long now = System.currentTimeMillis();
+                    if (loaded == 0) loaded = now;
+                    else if (sent >= loaded) slowestTile.accumulateAndGet(now - sent, Math::max);
+                    remaining.countDown();
+                    tiles++;
+                }
+                Protocol.writeEnd(out);
+            } catch (IOException e) {
+                System.out.println("lost worker " + index + " after " + tiles + " tiles, its " + inFlight.size() + " tiles in flight are rendered again: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                for (Tile tile : inFlight.keySet()) {
+                    pending.addFirst(tile);
+                }
+                alive.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCoordinator{" +
+                "workers=" + workers +
+                ", threads=" + threads +
+                ", tileSize=" + tileSize +
+                '}';
+    }
+}
@@ -0,0 +1,115 @@
+package Distributed;
+
+import Raytracer.PixelTracer;
+import Raytracer.RenderSession;
+import Raytracer.Tile;
+import Raytracer.TileScheduler;
+import Raytracer.World;
+import Sampling.SamplingPattern;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * render process started by RenderCoordinator
+ * connects to the coordinator, loads the scene of the job once and renders tiles until the coordinator ends the connection
+ * tiles are rendered on as many threads as the job asks for and answered in the order they are finished
+ * arguments: host port [--crash-after tiles] [--hang-after tiles]
+ * the options simulate a lost node, it exits or stops answering with the socket left open after that many tiles
+ */
+public class RenderWorker {
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean valid = args.length >= 2 && args.length % 2 == 0;
+        int crashAfter = Integer.MAX_VALUE;
+        int hangAfter = Integer.MAX_VALUE;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--crash-after")) crashAfter = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--hang-after")) hangAfter = Integer.parseInt(args[i + 1]);
+            else valid = false;
+        }
+        if (!valid) {
+            System.err.println("usage: RenderWorker <host> <port> [--crash-after <tiles>] [--hang-after <tiles>]");
+            System.exit(2);
+        }
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            serve(in, out, crashAfter, hangAfter);
+        } catch (IOException e) {
+            System.err.println("worker lost the coordinator: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * renders the tiles of one connection
+     * the tiles are read on this thread and rendered on the threads of a TileScheduler
+     * @param in messages of coordinator
+     * @param out answers to coordinator
+     * @param crashAfter amount of tiles before the process exits without answering
+     * @param hangAfter amount of tiles before the process stops answering and keeps the connection open
+     * @throws IOException if the connection fails
+     */
+    private static void serve(final DataInputStream in, final DataOutputStream out, final int crashAfter, final int hangAfter) throws IOException {
+        long start = System.currentTimeMillis();
+        Protocol.Job job = Protocol.readJob(in);
+        World world = job.scene.create(new SamplingPattern(job.points));
+        PixelTracer tracer = new PixelTracer(world, world.cam, job.width, job.height);
+        TileScheduler scheduler = new TileScheduler(job.threads, TileScheduler.DEFAULT_TILE_SIZE);
+        System.out.println("worker loaded " + job.scene + " in " + (System.currentTimeMillis() - start) + "ms, rendering on " + job.threads + " threads");
+
+        ArrayList<RenderSession> sessions = new ArrayList<RenderSession>();
+        for (Tile tile = Protocol.readTile(in); tile != null; tile = Protocol.readTile(in)) {
+            if (sessions.size() == crashAfter) Runtime.getRuntime().halt(3);
+            if (sessions.size() == hangAfter) hang();
+            sessions.add(scheduler.submit(Collections.singletonList(tile), (t, session) -> answer(tracer, out, t)));
+        }
+        try {
+            for (RenderSession session : sessions) session.await();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("worker rendered " + sessions.size() + " tiles, " + tracer.rays() + " primary rays");
+    }
+
+    /**
+     * renders a tile and sends its pixels, called from the threads of the scheduler
+     * @param tracer tracer of job
+     * @param out answers to coordinator, shared by all threads
+     * @param tile pixels to render
+     */
+    private static void answer(final PixelTracer tracer, final DataOutputStream out, final Tile tile) {
+        float[] rgb = new float[tile.pixels() * 3];
+        tracer.trace(tile, rgb);
+        try {
+            synchronized (out) {
+                Protocol.writePixels(out, tile, rgb);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * blocks forever like a deadlocked or stopped process, the coordinator destroys it in the end
+     */
+    private static void hang() {
+        while (true) {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                // keeps hanging
+            }
+        }
+    }
+}
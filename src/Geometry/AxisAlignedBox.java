@@ -1,14 +1,14 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import Material.*;
 import MathLib.*;
 import Raytracer.Color;
 import Raytracer.Hit;
+import Raytracer.HitRecord;
 import Raytracer.Ray;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Objects;
 
 /**
@@ -74,38 +74,84 @@ public class AxisAlignedBox extends Geometry {
 
     /**
      * checks if hit point is within Box created through point a and b
-     * slightly increases check value because of float value to ensure every hit
-     * is within box
      * @param r incoming ray
      * @return hit
      */
     public Hit hit(Ray r) {
-        // hits all plane and adds hits to list
-        ArrayList<Hit> hits = new ArrayList<Hit>();
-        for (Plane plane : planeList) {
-            if ((r.o.sub(plane.a)).dot(plane.n) > 0) {
-                Hit hit = plane.hit(r);
-                if (hit != null) hits.add(hit);
-            }
-        }
-
-        Hit maxHit = hits.stream().max(new Comparator<Hit>() {
-            @Override
-            public int compare(Hit hit, Hit t1) {
-                return Double.compare(hit.t, t1.t);
-            }
-        }).orElse(null);
-
-        if (maxHit == null) return null;
-
-        Point3 at = r.at(maxHit.t);
-        if (((at.x + 0.00001) >= a.x && at.x <= (b.x + 0.00001)) && ((at.y + 0.00001) >= a.y && at.y <= (b.y + 0.00001)) && ((at.z + 0.00001) >= a.z && at.z <= (b.z + 0.00001))) {
-            maxHit.u = at.x;
-            maxHit.v = -at.z;
-            return maxHit;
-        }
-
-        return null;
+        return closestHit(r);
+    }
+
+    /**
+     * slab test on plain doubles
+     * the ray enters the box where it crossed the last of the three entry planes, as long as it has not left
+     * a slab yet, so rays starting inside the box do not hit it like before
+     * the face of the entry plane is kept in rec.part as index of planeList
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if box is hit between tMin and tMax
+     */
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        double tNear = Double.NEGATIVE_INFINITY;
+        double tFar = Double.POSITIVE_INFINITY;
+        int face = -1;
+
+        if (r.d.x != 0) {
+            final double t0 = (a.x - r.o.x) / r.d.x;
+            final double t1 = (b.x - r.o.x) / r.d.x;
+            final double near = r.d.x > 0 ? t0 : t1;
+            if (near > tNear) { tNear = near; face = r.d.x > 0 ? 2 : 3; }
+            tFar = Math.min(tFar, r.d.x > 0 ? t1 : t0);
+        } else if (r.o.x < a.x || r.o.x > b.x) return false;
+
+        if (r.d.y != 0) {
+            final double t0 = (a.y - r.o.y) / r.d.y;
+            final double t1 = (b.y - r.o.y) / r.d.y;
+            final double near = r.d.y > 0 ? t0 : t1;
+            if (near > tNear) { tNear = near; face = r.d.y > 0 ? 1 : 4; }
+            tFar = Math.min(tFar, r.d.y > 0 ? t1 : t0);
+        } else if (r.o.y < a.y || r.o.y > b.y) return false;
+
+        if (r.d.z != 0) {
+            final double t0 = (a.z - r.o.z) / r.d.z;
+            final double t1 = (b.z - r.o.z) / r.d.z;
+            final double near = r.d.z > 0 ? t0 : t1;
+            if (near > tNear) { tNear = near; face = r.d.z > 0 ? 5 : 0; }
+            tFar = Math.min(tFar, r.d.z > 0 ? t1 : t0);
+        } else if (r.o.z < a.z || r.o.z > b.z) return false;
+
+        if (face < 0 || tNear > tFar + 0.00001 || tNear < 0.000001 || tNear <= tMin || tNear >= tMax) return false;
+        rec.t = tNear;
+        rec.geo = this;
+        rec.part = face;
+        return true;
+    }
+
+    /**
+     * normal of the entry face, texture coordinates are taken from x and z of hit point
+     * @param r ray that was passed to intersect
+     * @param rec record written by intersect
+     * @return hit
+     */
+    @Override
+    public Hit hitFor(final Ray r, final HitRecord rec) {
+        final Hit hit = new Hit(rec.t, r, planeList[rec.part], planeList[rec.part].n);
+        final Point3 at = r.at(rec.t);
+        hit.u = at.x;
+        hit.v = -at.z;
+        return hit;
+    }
+
+    /**
+     * box spanned by a and b
+     * grown by the same tolerance used in hit
+     * @return bounding box
+     */
+    @Override
+    protected BoundingBox calculateBounds() {
+        return new BoundingBox(a, b).expand(0.00001);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import Material.*;
 import Raytracer.*;
 
@@ -13,6 +14,16 @@ public abstract class   Geometry {
      */
     public final Material mat;
 
+    /**
+     * world space bounds cached by bounds(), null until calculated
+     */
+    private BoundingBox bounds;
+
+    /**
+     * record of every thread for occludes of geometries without an own any hit test, only the answer is used
+     */
+    private static final ThreadLocal<HitRecord> SCRATCH = ThreadLocal.withInitial(HitRecord::new);
+
     /**
      * constructor of geometry Object
      * assigns color to shape
@@ -31,4 +42,101 @@ public abstract class   Geometry {
      *  @param r incoming ray
      */
     public abstract Hit hit(final Ray r);
+
+    /**
+     * allocation free intersection used by accelerators
+     * only hits with tMin < t < tMax are reported, so the closest hit so far is passed as tMax
+     * writes into rec only if it returns true, the Hit itself is created later by hitFor
+     * falls back to hit unless a geometry overrides it
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if a hit between tMin and tMax was written into rec
+     */
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec){
+        final Hit hit = hit(r);
+        if(hit == null || hit.t <= tMin || hit.t >= tMax) return false;
+        rec.t = hit.t;
+        rec.geo = this;
+        rec.hit = hit;
+        return true;
+    }
+
+    /**
+     * creates the Hit of an intersection recorded by intersect
+     * normal and texture coordinates are only calculated here, once for the closest hit
+     * @param r ray that was passed to intersect
+     * @param rec record written by intersect of this geometry
+     * @return hit
+     */
+    public Hit hitFor(final Ray r, final HitRecord rec){
+        return rec.hit;
+    }
+
+    /**
+     * hit through the allocation free kernel, for geometries overriding intersect and hitFor
+     * @param r incoming ray
+     * @return hit point with lowest positive t or null
+     */
+    protected final Hit closestHit(final Ray r){
+        if(r == null) throw new IllegalArgumentException();
+        final HitRecord rec = new HitRecord();
+        return intersect(r, 0, Double.MAX_VALUE, rec) ? hitFor(r, rec) : null;
+    }
+
+    /**
+     * closest hits of the active rays of a packet, kept in packet.hits where closer than the hits found so far
+     * tests every active ray on its own unless a geometry overrides it
+     * @param packet rays to trace, only rays flagged in packet.active are tested
+     */
+    public void hit(final RayPacket packet){
+        final HitRecord rec = packet.record;
+        for(int i = 0; i < packet.size(); i++){
+            if(packet.active[i] && intersect(packet.rays[i], 0, packet.tMax(i), rec)) packet.offer(i, rec.toHit(packet.rays[i]));
+        }
+    }
+
+    /**
+     * any hit query used by shadow rays
+     * returns true as soon as one hit point with positive t lies before tMax
+     * the closest hit is not needed, so implementations may stop at the first one
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes, Double.POSITIVE_INFINITY for any distance
+     * @return true if geometry occludes the ray
+     */
+    public boolean occludes(final Ray r, final double tMax){
+        return intersect(r, 0, tMax, SCRATCH.get());
+    }
+
+    /**
+     * world space bounds of geometry used by acceleration structures and early ray rejection
+     * calculated once and cached until invalidateBounds is called
+     * returns BoundingBox.UNBOUNDED if geometry is infinite
+     * @return bounding box
+     */
+    public final BoundingBox bounds(){
+        BoundingBox b = bounds;
+        if(b == null){
+            b = calculateBounds();
+            bounds = b;
+        }
+        return b;
+    }
+
+    /**
+     * calculates the world space bounds, called by bounds() when the cache is empty
+     * returns BoundingBox.UNBOUNDED unless a geometry overrides it
+     * @return bounding box
+     */
+    protected BoundingBox calculateBounds(){
+        return BoundingBox.UNBOUNDED;
+    }
+
+    /**
+     * empties the cache of bounds() after the geometry was changed
+     */
+    protected final void invalidateBounds(){
+        bounds = null;
+    }
 }
@@ -0,0 +1,482 @@
+package Geometry;
+
+import Acceleration.Accelerator;
+import Acceleration.AcceleratorType;
+import Acceleration.BVH;
+import Material.Material;
+import Material.SingleColorMaterial;
+import MathLib.Normal3;
+import MathLib.Point2;
+import MathLib.Point3;
+import Raytracer.Color;
+import Texture.SingleColorTexture;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mesh loads a wavefront obj and builds its accelerator
+ * a mesh is loaded once per file and shared by every Model using it
+ * object has to be located in 'Assets/'
+ * parsed faces and the plain hierarchy are kept in a sidecar file next to the object, see MeshCache
+ * wavefront obj specifications implemented from
+ * https://de.wikipedia.org/wiki/Wavefront_OBJ
+ */
+public class Mesh {
+
+    /**
+     * every mesh loaded so far by name of object
+     */
+    private static final Map<String, Mesh> LOADED = new ConcurrentHashMap<String, Mesh>();
+
+    /**
+     * directory of wavefront objects
+     */
+    private static final String DIRECTORY = "src/Assets/WaveFrontObjects/";
+
+    /**
+     * material of faces
+     * faces are never shaded directly, every hit is reported with the material of the Model
+     */
+    private static final Material FACE_MATERIAL = new SingleColorMaterial(new SingleColorTexture(new Color(0, 0, 0)));
+
+    /**
+     * ArrayList containing all vertices
+     */
+    public final ArrayList<Point3> v = new ArrayList<Point3>();
+
+    /**
+     * ArrayList containing all textureCoordinates
+     */
+    public final ArrayList<Point2> vt = new ArrayList<Point2>();
+
+    /**
+     * ArrayList containing all normals
+     */
+    public final ArrayList<Normal3> vn = new ArrayList<Normal3>();
+
+    /**
+     * ArrayList containing all faces
+     */
+    public final ArrayList<Triangle> f = new ArrayList<Triangle>();
+
+    /**
+     * one based indices of every face, vertices, texture coordinates and normals, 0 if absent
+     */
+    final ArrayList<int[]> faceIndices = new ArrayList<int[]>();
+
+    /**
+     * accelerator over all faces
+     * built once after the object was loaded
+     */
+    public final Accelerator accelerator;
+
+    /**
+     * used to get minimal point
+     */
+    private double minX, minY, minZ = 9999;
+
+    /**
+     * used to get maximal point
+     */
+    private double maxX, maxY, maxZ = -9999;
+
+    /**
+     * minimal point
+     */
+    private Point3 minPoint;
+
+    /**
+     * maximal point
+     */
+    private Point3 maxPoint;
+
+    /**
+     * Name of Object
+     */
+    private String name = "Model";
+
+    /**
+     * returns the mesh of given object
+     * object is only parsed the first time it is requested
+     * @param nameOfObject Name of wavefront object located on Assets/
+     * @return shared mesh
+     */
+    public static Mesh load(final String nameOfObject){
+        return load(nameOfObject, 0);
+    }
+
+    /**
+     * returns the mesh of given object with a spatial split hierarchy
+     * meshes are shared per object and memory budget
+     * throws IllegalArgumentException if spatialSplitOverhead is negative
+     * @param nameOfObject Name of wavefront object located on Assets/
+     * @param spatialSplitOverhead allowed extra triangle references as fraction of faces, 0 for the plain builder
+     * @return shared mesh
+     */
+    public static Mesh load(final String nameOfObject, final double spatialSplitOverhead){
+        if(spatialSplitOverhead < 0) throw new IllegalArgumentException();
+        if(spatialSplitOverhead == 0) return load(nameOfObject, AcceleratorType.BVH);
+        return LOADED.computeIfAbsent(nameOfObject + "#" + spatialSplitOverhead, key -> new Mesh(nameOfObject, AcceleratorType.BVH, spatialSplitOverhead));
+    }
+
+    /**
+     * returns the mesh of given object with the given accelerator
+     * meshes are shared per object and accelerator
+     * throws IllegalArgumentException if type is null
+     * @param nameOfObject Name of wavefront object located on Assets/
+     * @param type accelerator over the faces
+     * @return shared mesh
+     */
+    public static Mesh load(final String nameOfObject, final AcceleratorType type){
+        if(type == null) throw new IllegalArgumentException();
+        if(type == AcceleratorType.BVH) return LOADED.computeIfAbsent(nameOfObject, name -> new Mesh(name, type, 0));
+        return LOADED.computeIfAbsent(nameOfObject + "@" + type, key -> new Mesh(nameOfObject, type, 0));
+    }
+
+    /**
+     * Constructor calculates in separate function
+     * faces and the plain hierarchy are read from the cache if the object did not change
+     * with spatial splits the plain hierarchy is built as well to report the improvement of the SAH cost
+     * @param nameOfObject Name of wavefront object located on Assets/
+     * @param type accelerator over the faces
+     * @param spatialSplitOverhead allowed extra triangle references as fraction of faces, 0 for the plain builder
+     */
+    private Mesh(final String nameOfObject, final AcceleratorType type, final double spatialSplitOverhead){
+        //v.add(null); // disgusting
+        long start = System.currentTimeMillis();
+        final Path cache = Paths.get(DIRECTORY + nameOfObject + MeshCache.SUFFIX);
+        byte[] hash = null;
+        try{
+            hash = MeshCache.hash(Paths.get(DIRECTORY + nameOfObject));
+        }catch(IOException e){
+            // reported once more while parsing
+        }
+        BVH plain = hash == null ? null : MeshCache.read(this, cache, hash);
+        if(plain != null){
+            System.out.println(name + " loaded from cache " + cache.getFileName() + " in " + (System.currentTimeMillis() - start) + "ms");
+            printSummary();
+        }else{
+            startCalculateObj(nameOfObject);
+        }
+
+        start = System.currentTimeMillis();
+        if(type != AcceleratorType.BVH){
+            accelerator = type.create(f);
+            System.out.println(name + " " + accelerator + " built in " + (System.currentTimeMillis() - start) + "ms");
+            return;
+        }
+        if(plain == null){
+            plain = new BVH(f);
+            System.out.println(name + " BVH with " + plain.nodeCount() + " nodes built in " + (System.currentTimeMillis() - start) + "ms"
+                    + " (" + String.format("%.1f", plain.buildMillisPerMillionPrimitives()) + "ms per million primitives)");
+            if(hash != null) MeshCache.write(this, plain, cache, hash);
+        }
+        if(spatialSplitOverhead == 0){
+            accelerator = plain;
+            return;
+        }
+
+        start = System.currentTimeMillis();
+        BVH bvh = new BVH(f, spatialSplitOverhead);
+        accelerator = bvh;
+        System.out.println(name + " SBVH with " + bvh.nodeCount() + " nodes and " + bvh.size() + " references built in " + (System.currentTimeMillis() - start) + "ms"
+                + ", SAH cost " + String.format("%.2f", plain.sahCost()) + " -> " + String.format("%.2f", bvh.sahCost())
+                + " (" + String.format("%.1f", 100 * (1 - bvh.sahCost() / plain.sahCost())) + "% lower"
+                + ", " + String.format("%.1f", 100.0 * (bvh.size() - f.size()) / Math.max(1, f.size())) + "% more references)");
+    }
+
+    /**
+     * takes path to wavefront object and starts working through .obj
+     * @param path Name of object
+     */
+    private void startCalculateObj(final String path){
+        String data = "";
+        try{
+            data = new String(Files.readAllBytes(Paths.get(DIRECTORY + path)));
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+        calculateObj(data);
+    }
+
+    /**
+     * gets through each line and separates between
+     * v for vertices
+     * vt for texture
+     * vn for normal
+     * and f for face
+     * all other are currently ignored
+     * @param object String of object
+     */
+    private void calculateObj(final String object){
+        String[] data = object.split("\r?\n");
+        // System.out.println("Model has: " + data.length + " lines");
+        for(String line: data){
+            //System.out.println(line);
+            String[] splitLine = line.split(" ");
+            double[] arr;
+
+            switch (splitLine[0]){
+                /*
+                case "#":
+                // comment
+                    System.out.println(line);
+                    break;
+
+                case "mtllib":
+                // path to Material of object
+                    System.out.println(line);
+                    break;
+                */
+                case "o":
+
+                    this.name = splitLine[1];
+                    break;
+
+                case "v":
+                    arr = stringArrayToDoubleArray(splitLine);
+                    addVertex(arr[0], arr[1], arr[2]);
+                    // System.out.println(this.v.size());
+                    break;
+
+                case "vt":
+                    arr = stringArrayToDoubleArray(splitLine);
+                    vt.add(new Point2(arr[0], arr[1]));
+                    break;
+
+                case "vn":
+                    arr = stringArrayToDoubleArray(splitLine);
+                    vn.add(new Normal3(arr[0], arr[1], arr[2]));
+                    break;
+                /*
+                case "g":
+                // grouping
+                    System.out.println(line);
+                    break;
+
+                case "usemtl":
+                // use material
+                    System.out.println(line);
+                    break;
+
+                case "s":
+                    System.out.println(line);
+                    break;
+
+                 */
+
+                case "f":
+                    // ugly
+                    String[] firstFace = splitLine[1].split("/");
+                    String[] secondFace = splitLine[2].split("/");
+                    String[] thirdFace = splitLine[3].split("/");
+                    int[] indices = new int[9];
+
+                    indices[0] = calInt(firstFace[0]);
+                    indices[1] = calInt(secondFace[0]);
+                    indices[2] = calInt(thirdFace[0]);
+
+                    if(firstFace.length == 3){
+                        indices[3] = calInt(firstFace[2]);
+                        indices[4] = calInt(secondFace[2]);
+                        indices[5] = calInt(thirdFace[2]);
+
+                        indices[6] = calInt(firstFace[1]);
+                        indices[7] = calInt(secondFace[1]);
+                        indices[8] = calInt(thirdFace[1]);
+
+                    }else if(firstFace.length == 2){
+
+                        if(splitLine[1].contains("//")){
+                            indices[6] = calInt(firstFace[1]);
+                            indices[7] = calInt(secondFace[1]);
+                            indices[8] = calInt(thirdFace[1]);
+                        }else{
+                            indices[3] = calInt(firstFace[1]);
+                            indices[4] = calInt(secondFace[1]);
+                            indices[5] = calInt(thirdFace[1]);
+                        }
+                    }
+                    addFace(indices);
+                    break;
+            }
+        }
+        printSummary();
+    }
+
+    /**
+     * sets minimal and maximal point and prints size of object
+     */
+    private void printSummary(){
+        System.out.println(name + " has: " + v.size() + " vertices");
+        System.out.println(name + " has: " + f.size() + " faces");
+        minPoint = new Point3(minX, minY, minZ);
+        maxPoint = new Point3(maxX, maxY, maxZ);
+        System.out.println("MinPoint: "  + minPoint);
+        System.out.println("MaxPoint: "  + maxPoint);
+    }
+
+    /**
+     * adds a vertex and widens minimal and maximal point
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     */
+    void addVertex(final double x, final double y, final double z){
+        Point3 currentPoint = new Point3(x, y, z);
+        checkForEdges(currentPoint);
+        v.add(currentPoint);
+    }
+
+    /**
+     * adds a face
+     * texture coordinates and normals are used if all three corners have one
+     * throws IndexOutOfBoundsException if an index does not exist
+     * @param indices one based indices of vertices, texture coordinates and normals, 0 if absent
+     */
+    void addFace(final int[] indices){
+        Point3 a = v.get(indices[0] - 1);
+        Point3 b = v.get(indices[1] - 1);
+        Point3 c = v.get(indices[2] - 1);
+        boolean textured = indices[3] != 0 && indices[4] != 0 && indices[5] != 0;
+        boolean normals = indices[6] != 0 && indices[7] != 0 && indices[8] != 0;
+        Triangle t;
+        if(textured && normals){
+            t = new Triangle(a, b, c, vt.get(indices[3] - 1), vt.get(indices[4] - 1), vt.get(indices[5] - 1), vn.get(indices[6] - 1), vn.get(indices[7] - 1), vn.get(indices[8] - 1), FACE_MATERIAL);
+        }else if(normals){
+            t = new Triangle(a, b, c, vn.get(indices[6] - 1), vn.get(indices[7] - 1), vn.get(indices[8] - 1), FACE_MATERIAL);
+        }else if(textured){
+            t = new Triangle(a, b, c, vt.get(indices[3] - 1), vt.get(indices[4] - 1), vt.get(indices[5] - 1), FACE_MATERIAL);
+        }else{
+            t = new Triangle(a, b, c, FACE_MATERIAL);
+        }
+        faceIndices.add(indices);
+        f.add(t);
+    }
+
+    /**
+     * @return name of object
+     */
+    String getName(){
+        return name;
+    }
+
+    /**
+     * @param name name of object
+     */
+    void setName(final String name){
+        this.name = name;
+    }
+
+    /**
+     * removes everything read so far, used when a cache turns out to be broken
+     */
+    void clear(){
+        v.clear();
+        vt.clear();
+        vn.clear();
+        f.clear();
+        faceIndices.clear();
+        minX = 0;
+        minY = 0;
+        minZ = 9999;
+        maxX = 0;
+        maxY = 0;
+        maxZ = -9999;
+    }
+
+    /**
+     * takes string and tries to parse it
+     * trim maybe not needed
+     * @param str input
+     * @return Integer
+     */
+    private int calInt(String str){
+        return Integer.parseInt(str.trim());
+    }
+
+    /**
+     * checks each point for minimal Point and maximal Point
+     * @param p Point3 to check
+     */
+    private void checkForEdges(Point3 p){
+        if (p.x > maxX) maxX = p.x;
+        if (p.y > maxY) maxY = p.y;
+        if (p.z > maxZ) maxZ = p.z;
+
+        if (p.x < minX) minX = p.x;
+        if (p.y < minY) minY = p.y;
+        if (p.z < minZ) minZ = p.z;
+    }
+
+    /**
+     * transforms String[] to Double[]
+     * ignores first index
+     * @param strArray String[] to transform
+     * @return new Double[] without first index
+     */
+    private double[] stringArrayToDoubleArray(String[] strArray){
+        double[] arr = new double[strArray.length-1];
+
+        for (int i = 1; i < strArray.length; i++){
+            try{
+                // System.out.println(strArray[i]);
+                arr[i - 1] = Double.parseDouble(strArray[i]);
+                //System.out.println(arr[i - 1]);
+            }catch (NumberFormatException e){
+                e.printStackTrace();
+            }
+
+        }
+        return arr;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Mesh mesh = (Mesh) o;
+        return Double.compare(mesh.minX, minX) == 0 &&
+                Double.compare(mesh.minY, minY) == 0 &&
+                Double.compare(mesh.minZ, minZ) == 0 &&
+                Double.compare(mesh.maxX, maxX) == 0 &&
+                Double.compare(mesh.maxY, maxY) == 0 &&
+                Double.compare(mesh.maxZ, maxZ) == 0 &&
+                Objects.equals(v, mesh.v) &&
+                Objects.equals(vt, mesh.vt) &&
+                Objects.equals(vn, mesh.vn) &&
+                Objects.equals(f, mesh.f) &&
+                Objects.equals(minPoint, mesh.minPoint) &&
+                Objects.equals(maxPoint, mesh.maxPoint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(v, vt, vn, f, minX, minY, minZ, maxX, maxY, maxZ, minPoint, maxPoint);
+    }
+
+    @Override
+    public String toString() {
+        return "Mesh{" +
+                "v=" + v +
+                ", vt=" + vt +
+                ", vn=" + vn +
+                ", f=" + f +
+                ", minX=" + minX +
+                ", minY=" + minY +
+                ", minZ=" + minZ +
+                ", maxX=" + maxX +
+                ", maxY=" + maxY +
+                ", maxZ=" + maxZ +
+                ", minPoint=" + minPoint +
+                ", maxPoint=" + maxPoint +
+                '}';
+    }
+}
@@ -0,0 +1,188 @@
+package Geometry;
+
+import Acceleration.BVH;
+import MathLib.Normal3;
+import MathLib.Point2;
+import MathLib.Point3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * binary sidecar file next to a wavefront obj holding the parsed mesh and its bounding volume hierarchy
+ * the file is keyed by the SHA-256 hash of the obj, so a changed obj is parsed and built again
+ * files are read through a memory mapped FileChannel
+ *
+ * format, big endian:
+ * magic, version, 32 byte hash, name,
+ * vertices, texture coordinates, normals, faces as nine one based indices, bounding volume hierarchy
+ */
+final class MeshCache {
+
+    /**
+     * "MESH" in ascii
+     */
+    private static final int MAGIC = 0x4D455348;
+
+    /**
+     * raised whenever the format changes, older files are rebuilt
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * suffix of sidecar file
+     */
+    static final String SUFFIX = ".bvhcache";
+
+    private MeshCache() {
+    }
+
+    /**
+     * hashes an obj file
+     * @param obj path of obj
+     * @return SHA-256 hash
+     * @throws IOException if the file cannot be read
+     */
+    static byte[] hash(final Path obj) throws IOException {
+        try (FileChannel channel = FileChannel.open(obj, StandardOpenOption.READ)) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * fills a mesh from its sidecar file
+     * @param mesh empty mesh to fill
+     * @param cache path of sidecar file
+     * @param hash hash of obj
+     * @return hierarchy over the faces or null if the file is missing, outdated or broken, mesh stays empty then
+     */
+    static BVH read(final Mesh mesh, final Path cache, final byte[] hash) {
+        if (!Files.isRegularFile(cache)) return null;
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            final MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+            final byte[] storedHash = new byte[32];
+            in.get(storedHash);
+            if (!Arrays.equals(hash, storedHash)) return null;
+
+            final byte[] name = new byte[count(in, 1)];
+            in.get(name);
+
+            final int vertices = count(in, 24);
+            for (int i = 0; i < vertices; i++) {
+                mesh.addVertex(in.getDouble(), in.getDouble(), in.getDouble());
+            }
+            final int textureCoordinates = count(in, 16);
+            for (int i = 0; i < textureCoordinates; i++) {
+                mesh.vt.add(new Point2(in.getDouble(), in.getDouble()));
+            }
+            final int normals = count(in, 24);
+            for (int i = 0; i < normals; i++) {
+                mesh.vn.add(new Normal3(in.getDouble(), in.getDouble(), in.getDouble()));
+            }
+            final int faces = count(in, 36);
+            final int[] indices = new int[9 * faces];
+            in.asIntBuffer().get(indices);
+            in.position(in.position() + 4 * indices.length);
+            for (int i = 0; i < faces; i++) {
+                mesh.addFace(Arrays.copyOfRange(indices, 9 * i, 9 * i + 9));
+            }
+
+            final BVH bvh = BVH.read(in, mesh.f::get, mesh.f.size());
+            mesh.setName(new String(name, StandardCharsets.UTF_8));
+            return bvh;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("ignoring broken cache " + cache + ": " + e);
+            mesh.clear();
+            return null;
+        }
+    }
+
+    /**
+     * reads an amount and checks that the remaining data can hold it
+     * @param in buffer
+     * @param bytesPerEntry minimal size of an entry
+     * @return amount
+     */
+    private static int count(final ByteBuffer in, final int bytesPerEntry) {
+        final int count = in.getInt();
+        if (count < 0 || (long) count * bytesPerEntry > in.remaining()) throw new IllegalArgumentException("invalid count " + count);
+        return count;
+    }
+
+    /**
+     * writes a mesh and its hierarchy into its sidecar file
+     * the file is written next to it first and then moved, so readers never see half a file
+     * failures are printed, rendering goes on without cache
+     * @param mesh parsed mesh
+     * @param bvh hierarchy over the faces
+     * @param cache path of sidecar file
+     * @param hash hash of obj
+     */
+    static void write(final Mesh mesh, final BVH bvh, final Path cache, final byte[] hash) {
+        final byte[] name = mesh.getName().getBytes(StandardCharsets.UTF_8);
+        final long size = 4 + 4 + 32 + 4 + name.length
+                + 4 + 24L * mesh.v.size() + 4 + 16L * mesh.vt.size() + 4 + 24L * mesh.vn.size()
+                + 4 + 36L * mesh.faceIndices.size() + bvh.serializedSize();
+        if (size > Integer.MAX_VALUE) {
+            System.out.println("mesh too large for cache " + cache);
+            return;
+        }
+
+        final ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).put(hash);
+        out.putInt(name.length).put(name);
+        out.putInt(mesh.v.size());
+        for (Point3 p : mesh.v) out.putDouble(p.x).putDouble(p.y).putDouble(p.z);
+        out.putInt(mesh.vt.size());
+        for (Point2 p : mesh.vt) out.putDouble(p.x).putDouble(p.y);
+        out.putInt(mesh.vn.size());
+        for (Normal3 n : mesh.vn) out.putDouble(n.x).putDouble(n.y).putDouble(n.z);
+        out.putInt(mesh.faceIndices.size());
+        for (int[] face : mesh.faceIndices) {
+            for (int index : face) out.putInt(index);
+        }
+
+        final IdentityHashMap<Geometry, Integer> indexOf = new IdentityHashMap<Geometry, Integer>(2 * mesh.f.size());
+        for (int i = 0; i < mesh.f.size(); i++) indexOf.put(mesh.f.get(i), i);
+        bvh.write(out, indexOf::get);
+        out.flip();
+
+        Path temporary = null;
+        try {
+            // unique per writer, render worker processes may load the same model at once
+            temporary = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) channel.write(out);
+            }
+            Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temporary = null;
+        } catch (IOException e) {
+            System.out.println("could not write cache " + cache + ": " + e);
+        } finally {
+            // left over if writing or moving failed
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    System.out.println("could not delete " + temporary + ": " + e);
+                }
+            }
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import Material.Material;
 import MathLib.*;
 import Raytracer.Hit;
+import Raytracer.HitRecord;
 import Raytracer.Ray;
+import Raytracer.RayPacket;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Objects;
 
+/**
+ * instance of one or more geometries placed with a transform
+ * items are shared, so many nodes can reference the same Model
+ * while only storing their own transform and bounds
+ */
 public class Node extends Geometry{
 
     /**
     Transforms matrixes for ray
     */
-    public final Transform tf;
+    private Transform tf;
 
     /**
     List containing all transformable geometries
     */
     public final ArrayList<Geometry> items;
 
+    /**
+     * true if transform changed since the last refit of the world
+     */
+    private boolean moved = false;
+
     /**
     * Constructor of Node
     * @param mat material of Node
@@ -33,35 +46,212 @@ public class Node extends Geometry{
         this.items = items;
     }
 
+    /**
+     * transforms bounds of all items into world space
+     * @return bounding box
+     */
+    @Override
+    protected BoundingBox calculateBounds(){
+        BoundingBox itemBounds = BoundingBox.EMPTY;
+        for(Geometry geo : items){
+            itemBounds = itemBounds.union(geo.bounds());
+        }
+        return tf.mul(itemBounds);
+    }
+
+    /**
+     * @return Transform matrixes of node
+     */
+    public Transform getTransform(){
+        return tf;
+    }
+
+    /**
+     * moves node by replacing its transform
+     * bounds are recalculated and node is marked as moved
+     * so World.refit() can update the bounds of the nodes it is nested in and the bounding volume hierarchy
+     * @param tf new Transform matrixes
+     */
+    public void setTransform(final Transform tf){
+        if(tf == null) throw new IllegalArgumentException();
+        this.tf = tf;
+        invalidateBounds();
+        this.moved = true;
+    }
+
+    /**
+     * @return true if transform changed since the last refit
+     */
+    public boolean isMoved(){
+        return moved;
+    }
+
+    /**
+     * looks for moved nodes nested in the items of this node
+     * bounds of every node above a moved one enclose its old bounds, so they are recalculated on the way up
+     * nested nodes shared by several parents are found below each of them, flags are only cleared by clearMoved
+     * @return true if this node or a node nested in it moved since the last refit
+     */
+    public boolean movedWithin(){
+        boolean changed = moved;
+        for(Geometry geo : items){
+            if(geo instanceof Node && ((Node) geo).movedWithin()) changed = true;
+        }
+        if(changed) invalidateBounds();
+        return changed;
+    }
+
+    /**
+     * resets moved flags of this node and every node nested in it after the world was refit
+     */
+    public void clearMoved(){
+        moved = false;
+        for(Geometry geo : items){
+            if(geo instanceof Node) ((Node) geo).clearMoved();
+        }
+    }
+
     /**
     * Transforms ray, hits geometries with new ray
     * gets hit with minimal t
-    * transforms Normal
+    * transforms t and normal back into world space
     * @param r untransformed ray
     * @return new Hit with transformed t and normal
     */
     public Hit hit( final Ray r) {
-        Ray newRay = tf.mul(r);
-        ArrayList<Hit> hits = new ArrayList<Hit>();
+        return closestHit(r);
+    }
+
+    /**
+     * transforms ray and intersects all items with the transformed interval
+     * rays missing the world space bounds are rejected first
+     * transformed ray is normalized again, so the interval is scaled like tMax in occludes
+     * the transformed hit is created here, the transformed ray is not known to hitFor anymore
+     * @param r untransformed ray
+     * @param tMin t in world space a hit has to lie behind
+     * @param tMax t in world space a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if an item is hit between tMin and tMax
+     */
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        if(misses(r, tMax)) return false;
+        final Transform tf = this.tf;
+        final Ray newRay = tf.mul(r);
+        final double scale = tMin > 0 || tMax != Double.MAX_VALUE ? tf.i.mul(r.d).magnitude : 1;
+        final double newMin = tMin * scale;
+        double newMax = tMax == Double.MAX_VALUE ? tMax : tMax * scale;
+        boolean found = false;
         for(Geometry geo : items){
-            Hit tmp = geo.hit(newRay);
-            if(tmp != null) hits.add(tmp);
+            if(geo.intersect(newRay, newMin, newMax, rec)){
+                found = true;
+                newMax = rec.t;
+            }
         }
+        if(!found) return false;
 
-        Hit minHit = hits.stream().min(new Comparator<Hit>() {
-            @Override
-            public int compare(Hit hit, Hit t1) {
-                return Double.compare(hit.t, t1.t);
+        final Hit minHit = rec.toHit(newRay);
+        // direction of transformed ray is normalized again, so t has to be measured in world space
+        double t = r.tOf(tf.m.mul(newRay.at(minHit.t)));
+        Hit transformedHit = new Hit(t, r, minHit.geo, tf.mul(minHit.n));
+        transformedHit.u = minHit.u;
+        transformedHit.v = minHit.v;
+
+        rec.t = t;
+        rec.geo = this;
+        rec.hit = transformedHit;
+        return true;
+    }
+
+    /**
+     * transforms the active rays of a packet and traces them through all items as one packet
+     * transforms are affine, so coherent rays stay coherent in object space
+     * closest hits found so far limit the transformed rays, scaled like tMax in occludes
+     * rays missing the world space bounds are not transformed at all
+     * @param packet rays to trace, only rays flagged in packet.active are tested
+     */
+    @Override
+    public void hit(final RayPacket packet) {
+        final Transform tf = this.tf;
+        final BoundingBox bounds = bounds();
+        // active flags belong to the caller, rays missing the bounds are left out locally
+        final boolean[] enters = new boolean[packet.size()];
+        int count = 0;
+        for (int i = 0; i < packet.size(); i++) {
+            enters[i] = packet.active[i] && bounds.intersect(packet.ox[i], packet.oy[i], packet.oz[i],
+                    packet.invX[i], packet.invY[i], packet.invZ[i], packet.tMax(i)) != Double.POSITIVE_INFINITY;
+            if (enters[i]) count++;
+        }
+        if (count < RayPacket.MIN_SIZE) {
+            final HitRecord rec = packet.record;
+            for (int i = 0; i < packet.size(); i++) {
+                if (enters[i] && intersect(packet.rays[i], 0, packet.tMax(i), rec)) packet.offer(i, rec.toHit(packet.rays[i]));
             }
-        }).orElse(null);
+            return;
+        }
+        final int[] index = new int[count];
+        final Ray[] rays = new Ray[count];
+        count = 0;
+        for (int i = 0; i < packet.size(); i++) {
+            if (enters[i]) {
+                index[count] = i;
+                rays[count++] = tf.mul(packet.rays[i]);
+            }
+        }
 
-        if(minHit == null) return null;
+        final RayPacket transformed = new RayPacket(rays);
+        for (int j = 0; j < count; j++) {
+            final double tMax = packet.tMax(index[j]);
+            if (tMax != Double.MAX_VALUE) transformed.limit(j, tMax * tf.i.mul(packet.rays[index[j]].d).magnitude);
+        }
+        for (Geometry geo : items) {
+            Arrays.fill(transformed.active, true);
+            geo.hit(transformed);
+        }
 
-        Normal3 n = tf.mul(minHit.n);
+        for (int j = 0; j < count; j++) {
+            final Hit minHit = transformed.hits[j];
+            if (minHit == null) continue;
+            final Ray r = packet.rays[index[j]];
+            double t = r.tOf(tf.m.mul(rays[j].at(minHit.t)));
+            Hit transformedHit = new Hit(t, r, minHit.geo, tf.mul(minHit.n));
+            transformedHit.u = minHit.u;
+            transformedHit.v = minHit.v;
+            packet.offer(index[j], transformedHit);
+        }
+    }
 
-        Hit transformedHit = new Hit(minHit.t, r, minHit.geo, n);
+    /**
+     * transforms ray and asks every item for any hit
+     * rays missing the world space bounds are rejected first
+     * transformed ray is normalized again, so tMax is scaled by the length of the transformed direction
+     * @param r untransformed ray
+     * @param tMax farthest t in world space that still occludes
+     * @return true if an item occludes the ray
+     */
+    @Override
+    public boolean occludes(final Ray r, final double tMax) {
+        if(misses(r, tMax)) return false;
+        final Transform tf = this.tf;
+        Ray newRay = tf.mul(r);
+        double newMax = tMax * tf.i.mul(r.d).magnitude;
+        for(Geometry geo : items){
+            if(geo.occludes(newRay, newMax)) return true;
+        }
+        return false;
+    }
 
-        return transformedHit;
+    /**
+     * slab test of the untransformed ray against the world space bounds
+     * rays missing them are rejected before they are transformed
+     * @param r untransformed ray
+     * @param tMax farthest t in world space that is still of interest
+     * @return true if the ray cannot hit any item
+     */
+    private boolean misses(final Ray r, final double tMax) {
+        // infinite limits would turn slabs parallel to the ray into NaN
+        return bounds().intersect(r.o.x, r.o.y, r.o.z, 1.0 / r.d.x, 1.0 / r.d.y, 1.0 / r.d.z,
+                Math.min(tMax, Double.MAX_VALUE)) == Double.POSITIVE_INFINITY;
     }
 
     @Override
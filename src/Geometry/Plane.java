@@ -49,24 +49,47 @@ public class Plane extends Geometry {
 
     /**
      * calculation of Raytracer hit points
-     * t = ((a - o) * n) / (d * n)
      * returns hit point t
      * returns null if no hit point is found
      *  @param r incoming ray
      * @return hit
      */
     public Hit hit(final Ray r){
-        if(r.d.dot(n) != 0.0){
-            final double t = (a.sub(r.o).dot(n)) / (r.d.dot(n));
-            if(t < 0.000001) return null;
-            Point3 texturePoint = r.at(t);
-            Hit h = new Hit(t, r, this, n);
-            h.u = texturePoint.x;
-            h.v = -texturePoint.z;
-            //return new Hit(t, r, this, n);
-            return h;
-        }
-        return null;
+        return closestHit(r);
+    }
+
+    /**
+     * t = ((a - o) * n) / (d * n) on plain doubles
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if plane is hit between tMin and tMax
+     */
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec){
+        final double dn = r.d.x * n.x + r.d.y * n.y + r.d.z * n.z;
+        if(dn == 0.0) return false;
+        final double t = ((a.x - r.o.x) * n.x + (a.y - r.o.y) * n.y + (a.z - r.o.z) * n.z) / dn;
+        if(t < 0.000001 || t <= tMin || t >= tMax) return false;
+        rec.t = t;
+        rec.geo = this;
+        return true;
+    }
+
+    /**
+     * texture coordinates are taken from x and z of hit point
+     * @param r ray that was passed to intersect
+     * @param rec record written by intersect
+     * @return hit
+     */
+    @Override
+    public Hit hitFor(final Ray r, final HitRecord rec){
+        Point3 texturePoint = r.at(rec.t);
+        Hit h = new Hit(rec.t, r, this, n);
+        h.u = texturePoint.x;
+        h.v = -texturePoint.z;
+        return h;
     }
 
 
@@ -1,5 +1,6 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import Material.*;
 import MathLib.*;
 import Raytracer.*;
@@ -52,41 +53,78 @@ public class Sphere extends Geometry {
      * throws IllegalArgumentException if r is null
      * returns hit point with lowest positive t
      * returns null if no hit point is found
-     * calculates normal vector through substracting
-     * hit point and center of sphere
      *  @param r incoming ray
      * @return hit
      */
     public final Hit hit(final Ray r){
-        if(r == null) throw new IllegalArgumentException();
-
-        final double a =  r.d.dot(r.d);
-        final double b = r.d.dot((r.o.sub(this.c)).mul(2.0));
-        final double c = ( r.o.sub(this.c) ).dot( (r.o.sub(this.c)) ) - Math.pow(this.r, 2);
-
-        final double d = Math.pow(b, 2) - (4.0 * a * c);
-
-
-        double t;
+        return closestHit(r);
+    }
 
-        if(d < 0.0){
-            return null;
-        } else if(d == 0.0){
-            t = -b / (2.0 * a);
-        } else {
-            final double tOne = (-b - Math.sqrt(d)) / (2.0 * a);
-            final double tTwo = (-b + Math.sqrt(d)) / (2.0 * a);
-            if(tOne > 0.0001) t = tOne;
-            else if(tTwo > 0.0001) t = tTwo;
-            else return null;
-        }
+    /**
+     * solves a*t^2 + b*t + c = 0 on plain doubles
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if sphere is hit between tMin and tMax
+     */
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec){
+        final double t = root(r, tMin);
+        if(!(t < tMax)) return false;
+        rec.t = t;
+        rec.geo = this;
+        return true;
+    }
 
+    /**
+     * same calculation as intersect without writing a record
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes
+     * @return true if sphere is hit before tMax
+     */
+    @Override
+    public boolean occludes(final Ray r, final double tMax){
+        return root(r, 0) < tMax;
+    }
 
+    /**
+     * smaller solution of a*t^2 + b*t + c = 0 if it lies behind tMin and in front of the origin, otherwise the larger one
+     * throws IllegalArgumentException if r is null
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @return t of the first hit behind tMin, NaN if there is none
+     */
+    private double root(final Ray r, final double tMin){
+        if(r == null) throw new IllegalArgumentException();
+        final double ocX = r.o.x - this.c.x;
+        final double ocY = r.o.y - this.c.y;
+        final double ocZ = r.o.z - this.c.z;
+        final double a = r.d.x * r.d.x + r.d.y * r.d.y + r.d.z * r.d.z;
+        final double b = 2.0 * (r.d.x * ocX + r.d.y * ocY + r.d.z * ocZ);
+        final double c = ocX * ocX + ocY * ocY + ocZ * ocZ - this.r * this.r;
+        final double d = b * b - (4.0 * a * c);
+        if(d < 0.0) return Double.NaN;
+
+        final double lowest = Math.max(tMin, 0.0001);
+        final double root = Math.sqrt(d);
+        final double near = (-b - root) / (2.0 * a);
+        if(near > lowest) return near;
+        final double far = (-b + root) / (2.0 * a);
+        if(far > lowest) return far;
+        return Double.NaN;
+    }
 
-        Normal3 n = r.at(t).sub(this.c).normalized().asNormal();
-        Hit h = new Hit(t, r, this, n);
-        // Point3 texturePoint = r.at(t);
-        Vector3 tp = r.at(t).sub(this.c).normalized();
+    /**
+     * calculates normal vector through substracting hit point and center of sphere
+     * @param r ray that was passed to intersect
+     * @param rec record written by intersect
+     * @return hit with normal and texture coordinates
+     */
+    @Override
+    public Hit hitFor(final Ray r, final HitRecord rec){
+        final Vector3 tp = r.at(rec.t).sub(this.c).normalized();
+        final Hit h = new Hit(rec.t, r, this, tp.asNormal());
 
         // https://viclw17.github.io/2019/04/12/raytracing-uv-mapping-and-texturing/
         // https://en.wikipedia.org/wiki/UV_mapping
@@ -94,13 +132,19 @@ public class Sphere extends Geometry {
         double theta = Math.asin(-tp.y);
         h.u = 0.5 + (phi / (2 * Math.PI));
         h.v = 0.5 - (theta  / Math.PI);
-
-        // h.u = Math.acos((-texturePoint.z) / this.r) / Math.PI;
-        // h.v = Math.acos(texturePoint.x / (this.r * Math.sin(Math.PI * h.u))) / (2 * Math.PI);
-
         return h;
     }
 
+    /**
+     * box around center with radius in every direction
+     * @return bounding box
+     */
+    @Override
+    protected BoundingBox calculateBounds(){
+        final double radius = Math.abs(this.r);
+        return new BoundingBox(c.x - radius, c.y - radius, c.z - radius, c.x + radius, c.y + radius, c.z + radius);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,5 +1,6 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import MathLib.*;
 import Raytracer.Ray;
 
@@ -163,6 +164,26 @@ public class Transform {
         return this.i.transpose().mul(n.asVector()).normalized().asNormal();
     }
 
+    /**
+     * transforms a bounding box into world space
+     * all eight corners are transformed and enclosed in a new box
+     * @param b box in object space
+     * @return box in world space
+     */
+    public BoundingBox mul(final BoundingBox b) {
+        if (b == null) throw new IllegalArgumentException();
+        if (b.isEmpty() || b.isUnbounded()) return b;
+        BoundingBox result = BoundingBox.EMPTY;
+        for (int corner = 0; corner < 8; corner++) {
+            Point3 p = m.mul(new Point3(
+                    (corner & 1) == 0 ? b.minX : b.maxX,
+                    (corner & 2) == 0 ? b.minY : b.maxY,
+                    (corner & 4) == 0 ? b.minZ : b.maxZ));
+            result = result.union(p.x, p.y, p.z);
+        }
+        return result;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,5 +1,6 @@
 package Geometry;
 
+import Acceleration.BoundingBox;
 import MathLib.*;
 import Raytracer.*;
 import Material.*;
@@ -165,58 +166,97 @@ public class Triangle extends Geometry {
      * @return
      */
     public Hit hit(Ray r) {
+        return closestHit(r);
+    }
 
+    /**
+     * solves beta( a  - b ) + gamma( a - c ) + t*d = a - o with cramer's rule on plain doubles
+     * determinants are expanded in the same order as in Mat3x3
+     * beta and gamma are kept in rec.u and rec.v for the interpolated normal
+     * @param r incoming ray
+     * @param tMin t a hit has to lie behind
+     * @param tMax t a hit has to lie before
+     * @param rec record of closest hit so far
+     * @return true if triangle is hit between tMin and tMax
+     */
+    @Override
+    public boolean intersect(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        return solve(r, tMin, tMax, rec);
+    }
 
-        Mat3x3 bigA = new Mat3x3(
-                a.x - b.x, a.x - c.x, r.d.x,
-                a.y - b.y, a.y - c.y, r.d.y,
-                a.z - b.z, a.z - c.z, r.d.z);
-
-
-        Vector3 beam = a.sub(r.o);
-
-        double beta = bigA.changeCol1(beam).determinant / bigA.determinant;
-        if (beta >= 0 && beta <= 1) {
-
-            double gamma = bigA.changeCol2(beam).determinant / bigA.determinant;
-            if (gamma >= 0 && gamma <= 1) {
-                if (gamma + beta <= 1) {
-
-
-
-                    double alpha = 1.0 - beta - gamma;
-                    final Normal3 n = aNormal.mul(alpha).add(bNormal.mul(beta)).add(cNormal.mul(gamma));
-
-
-                    double t = bigA.changeCol3(beam).determinant / bigA.determinant;
-
-                    Hit hit =  new Hit(t, r, this, n);
-                    hit.u = this.u;
-                    hit.v = this.v;
-                    return hit;
-                }
-            }
-        }
-
-        /*
-        double beta = bigA.changeCol1(beam).determinant / bigA.determinant;
-        double gamma = bigA.changeCol2(beam).determinant / bigA.determinant;
-        double alpha = 1.0 - beta - gamma;
-        final Normal3 n = aNormal.mul(alpha).add(bNormal.mul(beta)).add(cNormal.mul(gamma));
-        double t = bigA.changeCol3(beam).determinant / bigA.determinant;
-        if(beta < 0 || gamma < 0|| beta + gamma > 1 || t < 0.00001){
-            return null;
-        }else {
-            return new Hit(t, r, this, n);
-        }
-
-         */
-
+    /**
+     * same calculation as intersect without writing a record
+     * @param r incoming ray
+     * @param tMax farthest t that still occludes
+     * @return true if triangle is hit before tMax
+     */
+    @Override
+    public boolean occludes(final Ray r, final double tMax) {
+        return solve(r, 0, tMax, null);
+    }
 
+    /**
+     * cramer's rule of intersect
+     * @param rec record of closest hit so far, null to only test for a hit
+     * @return true if triangle is hit between tMin and tMax
+     */
+    private boolean solve(final Ray r, final double tMin, final double tMax, final HitRecord rec) {
+        final double m11 = a.x - b.x, m12 = a.x - c.x, m13 = r.d.x;
+        final double m21 = a.y - b.y, m22 = a.y - c.y, m23 = r.d.y;
+        final double m31 = a.z - b.z, m32 = a.z - c.z, m33 = r.d.z;
+        final double beamX = a.x - r.o.x, beamY = a.y - r.o.y, beamZ = a.z - r.o.z;
+        final double det = determinant(m11, m12, m13, m21, m22, m23, m31, m32, m33);
+
+        final double beta = determinant(beamX, m12, m13, beamY, m22, m23, beamZ, m32, m33) / det;
+        if (!(beta >= 0 && beta <= 1)) return false;
+        final double gamma = determinant(m11, beamX, m13, m21, beamY, m23, m31, beamZ, m33) / det;
+        if (!(gamma >= 0 && gamma <= 1) || gamma + beta > 1) return false;
+        final double t = determinant(m11, m12, beamX, m21, m22, beamY, m31, m32, beamZ) / det;
+        if (!(t >= 0.00001) || t <= tMin || t >= tMax) return false;
+        if (rec == null) return true;
+
+        rec.t = t;
+        rec.geo = this;
+        rec.u = beta;
+        rec.v = gamma;
+        return true;
+    }
 
-        return null;
+    /**
+     * determinant of a 3x3 matrix given row by row
+     * @return determinant
+     */
+    private static double determinant(final double m11, final double m12, final double m13,
+                                      final double m21, final double m22, final double m23,
+                                      final double m31, final double m32, final double m33) {
+        return (m11 * m22 * m33) + (m12 * m23 * m31) + (m13 * m21 * m32) - (m13 * m22 * m31) - (m11 * m23 * m32) - (m12 * m21 * m33);
+    }
 
+    /**
+     * interpolates the normal with the barycentric coordinates kept by intersect
+     * @param r ray that was passed to intersect
+     * @param rec record written by intersect
+     * @return hit
+     */
+    @Override
+    public Hit hitFor(final Ray r, final HitRecord rec) {
+        final double alpha = 1.0 - rec.u - rec.v;
+        final Normal3 n = aNormal.mul(alpha).add(bNormal.mul(rec.u)).add(cNormal.mul(rec.v));
+        final Hit hit = new Hit(rec.t, r, this, n);
+        hit.u = this.u;
+        hit.v = this.v;
+        return hit;
+    }
 
+    /**
+     * box spanned by the three corners
+     * @return bounding box
+     */
+    @Override
+    protected BoundingBox calculateBounds() {
+        return new BoundingBox(
+                Math.min(a.x, Math.min(b.x, c.x)), Math.min(a.y, Math.min(b.y, c.y)), Math.min(a.z, Math.min(b.z, c.z)),
+                Math.max(a.x, Math.max(b.x, c.x)), Math.max(a.y, Math.max(b.y, c.y)), Math.max(a.z, Math.max(b.z, c.z)));
     }
 
     @Override
@@ -0,0 +1,123 @@
+package Image;
+
+import Raytracer.Tile;
+
+/**
+ * image of packed argb ints shared by the render threads and the display
+ * render threads write pixels of disjoint tiles and mark them dirty,
+ * the display takes the dirty region from time to time and copies it in one bulk write
+ * so the work of the display depends on its frame rate, not on the amount of rows rendered
+ */
+public class ArgbFrameBuffer {
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * argb per pixel, row by row from the top, fully transparent until written
+     */
+    public final int[] pixels;
+
+    /**
+     * bounds of the pixels written since the last takeDirty, maxX and maxY exclusive
+     * empty while minX >= maxX
+     */
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * constructor of ArgbFrameBuffer, every pixel is transparent
+     * throws IllegalArgumentException if width or height is negative
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     */
+    public ArgbFrameBuffer(final int width, final int height) {
+        if (width < 0 || height < 0) throw new IllegalArgumentException();
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        clearDirty();
+    }
+
+    /**
+     * packs a color into an opaque argb int with 8 bits per channel
+     * @param r red between 0 and 1
+     * @param g green between 0 and 1
+     * @param b blue between 0 and 1
+     * @return argb
+     */
+    public static int argb(final double r, final double g, final double b) {
+        return 0xff000000 | toByte(r) << 16 | toByte(g) << 8 | toByte(b);
+    }
+
+    /**
+     * @param value channel between 0 and 1
+     * @return channel between 0 and 255
+     */
+    private static int toByte(final double value) {
+        return (int) Math.round(Math.max(0, Math.min(1, value)) * 255);
+    }
+
+    /**
+     * packs the pixels of a tile into the image and marks the tile dirty
+     * throws IllegalArgumentException if tile or rgb is null, the tile lies outside of the image or rgb does not fit it
+     * @param tile pixels to set
+     * @param rgb red, green and blue per pixel of tile, row by row
+     */
+    public void set(final Tile tile, final float[] rgb) {
+        if (tile == null || rgb == null || rgb.length != tile.pixels() * 3 || tile.endX() > width || tile.endY() > height) throw new IllegalArgumentException();
+        int k = 0;
+        for (int y = tile.y; y < tile.endY(); y++) {
+            for (int i = y * width + tile.x; i < y * width + tile.endX(); i++, k += 3) {
+                pixels[i] = argb(rgb[k], rgb[k + 1], rgb[k + 2]);
+            }
+        }
+        markDirty(tile.x, tile.y, tile.endX(), tile.endY());
+    }
+
+    /**
+     * adds a region to the pixels to be shown, has to be called after its pixels were written
+     * @param x0 first column
+     * @param y0 first row
+     * @param x1 column behind the last one
+     * @param y1 row behind the last one
+     */
+    public synchronized void markDirty(final int x0, final int y0, final int x1, final int y1) {
+        if (x0 >= x1 || y0 >= y1) return;
+        minX = Math.min(minX, x0);
+        minY = Math.min(minY, y0);
+        maxX = Math.max(maxX, x1);
+        maxY = Math.max(maxY, y1);
+    }
+
+    /**
+     * returns the bounds of the pixels written since the last call and empties them
+     * pixels written while the region is copied are marked again and copied next time
+     * @return x, y, width and height of region or null if nothing was written
+     */
+    public synchronized int[] takeDirty() {
+        if (minX >= maxX || minY >= maxY) return null;
+        final int[] region = {minX, minY, maxX - minX, maxY - minY};
+        clearDirty();
+        return region;
+    }
+
+    /**
+     * empties the dirty region
+     */
+    private void clearDirty() {
+        minX = width;
+        minY = height;
+        maxX = 0;
+        maxY = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ArgbFrameBuffer{" +
+                "width=" + width +
+                ", height=" + height +
+                '}';
+    }
+}
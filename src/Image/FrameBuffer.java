@@ -0,0 +1,155 @@
+package Image;
+
+import Raytracer.Color;
+import Raytracer.Tile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * in memory image of rgb floats, written without javafx
+ * pixels of disjoint tiles may be set from several threads at once
+ * saved as png with 8 bits per channel or as pfm with the full float values
+ */
+public class FrameBuffer {
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * red, green and blue per pixel, row by row from the top
+     */
+    private final float[] rgb;
+
+    /**
+     * constructor of FrameBuffer, every pixel is black
+     * throws IllegalArgumentException if width or height is smaller than 1
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     */
+    public FrameBuffer(final int width, final int height) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException();
+        this.width = width;
+        this.height = height;
+        this.rgb = new float[width * height * 3];
+    }
+
+    /**
+     * sets one pixel
+     * throws IllegalArgumentException if c is null or the pixel lies outside of the image
+     * @param x column of image
+     * @param y row of image from the top
+     * @param c color of pixel
+     */
+    public void set(final int x, final int y, final Color c) {
+        if (c == null) throw new IllegalArgumentException();
+        final int i = index(x, y);
+        rgb[i] = (float) c.r;
+        rgb[i + 1] = (float) c.g;
+        rgb[i + 2] = (float) c.b;
+    }
+
+    /**
+     * copies the pixels of a tile
+     * throws IllegalArgumentException if tile or rgb is null, the tile lies outside of the image or rgb does not fit it
+     * @param tile pixels to set
+     * @param rgb red, green and blue per pixel of tile, row by row
+     */
+    public void set(final Tile tile, final float[] rgb) {
+        if (tile == null || rgb == null || rgb.length != tile.pixels() * 3 || tile.endX() > width || tile.endY() > height) throw new IllegalArgumentException();
+        for (int row = 0; row < tile.height; row++) {
+            System.arraycopy(rgb, row * tile.width * 3, this.rgb, index(tile.x, tile.y + row), tile.width * 3);
+        }
+    }
+
+    /**
+     * throws IllegalArgumentException if the pixel lies outside of the image
+     * @param x column of image
+     * @param y row of image from the top
+     * @return color of pixel
+     */
+    public Color get(final int x, final int y) {
+        final int i = index(x, y);
+        return new Color(rgb[i], rgb[i + 1], rgb[i + 2]);
+    }
+
+    /**
+     * @return index of red value of a pixel
+     */
+    private int index(final int x, final int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) throw new IllegalArgumentException();
+        return (y * width + x) * 3;
+    }
+
+    /**
+     * writes the image as png or pfm, chosen by the file extension
+     * throws IllegalArgumentException if file is null or neither ends with .png nor .pfm
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final File file) throws IOException {
+        if (file == null) throw new IllegalArgumentException();
+        final String name = file.getName().toLowerCase();
+        if (name.endsWith(".png")) writePng(file);
+        else if (name.endsWith(".pfm")) writePfm(file);
+        else throw new IllegalArgumentException("unknown image format: " + file.getName());
+    }
+
+    /**
+     * writes the image as png with 8 bits per channel
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writePng(final File file) throws IOException {
+        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int i = index(x, y);
+                img.setRGB(x, y, toByte(rgb[i]) << 16 | toByte(rgb[i + 1]) << 8 | toByte(rgb[i + 2]));
+            }
+        }
+        if (!ImageIO.write(img, "png", file)) throw new IOException("no png writer available");
+    }
+
+    /**
+     * writes the image as portable float map, little endian, rows from the bottom as pfm requires
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writePfm(final File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            // a negative scale marks little endian floats
+            out.write(("PF\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII));
+            for (int y = height - 1; y >= 0; y--) {
+                final int start = index(0, y);
+                for (int i = start; i < start + width * 3; i++) {
+                    out.writeInt(Integer.reverseBytes(Float.floatToIntBits(rgb[i])));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param value channel between 0 and 1
+     * @return channel between 0 and 255
+     */
+    private static int toByte(final float value) {
+        return Math.round(Math.max(0, Math.min(1, value)) * 255);
+    }
+
+    @Override
+    public String toString() {
+        return "FrameBuffer{" +
+                "width=" + width +
+                ", height=" + height +
+                '}';
+    }
+}
@@ -3,7 +3,6 @@ package Lighting;
 import MathLib.Point3;
 import MathLib.Vector3;
 import Raytracer.Color;
-import Raytracer.Hit;
 import Raytracer.Ray;
 import Raytracer.World;
 
@@ -39,11 +38,7 @@ public class DirectionalLight extends Light {
      */
     public boolean illuminates(Point3 pos, World world){
         Ray r = new Ray(pos, directionFrom(pos));
-        Hit hit = world.hit(r);
-        if(hit == null){
-            return true;
-        }
-        return false;
+        return !world.occluded(r, Double.POSITIVE_INFINITY);
     }
 
     /**
@@ -3,7 +3,6 @@ package Lighting;
 import MathLib.Point3;
 import MathLib.Vector3;
 import Raytracer.Color;
-import Raytracer.Hit;
 import Raytracer.Ray;
 import Raytracer.World;
 
@@ -40,10 +39,7 @@ public class PointLight extends Light {
     public boolean illuminates(Point3 pos, World world){
         if(pos == null) throw new IllegalArgumentException();
         Ray ray = new Ray(pos, directionFrom(pos));
-        Hit hit = world.hit(ray);
-        if (hit == null) return true;
-        if (hit.t + 0.00001 > ray.tOf(this.pos) ) return true;
-        return false;
+        return !world.occluded(ray, ray.tOf(this.pos) - 0.00001);
     }
 
     /**
@@ -3,7 +3,6 @@ package Lighting;
 import MathLib.Point3;
 import MathLib.Vector3;
 import Raytracer.Color;
-import Raytracer.Hit;
 import Raytracer.Ray;
 import Raytracer.World;
 
@@ -58,9 +57,7 @@ public class SpotLight extends Light {
         double angle = Math.acos((direction.dot(a))/(direction.magnitude * a.magnitude));
         if(angle < halfAngle){
             Ray ray = new Ray(pos, directionFrom(pos));
-            Hit hit = world.hit(ray);
-            if(hit == null) return true;
-            if (hit.t > ray.tOf(this.pos) ) return true;
+            return !world.occluded(ray, ray.tOf(this.pos));
         }
         return false;
     }
@@ -43,7 +43,7 @@ public class LambertMaterial extends Material {
         Point3 point3 = hit.ray.at(hit.t);
 
         for(Light light: world.lightSources){
-            if( !light.illuminates(point3, world) && light.castsShadows){
+            if( light.castsShadows && !light.illuminates(point3, world)){
                 continue;
             }
 
@@ -55,7 +55,7 @@ public class PhongMaterial extends Material{
         Point3 point3 = hit.ray.at(hit.t);
         Color diffuse = texture.colorFor(hit.u, hit.v);
         for(Light l : world.lightSources){
-            if(!l.illuminates(point3, world) && l.castsShadows){
+            if(l.castsShadows && !l.illuminates(point3, world)){
                 continue;
             }
 
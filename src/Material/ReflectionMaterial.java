@@ -1,6 +1,5 @@
 package Material;
 
-import Geometry.Geometry;
 import Lighting.Light;
 import MathLib.Point3;
 import MathLib.Vector3;
@@ -10,8 +9,6 @@ import Raytracer.Ray;
 import Raytracer.World;
 import Texture.Texture;
 
-import java.util.ArrayList;
-
 
 public class ReflectionMaterial extends Material {
 
@@ -66,7 +63,7 @@ public class ReflectionMaterial extends Material {
         Color diffuse = texture.colorFor(hit.u, hit.v);
 
         for(Light l : world.lightSources){
-            if(!l.illuminates(point3, world) && l.castsShadows){
+            if(l.castsShadows && !l.illuminates(point3, world)){
                 continue;
             }
             p1 = diffuse.mul(l.color); // diffuse reflection color * ambient light
@@ -95,28 +92,7 @@ public class ReflectionMaterial extends Material {
     private Color reflection(final Point3 point, final Vector3 reflectedVector, final World world, int counter){
         if(counter < depth){
             Ray r = new Ray(point, reflectedVector);
-            ArrayList<Hit> arrayList = new ArrayList<Hit>();
-            for(Geometry geo : world.itemList){
-                arrayList.add(geo.hit(r));
-            }
-            /*
-            Hit minHit = arrayList.stream().min(new Comparator<Hit>() {
-                @Override
-                public int compare(Hit hit, Hit t1) {
-                    return Double.compare(hit.t, t1.t);
-                }
-            }).orElse(null);
-
-             */
-
-            double max = Double.MAX_VALUE;
-            Hit minHit = null;
-            for(Hit h : arrayList){
-                if(h != null && h.t < max){
-                    minHit = h;
-                    max = h.t;
-                }
-            }
+            Hit minHit = world.hit(r);
 
             if (minHit == null) return world.backgroundColor;
             Color oldColor = minHit.geo.mat.colorFor(minHit, world, counter + 1);
@@ -0,0 +1,199 @@
+package Raytracer;
+
+import Camera.Camera;
+import Image.FrameBuffer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * renders tiles with as many samples per pixel as their noise needs
+ * every pixel gets minSamples samples of the sampling pattern first, then rounds of minSamples more samples go to
+ * pixels whose standard error of the mean luminance exceeds threshold and to their neighbours, until the pattern is used up
+ * flat background and plain ground stop after minSamples, edges and glass get up to every sample of the pattern
+ * a pixel always gets the first samples of the pattern, with every sample it is the pixel of the full render
+ * tiles may be rendered concurrently
+ */
+public class AdaptiveSampler {
+
+    /**
+     * samples every pixel gets before its noise is estimated
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 4;
+
+    /**
+     * standard error of the mean luminance a pixel may keep, colors shown range from 0 to 1
+     */
+    public static final double DEFAULT_THRESHOLD = 0.01;
+
+    /**
+     * scene
+     */
+    public final World world;
+
+    /**
+     * camera creating the rays, its sampling pattern holds the samples a pixel can get at most
+     */
+    public final Camera cam;
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * samples every pixel gets before its noise is estimated and samples added per round
+     */
+    public final int minSamples;
+
+    /**
+     * standard error of the mean luminance a pixel may keep
+     */
+    public final double threshold;
+
+    /**
+     * amount of primary rays traced so far
+     */
+    private final LongAdder rays = new LongAdder();
+
+    /**
+     * amount of pixels that got more than minSamples samples
+     */
+    private final LongAdder refined = new LongAdder();
+
+    /**
+     * constructor of AdaptiveSampler
+     * throws IllegalArgumentException if world or cam is null, width or height is negative,
+     * minSamples is smaller than 2 or threshold is negative
+     * @param world scene
+     * @param cam camera creating the rays
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param minSamples samples every pixel gets before its noise is estimated, at least 2 to estimate a variance
+     * @param threshold standard error of the mean luminance a pixel may keep
+     */
+    public AdaptiveSampler(final World world, final Camera cam, final int width, final int height, final int minSamples, final double threshold) {
+        if (world == null || cam == null || width < 0 || height < 0 || minSamples < 2 || threshold < 0) throw new IllegalArgumentException();
+        this.world = world;
+        this.cam = cam;
+        this.width = width;
+        this.height = height;
+        this.minSamples = minSamples;
+        this.threshold = threshold;
+    }
+
+    /**
+     * traces the pixels of a tile until every one is below threshold or has every sample and writes them into an image
+     * @param tile pixels to render
+     * @param image image of the size of this sampler
+     */
+    public void render(final Tile tile, final FrameBuffer image) {
+        if (tile == null || image == null) throw new IllegalArgumentException();
+        final int max = cam.pattern.points.size();
+        final int pixels = tile.pixels();
+        final int[] order = world.getPixelOrder().order(tile.width, tile.height);
+        final double[] sums = new double[pixels * 3];
+        final double[] luminance = new double[pixels];
+        final double[] squares = new double[pixels];
+        final int[] count = new int[pixels];
+
+        for (int pixel : order) trace(tile, pixel, Math.min(minSamples, max), sums, luminance, squares, count);
+
+        final boolean[] noisy = new boolean[pixels];
+        while (true) {
+            boolean any = false;
+            for (int i = 0; i < pixels; i++) {
+                noisy[i] = count[i] < max && error(luminance[i], squares[i], count[i]) > threshold;
+                any |= noisy[i];
+            }
+            if (!any) break;
+            // neighbours of a noisy pixel are refined as well, their first samples may all have missed a thin edge
+            for (int pixel : order) {
+                if (count[pixel] < max && noisyNeighbourhood(noisy, pixel, tile.width, tile.height)) {
+                    if (count[pixel] == minSamples) refined.increment();
+                    trace(tile, pixel, minSamples, sums, luminance, squares, count);
+                }
+            }
+        }
+
+        final float[] rgb = new float[pixels * 3];
+        for (int i = 0; i < pixels; i++) {
+            rgb[i * 3] = (float) (sums[i * 3] / count[i]);
+            rgb[i * 3 + 1] = (float) (sums[i * 3 + 1] / count[i]);
+            rgb[i * 3 + 2] = (float) (sums[i * 3 + 2] / count[i]);
+        }
+        image.set(tile, rgb);
+    }
+
+    /**
+     * traces the next samples of the sampling pattern of one pixel
+     * @param tile tile of pixel
+     * @param pixel index of pixel within tile, row by row
+     * @param amount amount of samples, fewer if the pattern runs out
+     */
+    private void trace(final Tile tile, final int pixel, final int amount, final double[] sums,
+                       final double[] luminance, final double[] squares, final int[] count) {
+        final int x = tile.x + pixel % tile.width;
+        final int y = tile.y + pixel / tile.width;
+        final int end = Math.min(count[pixel] + amount, cam.pattern.points.size());
+        for (int sample = count[pixel]; sample < end; sample++) {
+            final Color c = world.colorOf(world.hit(cam.rayFor(width, height, x, height - y - 1, cam.pattern.points.get(sample))));
+            final double l = 0.2126 * c.r + 0.7152 * c.g + 0.0722 * c.b;
+            sums[pixel * 3] += c.r;
+            sums[pixel * 3 + 1] += c.g;
+            sums[pixel * 3 + 2] += c.b;
+            luminance[pixel] += l;
+            squares[pixel] += l * l;
+        }
+        rays.add(end - count[pixel]);
+        count[pixel] = end;
+    }
+
+    /**
+     * @param luminance sum of the luminance of the samples
+     * @param squares sum of the squared luminance of the samples
+     * @param count amount of samples
+     * @return standard error of the mean luminance
+     */
+    private static double error(final double luminance, final double squares, final int count) {
+        if (count < 2) return Double.POSITIVE_INFINITY;
+        final double mean = luminance / count;
+        final double variance = Math.max(0, (squares - count * mean * mean) / (count - 1));
+        return Math.sqrt(variance / count);
+    }
+
+    /**
+     * @return true if the pixel or one of its four neighbours within the tile is noisy
+     */
+    private static boolean noisyNeighbourhood(final boolean[] noisy, final int pixel, final int columns, final int rows) {
+        final int x = pixel % columns;
+        final int y = pixel / columns;
+        return noisy[pixel]
+                || (x > 0 && noisy[pixel - 1]) || (x + 1 < columns && noisy[pixel + 1])
+                || (y > 0 && noisy[pixel - columns]) || (y + 1 < rows && noisy[pixel + columns]);
+    }
+
+    /**
+     * @return amount of primary rays traced so far
+     */
+    public long rays() {
+        return rays.sum();
+    }
+
+    /**
+     * @return amount of pixels that got more than minSamples samples
+     */
+    public long refined() {
+        return refined.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSampler{" +
+                "width=" + width +
+                ", height=" + height +
+                ", minSamples=" + minSamples +
+                ", threshold=" + threshold +
+                ", rays=" + rays() +
+                '}';
+    }
+}
@@ -0,0 +1,245 @@
+package Raytracer;
+
+import Camera.Camera;
+import Geometry.Geometry;
+import Geometry.Node;
+import Geometry.Transform;
+import Image.FrameBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntFunction;
+
+/**
+ * renders the frames of an animation of one world, moving the camera and optionally one node per frame
+ * the world, its assets and its accelerator are loaded once, moved nodes are only refitted between frames
+ * finished frames are encoded and written on an own thread while the next frame is rendered,
+ * a bounded queue stops rendering while the writer falls behind so finished frames cannot pile up
+ */
+public class AnimationRenderer {
+
+    /**
+     * finished frames waiting for the writer, rendering blocks while the queue is full
+     */
+    public static final int QUEUE_CAPACITY = 2;
+
+    /**
+     * scene shared by all frames
+     */
+    public final World world;
+
+    /**
+     * amount of frames
+     */
+    public final int frames;
+
+    /**
+     * camera per frame
+     */
+    private final IntFunction<Camera> cameras;
+
+    /**
+     * node moved per frame, null if only the camera moves
+     */
+    private final Node node;
+
+    /**
+     * transformation of node per frame, null if only the camera moves
+     */
+    private final IntFunction<Transform> transforms;
+
+    /**
+     * scheduler rendering the tiles of every frame
+     */
+    private final TileScheduler scheduler;
+
+    /**
+     * constructor for animations moving only the camera
+     * throws IllegalArgumentException if world, cameras or scheduler is null or frames is smaller than 1
+     * @param world scene shared by all frames
+     * @param frames amount of frames
+     * @param cameras camera per frame
+     * @param scheduler scheduler rendering the tiles of every frame
+     */
+    public AnimationRenderer(final World world, final int frames, final IntFunction<Camera> cameras, final TileScheduler scheduler) {
+        this(world, frames, cameras, null, null, scheduler);
+    }
+
+    /**
+     * constructor of AnimationRenderer
+     * throws IllegalArgumentException if world, cameras or scheduler is null, frames is smaller than 1
+     * only one of node and transforms is null or node is neither an item of world nor nested in one
+     * @param world scene shared by all frames
+     * @param frames amount of frames
+     * @param cameras camera per frame
+     * @param node node of world moved per frame, top level or nested in other nodes, null if only the camera moves
+     * @param transforms transformation of node per frame, null if only the camera moves
+     * @param scheduler scheduler rendering the tiles of every frame
+     */
+    public AnimationRenderer(final World world, final int frames, final IntFunction<Camera> cameras, final Node node, final IntFunction<Transform> transforms, final TileScheduler scheduler) {
+        if (world == null || cameras == null || scheduler == null || frames < 1 || (node == null) != (transforms == null)) throw new IllegalArgumentException();
+        if (node != null && !contains(world.itemList, node)) throw new IllegalArgumentException("node is not part of the world");
+        this.world = world;
+        this.frames = frames;
+        this.cameras = cameras;
+        this.node = node;
+        this.transforms = transforms;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param items geometries to search
+     * @param node node to find
+     * @return true if node is one of items or nested in one of them
+     */
+    private static boolean contains(final List<Geometry> items, final Node node) {
+        for (Geometry geometry : items) {
+            if (geometry == node || (geometry instanceof Node && contains(((Node) geometry).items, node))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * camera schedule circling around the y axis once over all frames
+     * throws IllegalArgumentException if cam is null or frames is smaller than 1
+     * @param cam camera of first frame
+     * @param frames amount of frames
+     * @return camera per frame
+     */
+    public static IntFunction<Camera> orbit(final Camera cam, final int frames) {
+        if (cam == null || frames < 1) throw new IllegalArgumentException();
+        return frame -> cam.transformed(new Transform().rotateY(2 * Math.PI * frame / frames));
+    }
+
+    /**
+     * @param directory directory the frames are written to
+     * @param frame index of frame
+     * @return png file of frame
+     */
+    public static File frameFile(final File directory, final int frame) {
+        return new File(directory, String.format("frame_%04d.png", frame));
+    }
+
+    /**
+     * renders every frame and writes it as png into a directory
+     * returns once the last frame is written
+     * throws IllegalArgumentException if directory is null or the size is smaller than 1
+     * @param width width of frames in pixels
+     * @param height height of frames in pixels
+     * @param directory directory the frames are written to, created if missing
+     * @throws IOException if the directory cannot be created or a frame cannot be written, no more frames are rendered then
+     */
+    public void render(final int width, final int height, final File directory) throws IOException {
+        if (directory == null || width < 1 || height < 1) throw new IllegalArgumentException();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("cannot create " + directory);
+
+        final FrameWriter writer = new FrameWriter(directory);
+        final Thread writerThread = new Thread(writer, "frame writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        long start = System.currentTimeMillis();
+        long rays = 0;
+        try {
+            for (int frame = 0; frame < frames && writer.failure == null; frame++) {
+                long frameStart = System.currentTimeMillis();
+                world.setCam(cameras.apply(frame));
+                if (node != null) {
+                    node.setTransform(transforms.apply(frame));
+                    world.refit();
+                }
+
+                FrameBuffer image = new FrameBuffer(width, height);
+                PixelTracer tracer = new PixelTracer(world, world.cam, width, height);
+                scheduler.render(width, height, tile -> tracer.render(tile, image));
+                rays += tracer.rays();
+                long rendered = System.currentTimeMillis();
+
+                // blocks while the writer is QUEUE_CAPACITY frames behind
+                writer.queue.put(new PendingFrame(frame, image));
+                System.out.println("frame " + frame + " rendered in " + (rendered - frameStart) + "ms, waited "
+                        + (System.currentTimeMillis() - rendered) + "ms for the writer");
+            }
+            writer.queue.put(PendingFrame.END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("animation interrupted");
+        } finally {
+            // stops the writer if rendering failed, it has ended already otherwise
+            writerThread.interrupt();
+        }
+        if (writer.failure != null) throw writer.failure;
+
+        double seconds = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.println(frames + " frames in " + String.format("%.1f", seconds) + "s, "
+                + String.format("%.2f", frames / seconds) + " frames/s, " + String.format("%.0f", rays / seconds) + " rays/s, "
+                + writer.writeMillis + "ms writing overlapped with rendering");
+    }
+
+    /**
+     * finished frame waiting to be written
+     */
+    private static final class PendingFrame {
+
+        /**
+         * marks the end of the animation
+         */
+        static final PendingFrame END = new PendingFrame(-1, null);
+
+        final int index;
+        final FrameBuffer image;
+
+        PendingFrame(final int index, final FrameBuffer image) {
+            this.index = index;
+            this.image = image;
+        }
+    }
+
+    /**
+     * encodes and writes the frames of the queue until END is taken
+     * after a failure the remaining frames are only taken, so rendering never blocks forever
+     */
+    private static final class FrameWriter implements Runnable {
+
+        final BlockingQueue<PendingFrame> queue = new ArrayBlockingQueue<PendingFrame>(QUEUE_CAPACITY);
+        final File directory;
+        volatile IOException failure;
+        volatile long writeMillis;
+
+        FrameWriter(final File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (PendingFrame frame = queue.take(); frame != PendingFrame.END; frame = queue.take()) {
+                    if (failure != null) continue;
+                    long start = System.currentTimeMillis();
+                    try {
+                        frame.image.write(frameFile(directory, frame.index));
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                    writeMillis += System.currentTimeMillis() - start;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AnimationRenderer{" +
+                "frames=" + frames +
+                ", node=" + (node != null) +
+                ", scheduler=" + scheduler +
+                '}';
+    }
+}
@@ -0,0 +1,418 @@
+package Raytracer;
+
+import Distributed.RenderCoordinator;
+import Image.FrameBuffer;
+import Sampling.RandomSamplingPattern;
+import Sampling.SamplingPattern;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * renders a scene from the command line into a FrameBuffer and writes it as png or pfm
+ * with --frames the camera circles around the scene and every frame is written as png into the directory of --out
+ * with --workers the tiles are rendered by that many local worker processes instead of threads of this one,
+ * each of them renders on --threads threads
+ * with --checkpoint the sample sums of the tiles are saved while rendering, running the same command again
+ * after a crash continues with the samples that are missing
+ * --order selects the order the pixels of a tile are traced in by threads of this process
+ * with --adaptive pixels get --min-samples samples and more only while their noise exceeds the threshold,
+ * --samples is the most a pixel gets
+ * never touches javafx, so it runs on headless machines and in containers
+ * prints the wall time and the primary rays per second of the render
+ */
+public class BatchRenderer {
+
+    /**
+     * usage printed on invalid arguments
+     */
+    public static final String USAGE = "usage: BatchRenderer --out <file.png|file.pfm> [--scene glass|bunny|earth]"
+            + " [--width 640] [--height 480] [--samples 1] [--threads <cores>] [--frames 1] [--workers 0]"
+            + " [--checkpoint <file>] [--checkpoint-interval " + Checkpoint.DEFAULT_INTERVAL + "]"
+            + " [--order scanline|morton|hilbert] [--adaptive <threshold>] [--min-samples " + AdaptiveSampler.DEFAULT_MIN_SAMPLES + "]";
+
+    /**
+     * scene to render
+     */
+    public final SceneType scene;
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * rays per pixel
+     */
+    public final int samples;
+
+    /**
+     * amount of render threads, of every worker process if rendered by workers
+     */
+    public final int threads;
+
+    /**
+     * amount of frames, 1 for a single image
+     */
+    public final int frames;
+
+    /**
+     * amount of worker processes rendering a single image, 0 to render on threads of this process
+     */
+    public final int workers;
+
+    /**
+     * png or pfm file the image is written to, directory of the frames of an animation
+     */
+    public final File out;
+
+    /**
+     * checkpoint file of a single image rendered by threads of this process, null to render without
+     */
+    private File checkpoint;
+
+    /**
+     * time between two checkpoint records of a tile in progress in milliseconds
+     */
+    private long checkpointInterval = Checkpoint.DEFAULT_INTERVAL;
+
+    /**
+     * order the pixels of a tile are traced in
+     */
+    private PixelOrder pixelOrder = PixelOrder.SCANLINE;
+
+    /**
+     * standard error of the mean luminance a pixel may keep with adaptive sampling, negative to trace every sample
+     */
+    private double adaptiveThreshold = -1;
+
+    /**
+     * samples every pixel gets with adaptive sampling
+     */
+    private int minSamples = AdaptiveSampler.DEFAULT_MIN_SAMPLES;
+
+    /**
+     * constructor of BatchRenderer
+     * throws IllegalArgumentException if scene or out is null, a number is smaller than 1, workers is negative
+     * or workers are combined with frames
+     * @param scene scene to render
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param samples rays per pixel
+     * @param threads amount of render threads, of every worker process if rendered by workers
+     * @param frames amount of frames, 1 for a single image
+     * @param workers amount of worker processes rendering a single image, 0 to render on threads of this process
+     * @param out png or pfm file the image is written to, directory of the frames of an animation
+     */
+    public BatchRenderer(final SceneType scene, final int width, final int height, final int samples, final int threads, final int frames, final int workers, final File out) {
+        if (scene == null || out == null || width < 1 || height < 1 || samples < 1 || threads < 1 || frames < 1 || workers < 0) throw new IllegalArgumentException();
+        if (workers > 0 && frames > 1) throw new IllegalArgumentException("workers render single images only");
+        this.scene = scene;
+        this.width = width;
+        this.height = height;
+        this.samples = samples;
+        this.threads = threads;
+        this.frames = frames;
+        this.workers = workers;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        // keeps ImageIO and the textures from asking for a display
+        System.setProperty("java.awt.headless", "true");
+        BatchRenderer renderer;
+        try {
+            renderer = parse(args);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage() != null) System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            if (renderer.frames > 1) {
+                renderer.renderAnimation();
+                System.out.println("frames written to " + renderer.out);
+            } else {
+                renderer.render().write(renderer.out);
+                System.out.println("image written to " + renderer.out);
+            }
+        } catch (IOException e) {
+            System.err.println("Error rendering image: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * reads the options of the command line, every option is followed by its value
+     * throws IllegalArgumentException on unknown options, missing values or numbers
+     * @param args command line
+     * @return renderer of the options
+     */
+    public static BatchRenderer parse(final String[] args) {
+        SceneType scene = SceneType.GLASS;
+        int width = 640;
+        int height = 480;
+        int samples = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int frames = 1;
+        int workers = 0;
+        File out = null;
+        File checkpoint = null;
+        long checkpointInterval = Checkpoint.DEFAULT_INTERVAL;
+        PixelOrder pixelOrder = PixelOrder.SCANLINE;
+        double adaptiveThreshold = -1;
+        int minSamples = AdaptiveSampler.DEFAULT_MIN_SAMPLES;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) throw new IllegalArgumentException("missing value of " + args[i]);
+            final String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--scene":
+                        scene = SceneType.valueOf(value.toUpperCase());
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--samples":
+                        samples = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--frames":
+                        frames = Integer.parseInt(value);
+                        break;
+                    case "--workers":
+                        workers = Integer.parseInt(value);
+                        break;
+                    case "--checkpoint":
+                        checkpoint = new File(value);
+                        break;
+                    case "--checkpoint-interval":
+                        checkpointInterval = Long.parseLong(value);
+                        break;
+                    case "--order":
+                        pixelOrder = PixelOrder.valueOf(value.toUpperCase());
+                        break;
+                    case "--adaptive":
+                        adaptiveThreshold = Double.parseDouble(value);
+                        break;
+                    case "--min-samples":
+                        minSamples = Integer.parseInt(value);
+                        break;
+                    case "--out":
+                        out = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a number: " + value);
+            }
+        }
+        if (out == null) throw new IllegalArgumentException("missing option --out");
+        BatchRenderer renderer = new BatchRenderer(scene, width, height, samples, threads, frames, workers, out);
+        if (checkpoint != null) renderer.setCheckpoint(checkpoint, checkpointInterval);
+        renderer.setPixelOrder(pixelOrder);
+        if (adaptiveThreshold >= 0) renderer.setAdaptive(adaptiveThreshold, minSamples);
+        return renderer;
+    }
+
+    /**
+     * selects the order the pixels of a tile are traced in, worker processes always trace row by row
+     * throws IllegalArgumentException if pixelOrder is null
+     * @param pixelOrder order of pixels within a tile
+     */
+    public void setPixelOrder(final PixelOrder pixelOrder) {
+        if (pixelOrder == null) throw new IllegalArgumentException();
+        this.pixelOrder = pixelOrder;
+    }
+
+    /**
+     * saves the progress of the render to a checkpoint file and resumes it from there
+     * throws IllegalArgumentException if file is null, interval is negative or the image is rendered by workers or as animation
+     * @param file checkpoint file
+     * @param interval time between two records of a tile in progress in milliseconds
+     */
+    public void setCheckpoint(final File file, final long interval) {
+        if (file == null || interval < 0 || workers > 0 || frames > 1 || adaptiveThreshold >= 0) throw new IllegalArgumentException("checkpoints need a single image rendered without workers and adaptive sampling");
+        this.checkpoint = file;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * traces more samples only where pixels are noisy, see AdaptiveSampler
+     * throws IllegalArgumentException if threshold is negative, minSamples is smaller than 2
+     * or the image is rendered by workers, from a checkpoint or as animation
+     * @param threshold standard error of the mean luminance a pixel may keep
+     * @param minSamples samples every pixel gets
+     */
+    public void setAdaptive(final double threshold, final int minSamples) {
+        if (threshold < 0 || minSamples < 2) throw new IllegalArgumentException();
+        if (workers > 0 || frames > 1 || checkpoint != null) throw new IllegalArgumentException("adaptive sampling needs a single image rendered without workers and checkpoint");
+        this.adaptiveThreshold = threshold;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * loads the scene and renders it tile by tile on all threads or worker processes
+     * @return rendered image
+     * @throws IOException if the workers failed or the checkpoint cannot be written
+     */
+    public FrameBuffer render() throws IOException {
+        if (checkpoint != null) return renderFromCheckpoint();
+        SamplingPattern pattern = new SamplingPattern(RandomSamplingPattern.getRandomPattern(samples));
+        if (workers > 0) return new RenderCoordinator(workers, threads, TileScheduler.DEFAULT_TILE_SIZE).render(scene, width, height, pattern);
+
+        long start = System.currentTimeMillis();
+        World world = scene.create(pattern);
+        world.setPixelOrder(pixelOrder);
+        System.out.println("scene " + scene + " loaded in " + (System.currentTimeMillis() - start) + "ms");
+
+        FrameBuffer image = new FrameBuffer(width, height);
+        if (adaptiveThreshold >= 0) return renderAdaptive(world, image);
+        PixelTracer tracer = new PixelTracer(world, world.cam, width, height);
+        TileScheduler scheduler = new TileScheduler(threads, TileScheduler.DEFAULT_TILE_SIZE);
+
+        long renderStart = System.nanoTime();
+        scheduler.render(width, height, tile -> tracer.render(tile, image));
+        double seconds = (System.nanoTime() - renderStart) / 1e9;
+
+        System.out.println(width + "x" + height + " with " + samples + " samples on " + threads + " threads rendered in "
+                + String.format("%.0f", seconds * 1000) + "ms, " + tracer.rays() + " primary rays, "
+                + String.format("%.0f", tracer.rays() / seconds) + " rays/s");
+        return image;
+    }
+
+    /**
+     * renders the image with adaptive sampling on all threads
+     * @param world scene
+     * @param image image the tiles are written to
+     * @return rendered image
+     */
+    private FrameBuffer renderAdaptive(final World world, final FrameBuffer image) {
+        AdaptiveSampler sampler = new AdaptiveSampler(world, world.cam, width, height, minSamples, adaptiveThreshold);
+        TileScheduler scheduler = new TileScheduler(threads, TileScheduler.DEFAULT_TILE_SIZE);
+
+        long renderStart = System.nanoTime();
+        scheduler.render(width, height, tile -> sampler.render(tile, image));
+        double seconds = (System.nanoTime() - renderStart) / 1e9;
+
+        System.out.println(width + "x" + height + " with " + minSamples + " to " + samples + " samples on " + threads + " threads rendered in "
+                + String.format("%.0f", seconds * 1000) + "ms, " + sampler.rays() + " primary rays, "
+                + String.format("%.0f", sampler.rays() / seconds) + " rays/s");
+        System.out.println("adaptive sampling: " + String.format("%.1f", sampler.rays() / (double) (width * height)) + " samples per pixel, "
+                + sampler.refined() + " of " + (width * height) + " pixels refined, "
+                + String.format("%.1f", (double) width * height * samples / sampler.rays()) + "x fewer rays than " + samples + " samples");
+        return image;
+    }
+
+    /**
+     * renders the image sample by sample per tile, the sums of a tile are saved to the checkpoint
+     * when it is finished and every checkpointInterval while it is in progress
+     * samples found in the checkpoint are not traced again
+     * @return rendered image
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private FrameBuffer renderFromCheckpoint() throws IOException {
+        long hash = Checkpoint.hash(scene, width, height, samples, TileScheduler.DEFAULT_TILE_SIZE);
+        try (Checkpoint saved = new Checkpoint(checkpoint, hash, RandomSamplingPattern.getRandomPattern(samples), checkpointInterval)) {
+            System.out.println("checkpoint " + checkpoint + ": resumed " + saved.restoredTiles() + " finished and "
+                    + saved.restoredPartialTiles() + " partial tiles");
+            long start = System.currentTimeMillis();
+            World world = scene.create(new SamplingPattern(saved.points()));
+            world.setPixelOrder(pixelOrder);
+            System.out.println("scene " + scene + " loaded in " + (System.currentTimeMillis() - start) + "ms");
+
+            FrameBuffer image = new FrameBuffer(width, height);
+            PixelTracer tracer = new PixelTracer(world, world.cam, width, height);
+            TileScheduler scheduler = new TileScheduler(threads, TileScheduler.DEFAULT_TILE_SIZE);
+
+            long renderStart = System.nanoTime();
+            try {
+                scheduler.render(width, height, tile -> {
+                    try {
+                        renderTile(tile, saved, tracer, image);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            double seconds = (System.nanoTime() - renderStart) / 1e9;
+
+            System.out.println(width + "x" + height + " with " + samples + " samples on " + threads + " threads rendered in "
+                    + String.format("%.0f", seconds * 1000) + "ms, " + tracer.rays() + " primary rays, "
+                    + String.format("%.0f", tracer.rays() / seconds) + " rays/s");
+            System.out.println("checkpoint overhead: " + saved.records() + " records, " + String.format("%.1f", saved.bytes() / 1e6) + "MB, "
+                    + String.format("%.0f", saved.millis()) + "ms writing, "
+                    + String.format("%.2f", 100 * saved.millis() / (seconds * 1000 * threads)) + "% of render thread time");
+            return image;
+        }
+    }
+
+    /**
+     * renders the samples of a tile missing in the checkpoint and writes the average into the image
+     * @param tile pixels to render
+     * @param saved checkpoint
+     * @param tracer tracer of image
+     * @param image image the tile is written to
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private static void renderTile(final Tile tile, final Checkpoint saved, final PixelTracer tracer, final FrameBuffer image) throws IOException {
+        final int count = saved.points().size();
+        final double[] sums = new double[tile.pixels() * 3];
+        saved.restore(tile, sums);
+        long lastSave = System.nanoTime();
+        for (int sample = saved.samples(tile); sample < count; sample++) {
+            tracer.traceSample(tile, saved.points().get(sample), sums);
+            if (sample + 1 == count || System.nanoTime() - lastSave >= saved.interval * 1_000_000L) {
+                saved.save(tile, sample + 1, sums);
+                lastSave = System.nanoTime();
+            }
+        }
+        final float[] rgb = new float[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            rgb[i] = (float) (sums[i] / count);
+        }
+        image.set(tile, rgb);
+    }
+
+    /**
+     * loads the scene once and renders all frames with the camera circling around the y axis
+     * @throws IOException if a frame cannot be written
+     */
+    public void renderAnimation() throws IOException {
+        long start = System.currentTimeMillis();
+        World world = scene.create(new SamplingPattern(RandomSamplingPattern.getRandomPattern(samples)));
+        world.setPixelOrder(pixelOrder);
+        System.out.println("scene " + scene + " loaded in " + (System.currentTimeMillis() - start) + "ms");
+
+        TileScheduler scheduler = new TileScheduler(threads, TileScheduler.DEFAULT_TILE_SIZE);
+        new AnimationRenderer(world, frames, AnimationRenderer.orbit(world.cam, frames), scheduler).render(width, height, out);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRenderer{" +
+                "scene=" + scene +
+                ", width=" + width +
+                ", height=" + height +
+                ", samples=" + samples +
+                ", threads=" + threads +
+                ", frames=" + frames +
+                ", workers=" + workers +
+                ", checkpoint=" + checkpoint +
+                ", pixelOrder=" + pixelOrder +
+                ", adaptiveThreshold=" + adaptiveThreshold +
+                ", out=" + out +
+                '}';
+    }
+}
@@ -0,0 +1,337 @@
+package Raytracer;
+
+import MathLib.Point2;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * append only checkpoint of a long render, so a crashed or pre-empted render can continue where it stopped
+ * the header holds the hash of the job and the sampling points, every record the double sample sums of one tile
+ * after some samples, the last record of a tile wins
+ * a render with the same job hash reads the file, cuts off a torn last record and appends behind it,
+ * any other job starts the file anew
+ */
+public class Checkpoint implements Closeable {
+
+    /**
+     * time between two records of a tile still in progress and between two syncs to the disk in milliseconds
+     */
+    public static final long DEFAULT_INTERVAL = 10_000;
+
+    /**
+     * first value of file
+     */
+    private static final int MAGIC = 0x52544350;
+
+    /**
+     * format of file
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * size of a record before its sums: bounds of tile and amount of samples
+     */
+    private static final int RECORD_HEADER = 5 * Integer.BYTES;
+
+    /**
+     * checkpoint file
+     */
+    public final File file;
+
+    /**
+     * time between two records of a tile still in progress and between two syncs to the disk in milliseconds
+     */
+    public final long interval;
+
+    /**
+     * channel appending records
+     */
+    private final FileChannel channel;
+
+    /**
+     * sampling points of the job, read from the file when resumed
+     */
+    private final ArrayList<Point2> points;
+
+    /**
+     * last record per tile read from the file
+     */
+    private final HashMap<Tile, Record> restored = new HashMap<Tile, Record>();
+
+    /**
+     * statistics of records written by this process
+     */
+    private long records, bytes, nanos;
+
+    /**
+     * time of the last sync in nanoseconds
+     */
+    private long lastForce = System.nanoTime();
+
+    /**
+     * opens a checkpoint, resumes it if it belongs to the same job
+     * throws IllegalArgumentException if file or points is null, points is empty or interval is negative
+     * @param file checkpoint file, created if missing
+     * @param hash hash of the job, see hash
+     * @param points sampling points used if the file is started anew
+     * @param interval time between two records of a tile still in progress and between two syncs in milliseconds
+     * @throws IOException if the file cannot be read or written
+     */
+    public Checkpoint(final File file, final long hash, final ArrayList<Point2> points, final long interval) throws IOException {
+        if (file == null || points == null || points.isEmpty() || interval < 0) throw new IllegalArgumentException();
+        this.file = file;
+        this.interval = interval;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ArrayList<Point2> resumed = null;
+        try {
+            resumed = read(hash);
+        } catch (IOException e) {
+            System.out.println("checkpoint " + file + " unreadable, starting anew: " + e);
+            restored.clear();
+        }
+        if (resumed == null) {
+            this.points = points;
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES + Integer.BYTES + points.size() * 2 * Double.BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(hash).putInt(points.size());
+            for (Point2 p : points) header.putDouble(p.x).putDouble(p.y);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header, channel.size());
+            channel.force(false);
+        } else {
+            this.points = resumed;
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * reads header and records and cuts off a torn last record
+     * @param hash hash of the job
+     * @return sampling points of the file or null if it belongs to another job or is empty
+     * @throws IOException if the file cannot be read
+     */
+    private ArrayList<Point2> read(final long hash) throws IOException {
+        final long size = channel.size();
+        channel.position(0);
+        // not closed, closing it would close the channel
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        final ArrayList<Point2> stored;
+        long valid;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != hash) return null;
+            final int count = in.readInt();
+            if (count < 1 || count > size / (2 * Double.BYTES)) return null;
+            stored = new ArrayList<Point2>(count);
+            for (int i = 0; i < count; i++) stored.add(new Point2(in.readDouble(), in.readDouble()));
+            valid = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES + count * 2L * Double.BYTES;
+        } catch (EOFException e) {
+            return null;
+        }
+
+        final byte[] head = new byte[RECORD_HEADER];
+        try {
+            while (true) {
+                in.readFully(head);
+                final ByteBuffer bounds = ByteBuffer.wrap(head);
+                final int x = bounds.getInt(), y = bounds.getInt(), width = bounds.getInt(), height = bounds.getInt(), samples = bounds.getInt();
+                if (x < 0 || y < 0 || width < 1 || height < 1 || samples < 1 || samples > stored.size()) break;
+                final long length = (long) width * height * 3 * Double.BYTES;
+                if (valid + RECORD_HEADER + length + Long.BYTES > size) break;
+                final byte[] body = new byte[(int) length];
+                in.readFully(body);
+                final CRC32 crc = new CRC32();
+                crc.update(head);
+                crc.update(body);
+                if (in.readLong() != crc.getValue()) break;
+                final double[] sums = new double[width * height * 3];
+                ByteBuffer.wrap(body).asDoubleBuffer().get(sums);
+                restored.put(new Tile(x, y, width, height), new Record(samples, sums));
+                valid += RECORD_HEADER + length + Long.BYTES;
+            }
+        } catch (EOFException e) {
+            // torn last record
+        }
+        if (valid < size) System.out.println("checkpoint " + file + " cut off " + (size - valid) + " bytes of a torn record");
+        channel.truncate(valid);
+        return stored;
+    }
+
+    /**
+     * hash identifying a job, a checkpoint is only resumed by a job with the same hash
+     * covers the contents of the asset files of the scene, so sums of an edited model or texture are not resumed
+     * @param scene scene of job
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param samples rays per pixel
+     * @param tileSize edge length of tiles in pixels
+     * @return hash
+     * @throws IOException if an asset file cannot be read
+     */
+    public static long hash(final SceneType scene, final int width, final int height, final int samples, final int tileSize) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((scene + " " + width + "x" + height + " " + samples + " " + tileSize).getBytes(StandardCharsets.UTF_8));
+            final byte[] buffer = new byte[1 << 16];
+            for (File asset : scene.assets()) {
+                digest.update(asset.getPath().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = new FileInputStream(asset)) {
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) digest.update(buffer, 0, read);
+                }
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return sampling points of the job, those of the file if it was resumed
+     */
+    public ArrayList<Point2> points() {
+        return points;
+    }
+
+    /**
+     * @param tile tile of job
+     * @return amount of samples of the tile found in the file, 0 if none
+     */
+    public int samples(final Tile tile) {
+        final Record record = restored.get(tile);
+        return record == null ? 0 : record.samples;
+    }
+
+    /**
+     * adds the sums of the samples of a tile found in the file
+     * @param tile tile of job
+     * @param sums red, green and blue sum per pixel of tile, row by row
+     */
+    public void restore(final Tile tile, final double[] sums) {
+        final Record record = restored.get(tile);
+        if (record == null) return;
+        if (sums.length != record.sums.length) throw new IllegalArgumentException();
+        for (int i = 0; i < sums.length; i++) sums[i] += record.sums[i];
+    }
+
+    /**
+     * @return amount of tiles found in the file with every sample
+     */
+    public int restoredTiles() {
+        int finished = 0;
+        for (Record record : restored.values()) {
+            if (record.samples == points.size()) finished++;
+        }
+        return finished;
+    }
+
+    /**
+     * @return amount of tiles found in the file with only some samples
+     */
+    public int restoredPartialTiles() {
+        return restored.size() - restoredTiles();
+    }
+
+    /**
+     * appends the sums of a tile, syncs the file to the disk if the last sync is longer than interval ago
+     * sums are stored as doubles, so a tile resumed from them ends up with the same sums as an uninterrupted one
+     * @param tile tile of job
+     * @param samples amount of samples added to sums
+     * @param sums red, green and blue sum per pixel of tile, row by row
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void save(final Tile tile, final int samples, final double[] sums) throws IOException {
+        if (tile == null || sums == null || sums.length != tile.pixels() * 3 || samples < 1 || samples > points.size()) throw new IllegalArgumentException();
+        final long start = System.nanoTime();
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + sums.length * Double.BYTES + Long.BYTES);
+        record.putInt(tile.x).putInt(tile.y).putInt(tile.width).putInt(tile.height).putInt(samples);
+        for (double sum : sums) record.putDouble(sum);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putLong(crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) channel.write(record);
+        if (start - lastForce >= interval * 1_000_000L) {
+            channel.force(false);
+            lastForce = System.nanoTime();
+        }
+        records++;
+        bytes += record.limit();
+        nanos += System.nanoTime() - start;
+    }
+
+    /**
+     * @return amount of records written by this process
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * @return bytes written by this process
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return time spent writing records in milliseconds
+     */
+    public synchronized double millis() {
+        return nanos / 1e6;
+    }
+
+    /**
+     * syncs and closes the file
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * sample sums of a tile read from the file
+     */
+    private static final class Record {
+
+        final int samples;
+        final double[] sums;
+
+        Record(final int samples, final double[] sums) {
+            this.samples = samples;
+            this.sums = sums;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{" +
+                "file=" + file +
+                ", samples=" + points.size() +
+                ", restored=" + restored.size() +
+                '}';
+    }
+}
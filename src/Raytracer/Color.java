@@ -21,9 +21,6 @@ public class Color {
      */
     public final double b;
 
-    public int x = 0;
-    public int y = 0;
-
 
     /**
      * constructor for color class
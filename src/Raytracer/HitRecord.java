@@ -0,0 +1,61 @@
+package Raytracer;
+
+import Geometry.Geometry;
+
+/**
+ * mutable scratch record of the closest intersection found so far
+ * intersection kernels only write numbers into it, a Hit is created
+ * once for the final closest intersection through geo.hitFor
+ * a record belongs to one query of one thread
+ */
+public class HitRecord {
+
+    /**
+     * factor of ray where geometry was hit
+     */
+    public double t;
+
+    /**
+     * geometry that was hit and is able to turn the record into a Hit
+     */
+    public Geometry geo;
+
+    /**
+     * primitive specific values, e.g. barycentric coordinates of a triangle
+     */
+    public double u, v;
+
+    /**
+     * primitive specific index, e.g. face of a box
+     */
+    public int part;
+
+    /**
+     * primitive hit inside a composite geometry like a model
+     */
+    public Geometry primitive;
+
+    /**
+     * finished hit of geometries that cannot defer it, e.g. transformed nodes
+     */
+    public Hit hit;
+
+    /**
+     * creates the Hit of the recorded intersection
+     * only valid after an intersect call with this record returned true
+     * @param r ray the record was filled with
+     * @return hit
+     */
+    public Hit toHit(final Ray r) {
+        return geo.hitFor(r, this);
+    }
+
+    @Override
+    public String toString() {
+        return "HitRecord{" +
+                "t=" + t +
+                ", geo=" + geo +
+                ", part=" + part +
+                '}';
+    }
+}
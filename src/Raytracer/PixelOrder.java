@@ -0,0 +1,116 @@
+package Raytracer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * order the pixels of a tile are traced in
+ * neighbouring pixels hit the same accelerator nodes, triangles and texels,
+ * space filling curves keep more of them neighbours than rows do, so they are still cached for the next ray
+ */
+public enum PixelOrder {
+
+    /**
+     * row after row
+     */
+    SCANLINE,
+
+    /**
+     * z-order curve, interleaves the bits of x and y
+     */
+    MORTON,
+
+    /**
+     * hilbert curve, every pixel is a neighbour of the one before
+     */
+    HILBERT;
+
+    /**
+     * orders calculated so far by width and height, tiles mostly share one size
+     */
+    private final ConcurrentHashMap<Long, int[]> orders = new ConcurrentHashMap<Long, int[]>();
+
+    /**
+     * calculates the order of the pixels of a tile
+     * the curves are laid over the enclosing power of two square, pixels outside of the tile are left out
+     * throws IllegalArgumentException if width or height is smaller than 1
+     * @param width amount of columns of tile
+     * @param height amount of rows of tile
+     * @return index y * width + x of every pixel of the tile in the order it is traced
+     */
+    public int[] order(final int width, final int height) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException();
+        return orders.computeIfAbsent(((long) width << 32) | height, key -> calculate(width, height)).clone();
+    }
+
+    /**
+     * @param width amount of columns of tile
+     * @param height amount of rows of tile
+     * @return index y * width + x of every pixel of the tile in the order it is traced
+     */
+    private int[] calculate(final int width, final int height) {
+        final int[] order = new int[width * height];
+        if (this == SCANLINE) {
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            return order;
+        }
+
+        int side = 1;
+        while (side < Math.max(width, height)) side *= 2;
+        int next = 0;
+        for (int d = 0; next < order.length; d++) {
+            final int x, y;
+            if (this == MORTON) {
+                x = compact(d);
+                y = compact(d >>> 1);
+            } else {
+                final int[] point = hilbert(side, d);
+                x = point[0];
+                y = point[1];
+            }
+            if (x < width && y < height) order[next++] = y * width + x;
+        }
+        return order;
+    }
+
+    /**
+     * @param d morton code
+     * @return bits 0, 2, 4, ... of d packed together
+     */
+    private static int compact(int d) {
+        d &= 0x55555555;
+        d = (d | (d >>> 1)) & 0x33333333;
+        d = (d | (d >>> 2)) & 0x0f0f0f0f;
+        d = (d | (d >>> 4)) & 0x00ff00ff;
+        d = (d | (d >>> 8)) & 0x0000ffff;
+        return d;
+    }
+
+    /**
+     * https://en.wikipedia.org/wiki/Hilbert_curve
+     * @param side edge length of square, a power of two
+     * @param d distance along the curve
+     * @return x and y of point at distance d
+     */
+    private static int[] hilbert(final int side, final int d) {
+        int x = 0;
+        int y = 0;
+        int t = d;
+        for (int s = 1; s < side; s *= 2) {
+            final int rx = 1 & (t / 2);
+            final int ry = 1 & (t ^ rx);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                final int swap = x;
+                x = y;
+                y = swap;
+            }
+            x += s * rx;
+            y += s * ry;
+            t /= 4;
+        }
+        return new int[]{x, y};
+    }
+}
@@ -0,0 +1,197 @@
+package Raytracer;
+
+import Camera.Camera;
+import Image.FrameBuffer;
+import MathLib.Point2;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * traces the primary rays of pixels and averages their colors
+ * independent of javafx, used by the render threads of the window and by the headless BatchRenderer
+ * one tracer may be shared by all threads rendering an image
+ */
+public class PixelTracer {
+
+    /**
+     * scene
+     */
+    public final World world;
+
+    /**
+     * camera creating the rays
+     */
+    public final Camera cam;
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * amount of primary rays traced so far
+     */
+    private final LongAdder rays = new LongAdder();
+
+    /**
+     * constructor of PixelTracer
+     * throws IllegalArgumentException if world or cam is null or width or height is negative
+     * @param world scene
+     * @param cam camera creating the rays
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     */
+    public PixelTracer(final World world, final Camera cam, final int width, final int height) {
+        if (world == null || cam == null || width < 0 || height < 0) throw new IllegalArgumentException();
+        this.world = world;
+        this.cam = cam;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * traces the pixels of a tile with packets if the world uses them,
+     * otherwise row by row or along the space filling curve of the pixel order of the world
+     * throws IllegalArgumentException if tile or rgb is null or rgb does not fit the tile
+     * @param tile pixels to trace
+     * @param rgb red, green and blue per pixel of tile, row by row, overwritten
+     */
+    public void trace(final Tile tile, final float[] rgb) {
+        if (tile == null || rgb == null || rgb.length != tile.pixels() * 3) throw new IllegalArgumentException();
+        final int packetSize = world.getPacketSize();
+        if (packetSize > 1) {
+            tracePackets(tile, rgb, packetSize);
+            return;
+        }
+        for (int pixel : world.getPixelOrder().order(tile.width, tile.height)) {
+            tracePixel(tile.x + pixel % tile.width, tile.y + pixel / tile.width, rgb, pixel * 3);
+        }
+    }
+
+    /**
+     * amount of rows a render thread hands to trace at once
+     * packets need rows of their edge length, space filling curves the whole tile
+     * @param rows amount of rows of tile
+     * @return rows of one band
+     */
+    public int band(final int rows) {
+        if (world.getPacketSize() > 1) return world.getPacketSize();
+        if (world.getPixelOrder() != PixelOrder.SCANLINE) return Math.max(1, rows);
+        return 1;
+    }
+
+    /**
+     * traces all pixels of a tile and writes them into an image
+     * @param tile pixels to render
+     * @param image image of the size of this tracer
+     */
+    public void render(final Tile tile, final FrameBuffer image) {
+        final float[] rgb = new float[tile.pixels() * 3];
+        trace(tile, rgb);
+        image.set(tile, rgb);
+    }
+
+    /**
+     * traces one sample of every pixel of a tile and adds its color to the sums of the pixels
+     * used by renders accumulating one sample of the sampling pattern after the other
+     * pixels are visited in the pixel order of the world
+     * @param tile pixels to trace
+     * @param p sample point within the pixels
+     * @param sums red, green and blue sum per pixel of tile, row by row
+     */
+    public void traceSample(final Tile tile, final Point2 p, final double[] sums) {
+        if (tile == null || p == null || sums == null || sums.length != tile.pixels() * 3) throw new IllegalArgumentException();
+        for (int pixel : world.getPixelOrder().order(tile.width, tile.height)) {
+            final int x = tile.x + pixel % tile.width;
+            final int y = tile.y + pixel / tile.width;
+            final Color c = world.colorOf(world.hit(cam.rayFor(width, height, x, height - y - 1, p)));
+            sums[pixel * 3] += c.r;
+            sums[pixel * 3 + 1] += c.g;
+            sums[pixel * 3 + 2] += c.b;
+        }
+        rays.add(tile.pixels());
+    }
+
+    /**
+     * traces every ray of a pixel on its own and writes their average
+     * @param x column of image
+     * @param y row of image
+     * @param rgb colors of tile
+     * @param i index of red value of pixel in rgb
+     */
+    private void tracePixel(final int x, final int y, final float[] rgb, final int i) {
+        double red = 0, green = 0, blue = 0;
+        final Set<Ray> set = cam.rayFor(width, height, x, height - y - 1);
+        for (Ray r : set) {
+            final Color c = world.colorOf(world.hit(r));
+            red += c.r;
+            green += c.g;
+            blue += c.b;
+        }
+        rays.add(set.size());
+        rgb[i] = (float) (red / set.size());
+        rgb[i + 1] = (float) (green / set.size());
+        rgb[i + 2] = (float) (blue / set.size());
+    }
+
+    /**
+     * traces the rays of square blocks of pixels of a tile as one packet each
+     * @param tile pixels to trace
+     * @param rgb colors of tile, row by row
+     * @param size edge length of blocks in pixels
+     */
+    private void tracePackets(final Tile tile, final float[] rgb, final int size) {
+        for (int y0 = tile.y; y0 < tile.endY(); y0 += size) {
+            final int rows = Math.min(size, tile.endY() - y0);
+            for (int x0 = tile.x; x0 < tile.endX(); x0 += size) {
+                final int columns = Math.min(size, tile.endX() - x0);
+
+                // rays of all pixels of the block, pixel by pixel
+                final ArrayList<Ray> packetRays = new ArrayList<Ray>();
+                final int[] pixelStart = new int[rows * columns + 1];
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < columns; x++) {
+                        packetRays.addAll(cam.rayFor(width, height, x0 + x, height - (y0 + y) - 1));
+                        pixelStart[y * columns + x + 1] = packetRays.size();
+                    }
+                }
+                final RayPacket packet = new RayPacket(packetRays.toArray(new Ray[0]));
+                rays.add(packet.size());
+                world.hit(packet);
+
+                for (int pixel = 0; pixel < rows * columns; pixel++) {
+                    double red = 0, green = 0, blue = 0;
+                    for (int k = pixelStart[pixel]; k < pixelStart[pixel + 1]; k++) {
+                        final Color c = world.colorOf(packet.hits[k]);
+                        red += c.r;
+                        green += c.g;
+                        blue += c.b;
+                    }
+                    final int samples = pixelStart[pixel + 1] - pixelStart[pixel];
+                    final int i = ((y0 - tile.y + pixel / columns) * tile.width + x0 - tile.x + pixel % columns) * 3;
+                    rgb[i] = (float) (red / samples);
+                    rgb[i + 1] = (float) (green / samples);
+                    rgb[i + 2] = (float) (blue / samples);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return amount of primary rays traced so far
+     */
+    public long rays() {
+        return rays.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PixelTracer{" +
+                "width=" + width +
+                ", height=" + height +
+                ", rays=" + rays() +
+                '}';
+    }
+}
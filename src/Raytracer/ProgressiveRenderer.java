@@ -0,0 +1,151 @@
+package Raytracer;
+
+import Camera.Camera;
+import MathLib.Point2;
+
+import java.util.Arrays;
+
+/**
+ * renders an image in passes that each show a complete picture, coarse first
+ * the first passes trace one pixel per block of COARSE_STRIDES and fill the block with it,
+ * the next pass traces the remaining pixels with the first sample of the sampling pattern
+ * and every further pass adds one more sample of the pattern to the accumulation buffer
+ * no ray is traced twice, after the last pass every pixel holds the average of all samples
+ * passes have to be rendered one after the other, the tiles of one pass may be rendered concurrently
+ */
+public class ProgressiveRenderer {
+
+    /**
+     * edge length of the blocks filled by one pixel in the coarse passes, 4 shows 1/16 and 2 shows 1/4 of the pixels
+     */
+    public static final int[] COARSE_STRIDES = {4, 2};
+
+    /**
+     * scene
+     */
+    public final World world;
+
+    /**
+     * camera creating the rays
+     */
+    public final Camera cam;
+
+    /**
+     * size of image in pixels
+     */
+    public final int width, height;
+
+    /**
+     * sum of the colors of all samples per pixel
+     */
+    private final double[] red, green, blue;
+
+    /**
+     * amount of samples per pixel added so far
+     */
+    private final int[] samples;
+
+    /**
+     * constructor of ProgressiveRenderer
+     * throws IllegalArgumentException if world or cam is null or width or height is negative
+     * @param world scene
+     * @param cam camera creating the rays
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     */
+    public ProgressiveRenderer(final World world, final Camera cam, final int width, final int height) {
+        if (world == null || cam == null || width < 0 || height < 0) throw new IllegalArgumentException();
+        this.world = world;
+        this.cam = cam;
+        this.width = width;
+        this.height = height;
+        this.red = new double[width * height];
+        this.green = new double[width * height];
+        this.blue = new double[width * height];
+        this.samples = new int[width * height];
+    }
+
+    /**
+     * @return amount of passes, the coarse passes and one per sample of the sampling pattern
+     */
+    public int passes() {
+        return COARSE_STRIDES.length + cam.pattern.points.size();
+    }
+
+    /**
+     * @param pass index of pass
+     * @return edge length of the blocks filled by one traced pixel
+     */
+    public static int stride(final int pass) {
+        return pass < COARSE_STRIDES.length ? COARSE_STRIDES[pass] : 1;
+    }
+
+    /**
+     * @param pass index of pass
+     * @return index of the sample of the sampling pattern traced in the pass
+     */
+    public static int sample(final int pass) {
+        return Math.max(0, pass - COARSE_STRIDES.length);
+    }
+
+    /**
+     * traces the rays of one pass within a tile and adds them to the accumulation buffer
+     * pixels left out by a coarse pass show the pixel at the top left corner of their block
+     * throws IllegalArgumentException if tile or rgb is null, rgb does not fit the tile or pass is no pass of this renderer
+     * @param tile pixels to render
+     * @param pass index of pass
+     * @param rgb red, green and blue per pixel of tile after the pass, row by row, overwritten
+     */
+    public void render(final Tile tile, final int pass, final float[] rgb) {
+        if (tile == null || rgb == null || rgb.length != tile.pixels() * 3 || pass < 0 || pass >= passes()) throw new IllegalArgumentException();
+        final int stride = stride(pass);
+        final int sample = sample(pass);
+        final Point2 p = cam.pattern.points.get(sample);
+
+        for (int y = tile.y; y < tile.endY(); y++) {
+            for (int x = tile.x; x < tile.endX(); x++) {
+                final int i = y * width + x;
+                // pixels of the first sample traced by a coarser pass already are kept
+                if (x % stride != 0 || y % stride != 0 || samples[i] > sample) continue;
+                final Color c = world.colorOf(world.hit(cam.rayFor(width, height, x, height - y - 1, p)));
+                red[i] += c.r;
+                green[i] += c.g;
+                blue[i] += c.b;
+                samples[i]++;
+            }
+        }
+
+        int k = 0;
+        for (int y = tile.y; y < tile.endY(); y++) {
+            for (int x = tile.x; x < tile.endX(); x++) {
+                final int i = (y - y % stride) * width + x - x % stride;
+                final int n = Math.max(1, samples[i]);
+                rgb[k++] = (float) (red[i] / n);
+                rgb[k++] = (float) (green[i] / n);
+                rgb[k++] = (float) (blue[i] / n);
+            }
+        }
+    }
+
+    /**
+     * @param x column of image
+     * @param y row of image
+     * @return average of the samples of a pixel so far, black if it has none yet
+     */
+    public Color color(final int x, final int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) throw new IllegalArgumentException();
+        final int i = y * width + x;
+        if (samples[i] == 0) return new Color(0, 0, 0);
+        return new Color(red[i] / samples[i], green[i] / samples[i], blue[i] / samples[i]);
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressiveRenderer{" +
+                "width=" + width +
+                ", height=" + height +
+                ", passes=" + passes() +
+                ", strides=" + Arrays.toString(COARSE_STRIDES) +
+                '}';
+    }
+}
@@ -0,0 +1,225 @@
+package Raytracer;
+
+import java.util.Arrays;
+
+/**
+ * group of coherent rays traced together, usually the primary rays of a small pixel tile
+ * origins and inverted directions are kept as intervals so an accelerator can cull
+ * a node for all rays with one interval arithmetic slab test
+ * closest hits are collected per ray in hits
+ */
+public class RayPacket {
+
+    /**
+     * smaller groups of rays are cheaper to trace one by one
+     */
+    public static final int MIN_SIZE = 4;
+
+    /**
+     * rays of packet
+     */
+    public final Ray[] rays;
+
+    /**
+     * closest hit per ray found so far, null if ray did not hit anything yet
+     */
+    public final Hit[] hits;
+
+    /**
+     * scratch flags of accelerators, true for rays entering the leaf currently visited
+     */
+    public final boolean[] active;
+
+    /**
+     * ray origins per axis
+     */
+    public final double[] ox, oy, oz;
+
+    /**
+     * inverted ray directions per axis
+     */
+    public final double[] invX, invY, invZ;
+
+    /**
+     * scratch record for intersection tests of single rays of packet
+     */
+    public final HitRecord record = new HitRecord();
+
+    /**
+     * true if the directions of all rays have the same sign on every axis
+     * only then the intervals bound the packet, otherwise rays have to be traced one by one
+     */
+    public final boolean coherent;
+
+    /**
+     * t of closest hit per ray or a smaller limit set before tracing
+     */
+    private final double[] limits;
+
+    /**
+     * smallest and largest origin per axis
+     */
+    private final double[] originMin = new double[3], originMax = new double[3];
+
+    /**
+     * smallest and largest inverted direction per axis
+     */
+    private final double[] inverseMin = new double[3], inverseMax = new double[3];
+
+    /**
+     * true if directions point to positive values on an axis
+     */
+    private final boolean[] positive = new boolean[3];
+
+    /**
+     * Constructor calculates the intervals of the packet
+     * throws IllegalArgumentException if rays is null, empty or contains null
+     * @param rays rays of packet
+     */
+    public RayPacket(final Ray[] rays) {
+        if (rays == null || rays.length == 0) throw new IllegalArgumentException();
+        this.rays = rays;
+        this.hits = new Hit[rays.length];
+        this.active = new boolean[rays.length];
+        this.limits = new double[rays.length];
+        Arrays.fill(limits, Double.MAX_VALUE);
+        ox = new double[rays.length];
+        oy = new double[rays.length];
+        oz = new double[rays.length];
+        invX = new double[rays.length];
+        invY = new double[rays.length];
+        invZ = new double[rays.length];
+        Arrays.fill(originMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(originMax, Double.NEGATIVE_INFINITY);
+        Arrays.fill(inverseMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(inverseMax, Double.NEGATIVE_INFINITY);
+
+        for (int i = 0; i < rays.length; i++) {
+            if (rays[i] == null) throw new IllegalArgumentException();
+            ox[i] = rays[i].o.x;
+            oy[i] = rays[i].o.y;
+            oz[i] = rays[i].o.z;
+            invX[i] = 1.0 / rays[i].d.x;
+            invY[i] = 1.0 / rays[i].d.y;
+            invZ[i] = 1.0 / rays[i].d.z;
+            include(0, ox[i], invX[i]);
+            include(1, oy[i], invY[i]);
+            include(2, oz[i], invZ[i]);
+        }
+
+        boolean sameSigns = rays.length >= MIN_SIZE;
+        for (int axis = 0; axis < 3; axis++) {
+            positive[axis] = inverseMin[axis] > 0;
+            // axis parallel rays have infinite inverted directions, intervals would produce NaN
+            sameSigns &= (inverseMin[axis] > 0 || inverseMax[axis] < 0)
+                    && !Double.isInfinite(inverseMin[axis]) && !Double.isInfinite(inverseMax[axis]);
+        }
+        coherent = sameSigns;
+    }
+
+    /**
+     * widens the intervals of an axis
+     * @param axis 0 for x, 1 for y, 2 for z
+     * @param origin origin of ray on axis
+     * @param inverse inverted direction of ray on axis
+     */
+    private void include(final int axis, final double origin, final double inverse) {
+        originMin[axis] = Math.min(originMin[axis], origin);
+        originMax[axis] = Math.max(originMax[axis], origin);
+        inverseMin[axis] = Math.min(inverseMin[axis], inverse);
+        inverseMax[axis] = Math.max(inverseMax[axis], inverse);
+    }
+
+    /**
+     * @return amount of rays
+     */
+    public int size() {
+        return rays.length;
+    }
+
+    /**
+     * @param i index of ray
+     * @return t of closest hit of ray so far, its limit or Double.MAX_VALUE
+     */
+    public double tMax(final int i) {
+        return limits[i];
+    }
+
+    /**
+     * @return largest tMax of all rays, nodes behind it are of no interest to any ray
+     */
+    public double tMax() {
+        double max = 0;
+        for (double limit : limits) {
+            max = Math.max(max, limit);
+        }
+        return max;
+    }
+
+    /**
+     * ignores hits of a ray from t on
+     * used to pass the closest hit of an enclosing packet on to a packet in object space
+     * @param i index of ray
+     * @param t farthest t that is still of interest
+     */
+    public void limit(final int i, final double t) {
+        limits[i] = Math.min(limits[i], t);
+    }
+
+    /**
+     * keeps a hit if it is closer than the closest hit of its ray so far
+     * @param i index of ray
+     * @param hit hit of ray, may be null
+     */
+    public void offer(final int i, final Hit hit) {
+        if (hit != null && hit.t < limits[i]) {
+            hits[i] = hit;
+            limits[i] = hit.t;
+        }
+    }
+
+    /**
+     * interval arithmetic slab test of all rays against a box
+     * conservative, a box can pass although every single ray misses it
+     * only valid for coherent packets
+     * @param bounds six values per box: minX, minY, minZ, maxX, maxY, maxZ
+     * @param offset index of minX of box
+     * @param tMax farthest t that is still of interest
+     * @return lower bound of t where rays enter the box or Double.POSITIVE_INFINITY if all rays miss it
+     */
+    public double intersect(final double[] bounds, final int offset, final double tMax) {
+        double tNear = 0;
+        double tFar = tMax;
+        for (int axis = 0; axis < 3; axis++) {
+            final double near = positive[axis] ? bounds[offset + axis] : bounds[offset + 3 + axis];
+            final double far = positive[axis] ? bounds[offset + 3 + axis] : bounds[offset + axis];
+            final double entry = lowerProduct(near - originMax[axis], near - originMin[axis], inverseMin[axis], inverseMax[axis]);
+            final double exit = upperProduct(far - originMax[axis], far - originMin[axis], inverseMin[axis], inverseMax[axis]);
+            if (entry > tNear) tNear = entry;
+            if (exit < tFar) tFar = exit;
+        }
+        return tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return lower bound of product of intervals [a, b] and [c, d]
+     */
+    private static double lowerProduct(final double a, final double b, final double c, final double d) {
+        return Math.min(Math.min(a * c, a * d), Math.min(b * c, b * d));
+    }
+
+    /**
+     * @return upper bound of product of intervals [a, b] and [c, d]
+     */
+    private static double upperProduct(final double a, final double b, final double c, final double d) {
+        return Math.max(Math.max(a * c, a * d), Math.max(b * c, b * d));
+    }
+
+    @Override
+    public String toString() {
+        return "RayPacket{" +
+                "rays=" + rays.length +
+                ", coherent=" + coherent +
+                '}';
+    }
+}
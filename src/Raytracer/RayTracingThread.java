@@ -1,91 +1,89 @@
 package Raytracer;
 
 import Camera.*;
-import javafx.application.Platform;
-import javafx.concurrent.Task;
-import javafx.scene.canvas.Canvas;
+import Image.ArgbFrameBuffer;
 
-import java.util.ArrayList;
-import java.util.Set;
+public class RayTracingThread implements Runnable {
 
-public class RayTracingThread extends Task<Void> {
-
-    private final Canvas canvas;
+    private final ArgbFrameBuffer image;
     private final World world;
     private final Camera cam;
-    private final int width;
-    private final int height;
+    private final int startX;
+    private final int finishX;
     private final int startY;
     private final int finishY;
+    private final RenderSession session;
+    private final ProgressiveRenderer progressive;
+    private final int pass;
+
+
+    /**
+     * renders one tile of the image
+     * stops after the current row once the session is cancelled
+     * @param world scene
+     * @param cam camera
+     * @param image image the pixels are written to, it is shown by the fx thread
+     * @param tile pixels to render
+     * @param session session the tile belongs to
+     */
+    public RayTracingThread(World world, Camera cam, ArgbFrameBuffer image, Tile tile, RenderSession session) {
+        this(world, cam, image, tile.x, tile.endX(), tile.y, tile.endY(), session, null, 0);
+    }
 
+    /**
+     * renders one pass of a progressive render within one tile of the image
+     * the pixels of the tile are written once the pass of the tile is finished
+     * @param progressive accumulation buffer of the render
+     * @param image image the pixels are written to, it is shown by the fx thread
+     * @param tile pixels to render
+     * @param pass index of pass
+     * @param session session the tile belongs to
+     */
+    public RayTracingThread(ProgressiveRenderer progressive, ArgbFrameBuffer image, Tile tile, int pass, RenderSession session) {
+        this(progressive.world, progressive.cam, image, tile.x, tile.endX(), tile.y, tile.endY(), session, progressive, pass);
+    }
 
-    public RayTracingThread(World world, Camera cam, Canvas canvas, int width, int height, int startY, int finishY) {
-        this.canvas = canvas;
+    private RayTracingThread(World world, Camera cam, ArgbFrameBuffer image, int startX, int finishX, int startY, int finishY, RenderSession session, ProgressiveRenderer progressive, int pass) {
+        this.image = image;
         this.world = world;
         this.cam = cam;
-        this.width = width;
-        this.height = height;
+        this.startX = startX;
+        this.finishX = finishX;
         this.startY = startY;
         this.finishY = finishY;
+        this.session = session;
+        this.progressive = progressive;
+        this.pass = pass;
     }
 
 
     @Override
-    public Void call() {
-        long start = System.currentTimeMillis();
-
-
-        double red = world.backgroundColor.r;
-        double green = world.backgroundColor.g;
-        double blue = world.backgroundColor.b;
-
-
-        Color color;
-
-        for (int y = startY; y < finishY; y++) {
-            ArrayList<Color> arrayList = new ArrayList<Color>();
-
-            for (int x = 0; x < width; x++) {
-
-                Set<Ray> set = cam.rayFor(width, height, x, height - y - 1);
-                ArrayList<Color> colorList = new ArrayList<Color>();
-                for (Ray r : set) {
-                    Hit pixel = world.hit(r);
-
-                    if (pixel != null) {
-                        colorList.add(pixel.geo.mat.colorFor(pixel, world, 0));
-                    } else {
-
-                        colorList.add(new Color(red, green, blue));
-                    }
-                }
-
-                double averageRed = 0;
-                double averageGreen = 0;
-                double averageBlue = 0;
-
-                for (Color c : colorList) {
-                    averageRed += c.r;
-                    averageGreen += c.g;
-                    averageBlue += c.b;
-                }
-                averageRed /= colorList.size();
-                averageGreen /= colorList.size();
-                averageBlue /= colorList.size();
-
-                color = new Color(averageRed, averageGreen, averageBlue);
-
-                color.x = x;
-                color.y = y;
-                arrayList.add(color);
-            }
-            Platform.runLater(()-> Raytracer.writePixel(arrayList, canvas));
-
+    public void run() {
+        // every session renders into its own image, pixels of a cancelled one are never shown
+        if (progressive != null) {
+            if (sessionCancelled()) return;
+            Tile tile = new Tile(startX, startY, finishX - startX, finishY - startY);
+            float[] rgb = new float[tile.pixels() * 3];
+            progressive.render(tile, pass, rgb);
+            image.set(tile, rgb);
+            return;
+        }
 
+        PixelTracer tracer = new PixelTracer(world, cam, image.width, image.height);
+        int band = tracer.band(finishY - startY);
 
+        for (int y = startY; y < finishY && !sessionCancelled(); y += band) {
+            Tile rows = new Tile(startX, y, finishX - startX, Math.min(band, finishY - y));
+            float[] rgb = new float[rows.pixels() * 3];
+            tracer.trace(rows, rgb);
+            image.set(rows, rgb);
         }
-        System.out.println("Thread finished in " + (System.currentTimeMillis() - start) + "ms");
+    }
 
-        return null;
+    /**
+     * @return true if the session of this tile was cancelled
+     */
+    private boolean sessionCancelled() {
+        return session != null && session.isCancelled();
     }
 }
@@ -1,35 +1,25 @@
 package Raytracer;
 
 import Camera.*;
-import Geometry.*;
+import Image.ArgbFrameBuffer;
 import Image.ImageSaver;
-import Lighting.DirectionalLight;
-import Lighting.Light;
-import Lighting.PointLight;
-import Material.*;
-import MathLib.Normal3;
-import MathLib.Point2;
-import MathLib.Point3;
-import MathLib.Vector3;
 import Sampling.RandomSamplingPattern;
 import Sampling.SamplingPattern;
-import Texture.ImageTexture;
-import Texture.SingleColorTexture;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 /**
  * creates a ray for every pixel to test every object in the world
@@ -48,26 +38,8 @@ public class Raytracer extends Application {
         //-----------------------------------------> RayTracer
 
 
-        ArrayList<Geometry> itemList = new ArrayList<>();
-        ArrayList<Light> lightSources = new ArrayList<>();
         cams = new ArrayList<Camera>();
-
-        lightSources.add(new DirectionalLight(new Color(1, 1, 1), false, new Vector3(-1, -1, -1)));
-        ArrayList<Point2> point2s = RandomSamplingPattern.getRandomPattern(1);
-        /*
-        ArrayList<Geometry> geoList = new ArrayList<Geometry>();
-        geoList.add(new Model("bunny.obj", new LambertMaterial(new SingleColorTexture(new Color(1, 0, 0)))));
-        //itemList.add(new Sphere(new Point3(0, 0, 0), 1, new LambertMaterial(new ImageTexture("earth.jpg"))));
-        Node bunny = new Node(new SingleColorMaterial(new SingleColorTexture(new Color(0,0,0))), new Transform().scale(new Vector3(2, 2, 2)), geoList);
-        itemList.add(bunny);
-        */
-        itemList.add(new Plane(new LambertMaterial(new ImageTexture("ground2.jpg"))));
-        itemList.add(new Sphere(new Point3(.3,0.5,.4), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
-        itemList.add(new Sphere(new Point3(-.05,0.1,.3), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
-        itemList.add(new Sphere(new Point3(.3,0.3,-.3), 0.05, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
-        itemList.add(new Sphere(new Point3(0,.7,0), 0.4, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
-        Camera cam2 = new PerspectiveCamera(new Point3(1, 1, 0), new Vector3(-1, -1, 0), new Vector3(0, 1, 0), Math.PI / 4.0, new SamplingPattern(point2s));
-        World world = new World(itemList, lightSources, new Color(0, 0, 0), new Color(0.1, 0.1, 0.1), 1.0, cam2); //cam null
+        World world = SceneType.GLASS.create(new SamplingPattern(RandomSamplingPattern.getRandomPattern(1)));
 
 
         //-----------------------------------------> JavaFx
@@ -80,18 +52,41 @@ public class Raytracer extends Application {
         final MenuItem saveItem = new MenuItem("Save Image to drive");
         saveItem.setOnAction(e -> ImageSaver.saveImage(canvas));
 
+        final CheckMenuItem progressiveItem = new CheckMenuItem("Progressive rendering");
+        progressiveItem.setSelected(progressive);
+        progressiveItem.setOnAction(e -> {
+            progressive = progressiveItem.isSelected();
+            calculatePixels(world, canvas, canvas.getWidth(), canvas.getHeight());
+        });
+
         final Menu optionsMenu = new Menu("Options");
-        optionsMenu.getItems().add(saveItem);
+        optionsMenu.getItems().addAll(saveItem, progressiveItem);
         menuBar.getMenus().add(optionsMenu);
         Scene scene = new Scene(root, canvas.getWidth(), canvas.heightProperty().add(menuBar.heightProperty()).doubleValue());
         canvas.widthProperty().bind(scene.widthProperty());
         canvas.heightProperty().bind(scene.heightProperty());
-        scene.heightProperty().addListener((v, oldValue, newValue) -> calculatePixels(world,  canvas, canvas.getWidth(), canvas.getHeight()));
-        scene.widthProperty().addListener((v, oldValue, newValue) -> calculatePixels(world,  canvas, canvas.getWidth(), canvas.getHeight()));
+        // resizing cancels the running render at once, the next one starts when resizing paused
+        PauseTransition resizeDelay = new PauseTransition(RESIZE_DELAY);
+        resizeDelay.setOnFinished(e -> calculatePixels(world, canvas, canvas.getWidth(), canvas.getHeight()));
+        scene.heightProperty().addListener((v, oldValue, newValue) -> requestRender(resizeDelay));
+        scene.widthProperty().addListener((v, oldValue, newValue) -> requestRender(resizeDelay));
 
         root.getChildren().addAll(menuBar, canvas);
 
 
+        // copies finished pixels to the canvas once per frame instead of once per rendered row
+        AnimationTimer presenter = new AnimationTimer() {
+            private long last = 0;
+
+            @Override
+            public void handle(long now) {
+                if (now - last < PRESENT_INTERVAL) return;
+                last = now;
+                present(canvas);
+            }
+        };
+        presenter.start();
+
         stage.setTitle("RayTracer");
         stage.setScene(scene);
         stage.show();
@@ -100,54 +95,99 @@ public class Raytracer extends Application {
     }
 
 
-    public static void calculatePixels(World world, Canvas canvas, double w, double h) {
+    /**
+     * renders the world tile by tile on all cores in the background
+     */
+    private static final TileScheduler scheduler = new TileScheduler();
+
+    /**
+     * time without resize events before the window is rendered again
+     */
+    private static final Duration RESIZE_DELAY = Duration.millis(150);
+
+    /**
+     * render in progress or finished last, only accessed on the fx thread
+     */
+    private static RenderSession session;
+
+    /**
+     * image the current render writes to, only accessed on the fx thread
+     */
+    private static ArgbFrameBuffer image;
+
+    /**
+     * shortest time between two copies of the image to the canvas in nanoseconds, at most 60 per second
+     */
+    private static final long PRESENT_INTERVAL = 1_000_000_000L / 60;
+
+    /**
+     * true if coarse previews are shown before the full image, only accessed on the fx thread
+     */
+    private static boolean progressive = true;
+
+    /**
+     * cancels the running render and restarts the delay before the next one
+     * @param resizeDelay delay starting the render when it finishes
+     */
+    private static void requestRender(final PauseTransition resizeDelay) {
+        if (session != null) session.cancel();
+        resizeDelay.playFromStart();
+    }
+
+    /**
+     * cancels the running render, clears the canvas and starts rendering it again in the background
+     * renders progressively unless disabled in the options menu, coarse passes are shown first
+     * the render threads write into a new image that is copied to the canvas by the presenter
+     * has to be called on the fx thread, returns at once
+     * @param world scene
+     * @param canvas canvas showing the pixels
+     * @param w width of canvas
+     * @param h height of canvas
+     * @return session of the new render
+     */
+    public static RenderSession calculatePixels(World world, Canvas canvas, double w, double h) {
         System.out.println("WidthCalc: " + w + ", HeightCalc: " +h);
-        long start = System.currentTimeMillis();
+        if (session != null) session.cancel();
 
         GraphicsContext gc = canvas.getGraphicsContext2D();
         gc.clearRect(0.0, 0.0, w, h);
-        int numberOfThreads = 5;
-        System.out.println("number of threads: " + numberOfThreads);
-        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
-
-        int rows = (int) (h / numberOfThreads);
-        int startY = 0;
-        int finishY = rows;
-
-        Future<?> future = null;
-        for (int i = 0; i < numberOfThreads; i++) {
-            Task<Void> task = new RayTracingThread(world, world.cam, canvas, (int) w, (int) h, startY, (int) h);
-            Thread thread = new Thread(task);
-            future = executor.submit(thread);
-            startY += rows;
-            finishY += rows;
-        }
-
-
-        while (!future.isDone()) {
-            Thread.yield();
+        ArgbFrameBuffer target = new ArgbFrameBuffer((int) w, (int) h);
+        image = target;
+        System.out.println("number of threads: " + scheduler.threads() + ", tile size: " + scheduler.tileSize);
+
+        RenderSession current;
+        if (progressive) {
+            ProgressiveRenderer renderer = new ProgressiveRenderer(world, world.cam, (int) w, (int) h);
+            long start = System.currentTimeMillis();
+            current = scheduler.submit((int) w, (int) h, renderer.passes(),
+                    (tile, pass, tileSession) -> new RayTracingThread(renderer, target, tile, pass, tileSession).run(),
+                    pass -> System.out.println("pass " + (pass + 1) + " of " + renderer.passes() + " finished after " + (System.currentTimeMillis() - start) + "ms"));
+        } else {
+            current = scheduler.submit((int) w, (int) h, (tile, tileSession) -> new RayTracingThread(world, world.cam, target, tile, tileSession).run());
         }
-
-
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-            Thread.yield();
-        }
-        System.out.println("rendering finished in " + (System.currentTimeMillis() - start) + "ms");
-
-
+        session = current;
+        current.finished().whenComplete((result, failure) -> {
+            long time = System.currentTimeMillis() - current.start;
+            if (failure != null) System.out.println("rendering failed after " + time + "ms: " + failure);
+            else if (current.isCancelled()) System.out.println("rendering cancelled after " + time + "ms");
+            else System.out.println("rendering finished in " + time + "ms");
+        });
+        return current;
     }
 
 
-    public static void writePixel(ArrayList<Color> array, Canvas canvas) {
-
-        final GraphicsContext gc = canvas.getGraphicsContext2D();
-        final PixelWriter pixelWriter = gc.getPixelWriter();
-        for (Color color : array) {
-            javafx.scene.paint.Color newColor = new javafx.scene.paint.Color(color.r, color.g, color.b, 1);
-            pixelWriter.setColor(color.x, color.y, newColor);
-        }
-
+    /**
+     * copies the pixels written since the last call from the image of the current render to the canvas
+     * in one bulk write, has to be called on the fx thread
+     * @param canvas canvas showing the image
+     */
+    private static void present(final Canvas canvas) {
+        if (image == null) return;
+        final int[] region = image.takeDirty();
+        if (region == null) return;
+        final PixelWriter pixelWriter = canvas.getGraphicsContext2D().getPixelWriter();
+        pixelWriter.setPixels(region[0], region[1], region[2], region[3], PixelFormat.getIntArgbInstance(),
+                image.pixels, region[1] * image.width + region[0], image.width);
     }
 
 }
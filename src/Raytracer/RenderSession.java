@@ -0,0 +1,88 @@
+package Raytracer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * one render of an image running in the background
+ * cancelling it stops the tiles that did not start yet, tiles in progress stop after their current row
+ * pixels of a cancelled session must not be written anymore
+ */
+public class RenderSession {
+
+    /**
+     * true once the session was cancelled
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * completed when the last tile finished or was skipped
+     */
+    private final CompletableFuture<Void> finished = new CompletableFuture<Void>();
+
+    /**
+     * time the session started in milliseconds
+     */
+    public final long start = System.currentTimeMillis();
+
+    /**
+     * cancels the session, may be called from any thread and more than once
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the session was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if no tile of the session is rendered anymore
+     */
+    public boolean isDone() {
+        return finished.isDone();
+    }
+
+    /**
+     * @return stage completed when no tile of the session is rendered anymore,
+     * completed exceptionally if rendering a tile failed
+     */
+    public CompletionStage<Void> finished() {
+        return finished.minimalCompletionStage();
+    }
+
+    /**
+     * blocks until no tile of the session is rendered anymore
+     * rethrows an exception thrown while rendering a tile
+     */
+    public void await() {
+        try {
+            finished.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * marks the session as finished
+     * @param failure exception thrown while rendering a tile or null
+     */
+    void finish(final Throwable failure) {
+        if (failure == null) finished.complete(null);
+        else finished.completeExceptionally(failure);
+    }
+
+    @Override
+    public String toString() {
+        return "RenderSession{" +
+                "cancelled=" + cancelled +
+                ", done=" + isDone() +
+                '}';
+    }
+}
@@ -0,0 +1,105 @@
+package Raytracer;
+
+import Camera.Camera;
+import Camera.PerspectiveCamera;
+import Geometry.Geometry;
+import Geometry.Model;
+import Geometry.Node;
+import Geometry.Plane;
+import Geometry.Sphere;
+import Geometry.Transform;
+import Lighting.DirectionalLight;
+import Lighting.Light;
+import Material.LambertMaterial;
+import Material.RefractionMaterial;
+import Material.SingleColorMaterial;
+import MathLib.Point3;
+import MathLib.Vector3;
+import Sampling.SamplingPattern;
+import Texture.ImageTexture;
+import Texture.SingleColorTexture;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * scenes available to the window and the headless BatchRenderer
+ */
+public enum SceneType {
+
+    /**
+     * textured ground and four glass spheres, expensive where the spheres refract each other
+     */
+    GLASS,
+
+    /**
+     * stanford bunny scaled by 2 in a node, many triangles
+     */
+    BUNNY,
+
+    /**
+     * sphere with an image texture of the earth
+     */
+    EARTH;
+
+    /**
+     * directory of the wavefront objects used by Model
+     */
+    private static final String OBJECTS = "src/Assets/WaveFrontObjects/";
+
+    /**
+     * directory of the images used by ImageTexture
+     */
+    private static final String TEXTURES = "src/Assets/Textures/";
+
+    /**
+     * @return files the scene is loaded from, besides its code
+     */
+    public List<File> assets() {
+        switch (this) {
+            case BUNNY:
+                return Arrays.asList(new File(OBJECTS + "bunny.obj"));
+            case EARTH:
+                return Arrays.asList(new File(TEXTURES + "earth.jpg"));
+            default:
+                return Arrays.asList(new File(TEXTURES + "ground2.jpg"));
+        }
+    }
+
+    /**
+     * creates the world of this scene with its own camera
+     * throws IllegalArgumentException if pattern is null
+     * @param pattern sampling pattern of camera
+     * @return world
+     */
+    public World create(final SamplingPattern pattern) {
+        if (pattern == null) throw new IllegalArgumentException();
+        ArrayList<Geometry> itemList = new ArrayList<Geometry>();
+        ArrayList<Light> lightSources = new ArrayList<Light>();
+        lightSources.add(new DirectionalLight(new Color(1, 1, 1), false, new Vector3(-1, -1, -1)));
+        Camera cam;
+
+        switch (this) {
+            case BUNNY:
+                ArrayList<Geometry> geoList = new ArrayList<Geometry>();
+                geoList.add(new Model("bunny.obj", new LambertMaterial(new SingleColorTexture(new Color(1, 0, 0)))));
+                itemList.add(new Node(new SingleColorMaterial(new SingleColorTexture(new Color(0, 0, 0))), new Transform().scale(new Vector3(2, 2, 2)), geoList));
+                cam = new PerspectiveCamera(new Point3(0, 0.2, 0.8), new Vector3(0, 0, -1), new Vector3(0, 1, 0), Math.PI / 4.0, pattern);
+                break;
+            case EARTH:
+                itemList.add(new Sphere(new Point3(0, 0, 0), 1, new LambertMaterial(new ImageTexture("earth.jpg"))));
+                cam = new PerspectiveCamera(new Point3(0, 0, 4), new Vector3(0, 0, -1), new Vector3(0, 1, 0), Math.PI / 4.0, pattern);
+                break;
+            default:
+                itemList.add(new Plane(new LambertMaterial(new ImageTexture("ground2.jpg"))));
+                itemList.add(new Sphere(new Point3(.3, 0.5, .4), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+                itemList.add(new Sphere(new Point3(-.05, 0.1, .3), 0.1, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+                itemList.add(new Sphere(new Point3(.3, 0.3, -.3), 0.05, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+                itemList.add(new Sphere(new Point3(0, .7, 0), 0.4, new RefractionMaterial(new SingleColorTexture(new Color(.5, .5, .5)), RefractionMaterial.RefractionIndex.GLASS)));
+                cam = new PerspectiveCamera(new Point3(1, 1, 0), new Vector3(-1, -1, 0), new Vector3(0, 1, 0), Math.PI / 4.0, pattern);
+        }
+        return new World(itemList, lightSources, new Color(0, 0, 0), new Color(0.1, 0.1, 0.1), 1.0, cam);
+    }
+}
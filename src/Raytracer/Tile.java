@@ -0,0 +1,93 @@
+package Raytracer;
+
+import java.util.Objects;
+
+/**
+ * rectangular block of pixels rendered as one unit of work
+ * rows are counted from the top of the canvas like in RayTracingThread
+ */
+public class Tile {
+
+    /**
+     * first column of tile
+     */
+    public final int x;
+
+    /**
+     * first row of tile
+     */
+    public final int y;
+
+    /**
+     * amount of columns
+     */
+    public final int width;
+
+    /**
+     * amount of rows
+     */
+    public final int height;
+
+    /**
+     * constructor of Tile
+     * throws IllegalArgumentException if x or y is negative or the tile is empty
+     * @param x first column
+     * @param y first row
+     * @param width amount of columns
+     * @param height amount of rows
+     */
+    public Tile(final int x, final int y, final int width, final int height) {
+        if (x < 0 || y < 0 || width < 1 || height < 1) throw new IllegalArgumentException();
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return column behind the last column of tile
+     */
+    public int endX() {
+        return x + width;
+    }
+
+    /**
+     * @return row behind the last row of tile
+     */
+    public int endY() {
+        return y + height;
+    }
+
+    /**
+     * @return amount of pixels
+     */
+    public int pixels() {
+        return width * height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Tile tile = (Tile) o;
+        return x == tile.x &&
+                y == tile.y &&
+                width == tile.width &&
+                height == tile.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return "Tile{" +
+                "x=" + x +
+                ", y=" + y +
+                ", width=" + width +
+                ", height=" + height +
+                '}';
+    }
+}
@@ -0,0 +1,234 @@
+package Raytracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * renders an image as disjoint square tiles on a work stealing ForkJoinPool
+ * the list of tiles is split in halves until single tiles remain, idle threads steal
+ * the other halves, so expensive regions like glass spheres do not leave threads waiting
+ * submit returns a RenderSession at once, render waits until every tile is finished
+ * a session may render the image in several passes, e.g. coarse previews before the full image
+ */
+public class TileScheduler {
+
+    /**
+     * edge length of tiles in pixels, a multiple of common packet sizes
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * pool rendering all tiles
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * edge length of tiles in pixels
+     */
+    public final int tileSize;
+
+    /**
+     * constructor for one thread per available core and DEFAULT_TILE_SIZE
+     */
+    public TileScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * constructor of TileScheduler
+     * throws IllegalArgumentException if threads or tileSize is smaller than 1
+     * @param threads amount of render threads
+     * @param tileSize edge length of tiles in pixels
+     */
+    public TileScheduler(final int threads, final int tileSize) {
+        if (threads < 1 || tileSize < 1) throw new IllegalArgumentException();
+        this.pool = new ForkJoinPool(threads);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * @return amount of render threads
+     */
+    public int threads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * cuts an image into disjoint tiles covering every pixel once
+     * tiles at the right and bottom border are cut to the image
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @return tiles row by row
+     */
+    public List<Tile> tiles(final int width, final int height) {
+        return tiles(width, height, tileSize);
+    }
+
+    /**
+     * cuts an image into disjoint tiles covering every pixel once
+     * tiles at the right and bottom border are cut to the image
+     * throws IllegalArgumentException if tileSize is smaller than 1
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param tileSize edge length of tiles in pixels
+     * @return tiles row by row
+     */
+    public static List<Tile> tiles(final int width, final int height, final int tileSize) {
+        if (tileSize < 1) throw new IllegalArgumentException();
+        final ArrayList<Tile> tiles = new ArrayList<Tile>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                tiles.add(new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * renders all tiles of an image and waits until every one is finished
+     * an exception thrown by the renderer is rethrown by render
+     * throws IllegalArgumentException if renderer is null
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param renderer renders one tile, called from the threads of the pool
+     */
+    public void render(final int width, final int height, final Consumer<Tile> renderer) {
+        if (renderer == null) throw new IllegalArgumentException();
+        submit(width, height, (tile, session) -> renderer.accept(tile)).await();
+    }
+
+    /**
+     * starts rendering all tiles of an image in the background
+     * the session is checked before every tile, tiles of a cancelled session are skipped
+     * throws IllegalArgumentException if renderer is null
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param renderer renders one tile of the session, called from the threads of the pool
+     * @return session to cancel or wait for the render
+     */
+    public RenderSession submit(final int width, final int height, final BiConsumer<Tile, RenderSession> renderer) {
+        if (renderer == null) throw new IllegalArgumentException();
+        return submit(width, height, 1, (tile, pass, session) -> renderer.accept(tile, session), pass -> { });
+    }
+
+    /**
+     * starts rendering all tiles of an image in several passes in the background
+     * a pass starts when every tile of the previous one is finished, so a pass sees all pixels of the passes before
+     * the session is checked before every tile, tiles and passes of a cancelled session are skipped
+     * throws IllegalArgumentException if passes is smaller than 1 or renderer or passFinished is null
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param passes amount of passes
+     * @param renderer renders one tile in one pass of the session, called from the threads of the pool
+     * @param passFinished called with the index of every pass that was finished without being cancelled
+     * @return session to cancel or wait for the render
+     */
+    public RenderSession submit(final int width, final int height, final int passes, final PassRenderer renderer, final IntConsumer passFinished) {
+        if (passes < 1 || renderer == null || passFinished == null) throw new IllegalArgumentException();
+        return submit(tiles(width, height), passes, renderer, passFinished);
+    }
+
+    /**
+     * starts rendering some tiles in the background, e.g. the tiles a RenderWorker got from its coordinator so far
+     * the session is checked before every tile, tiles of a cancelled session are skipped
+     * throws IllegalArgumentException if tiles or renderer is null
+     * @param tiles tiles to render
+     * @param renderer renders one tile of the session, called from the threads of the pool
+     * @return session to cancel or wait for the render
+     */
+    public RenderSession submit(final List<Tile> tiles, final BiConsumer<Tile, RenderSession> renderer) {
+        if (tiles == null || renderer == null) throw new IllegalArgumentException();
+        return submit(new ArrayList<Tile>(tiles), 1, (tile, pass, session) -> renderer.accept(tile, session), pass -> { });
+    }
+
+    /**
+     * starts rendering a list of tiles in passes, the list must not change anymore
+     */
+    private RenderSession submit(final List<Tile> tiles, final int passes, final PassRenderer renderer, final IntConsumer passFinished) {
+        final RenderSession session = new RenderSession();
+        if (tiles.isEmpty()) {
+            session.finish(null);
+            return session;
+        }
+        pool.execute(() -> {
+            try {
+                for (int pass = 0; pass < passes && !session.isCancelled(); pass++) {
+                    new TileTask(tiles, 0, tiles.size(), pass, renderer, session).invoke();
+                    if (!session.isCancelled()) passFinished.accept(pass);
+                }
+                session.finish(null);
+            } catch (Throwable e) {
+                session.finish(e);
+            }
+        });
+        return session;
+    }
+
+    /**
+     * renders one tile in one pass of a session
+     */
+    public interface PassRenderer {
+
+        /**
+         * @param tile pixels to render
+         * @param pass index of pass
+         * @param session session the tile belongs to
+         */
+        void render(Tile tile, int pass, RenderSession session);
+    }
+
+    /**
+     * renders a range of tiles, splits it in halves as long as it holds more than one tile
+     */
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Tile> tiles;
+        private final int from;
+        private final int to;
+        private final int pass;
+        private final PassRenderer renderer;
+        private final RenderSession session;
+
+        /**
+         * @param tiles all tiles of image
+         * @param from first tile of range
+         * @param to tile behind the range
+         * @param pass index of pass
+         * @param renderer renders one tile
+         * @param session session the tiles belong to
+         */
+        TileTask(final List<Tile> tiles, final int from, final int to, final int pass, final PassRenderer renderer, final RenderSession session) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.pass = pass;
+            this.renderer = renderer;
+            this.session = session;
+        }
+
+        @Override
+        protected void compute() {
+            if (session.isCancelled()) return;
+            if (to - from == 1) {
+                renderer.render(tiles.get(from), pass, session);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(tiles, from, middle, pass, renderer, session), new TileTask(tiles, middle, to, pass, renderer, session));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TileScheduler{" +
+                "threads=" + threads() +
+                ", tileSize=" + tileSize +
+                '}';
+    }
+}
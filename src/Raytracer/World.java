@@ -1,10 +1,18 @@
 package Raytracer;
 
+import Acceleration.Accelerator;
+import Acceleration.AcceleratorType;
+import Acceleration.BVH;
 import Camera.Camera;
 import Geometry.Geometry;
+import Geometry.Model;
+import Geometry.Node;
 import Lighting.Light;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * worlds class includes every object
@@ -42,6 +50,47 @@ public class World {
      */
     public Camera cam;
 
+    /**
+     * accelerator over every bounded geometry of itemList
+     */
+    private Accelerator accelerator;
+
+    /**
+     * type of accelerator built over itemList
+     */
+    private AcceleratorType acceleratorType = AcceleratorType.BVH;
+
+    /**
+     * true if the bounding volume hierarchy uses four wide traversal
+     */
+    private boolean wideBVH = false;
+
+    /**
+     * refit rebuilds the hierarchy once its cost grew by this factor
+     */
+    private double refitThreshold = 1.5;
+
+    /**
+     * edge length of pixel tiles traced as one ray packet, 0 traces every ray on its own
+     */
+    private int packetSize = 0;
+
+    /**
+     * order the pixels of a tile are traced in if rays are traced on their own
+     */
+    private PixelOrder pixelOrder = PixelOrder.SCANLINE;
+
+    /**
+     * geometries without finite bounds like planes, tested one by one
+     */
+    private final ArrayList<Geometry> unboundedItems = new ArrayList<Geometry>();
+
+    /**
+     * scratch record of every render thread, the Hit is created before hit returns
+     * so reflected and refracted rays traced afterwards can reuse it
+     */
+    private final ThreadLocal<HitRecord> records = ThreadLocal.withInitial(HitRecord::new);
+
 
     /**
      * constructor of world object
@@ -61,35 +110,220 @@ public class World {
         this.ambientLight = ambientLight;
         this.refractiveIndex = refractiveIndex;
         this.cam = cam;
+        build();
+    }
+
+    /**
+     * builds the accelerator over itemList
+     * geometries without finite bounds are kept in a separate list
+     * has to be called again after itemList was changed
+     */
+    public void build(){
+        ArrayList<Geometry> bounded = new ArrayList<Geometry>();
+        unboundedItems.clear();
+        for (Geometry geometry : itemList){
+            if(geometry.bounds().isUnbounded()) unboundedItems.add(geometry);
+            else bounded.add(geometry);
+        }
+        long start = System.currentTimeMillis();
+        accelerator = acceleratorType.create(bounded);
+        if(accelerator instanceof BVH){
+            BVH bvh = (BVH) accelerator;
+            bvh.setWide(wideBVH);
+            System.out.println("BVH over " + bvh.size() + " geometries built in " + (System.currentTimeMillis() - start) + "ms"
+                    + " (" + String.format("%.1f", bvh.buildMillisPerMillionPrimitives()) + "ms per million primitives)");
+        } else {
+            System.out.println(accelerator + " built in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * selects the accelerator over itemList and rebuilds it
+     * throws IllegalArgumentException if type is null
+     * @param type accelerator type
+     */
+    public void setAccelerator(final AcceleratorType type){
+        if(type == null) throw new IllegalArgumentException();
+        this.acceleratorType = type;
+        build();
+    }
+
+    /**
+     * @return accelerator over itemList
+     */
+    public Accelerator getAccelerator(){
+        return accelerator;
+    }
+
+    /**
+     * prints node count, memory and average tests per ray of the accelerator of this world
+     * and of every mesh used by a Model in it
+     */
+    public void printStatistics(){
+        System.out.println("world " + accelerator.dump());
+        Set<Accelerator> printed = Collections.newSetFromMap(new IdentityHashMap<Accelerator, Boolean>());
+        printMeshStatistics(itemList, printed);
+    }
+
+    /**
+     * prints statistics of all meshes within geometries, nodes are searched recursively
+     * @param geometries geometries to search
+     * @param printed accelerators printed already
+     */
+    private static void printMeshStatistics(final ArrayList<Geometry> geometries, final Set<Accelerator> printed){
+        for (Geometry geometry : geometries){
+            if(geometry instanceof Model && printed.add(((Model) geometry).mesh.accelerator)){
+                System.out.println("mesh " + ((Model) geometry).mesh.accelerator.dump());
+            } else if(geometry instanceof Node){
+                printMeshStatistics(((Node) geometry).items, printed);
+            }
+        }
+    }
+
+    /**
+     * updates the accelerator after nodes were moved with Node.setTransform
+     * moved nodes may be nested in other nodes, the bounds of every node above them are recalculated
+     * a bounding volume hierarchy only refits the bounds above moved nodes and is rebuilt
+     * if its cost grew beyond the refit threshold, other accelerators are always rebuilt
+     * has to be called between frames, never while rendering
+     */
+    public void refit(){
+        ArrayList<Geometry> moved = new ArrayList<Geometry>();
+        for (Geometry geometry : itemList){
+            if(geometry instanceof Node && ((Node) geometry).movedWithin()) moved.add(geometry);
+        }
+        // cleared afterwards, a node nested in several top level nodes has to be found below each of them
+        for (Geometry geometry : moved){
+            ((Node) geometry).clearMoved();
+        }
+        if(moved.isEmpty()) return;
+        if(!(accelerator instanceof BVH)){
+            build();
+            return;
+        }
+        BVH bvh = (BVH) accelerator;
+        bvh.refit(moved);
+        if(bvh.costRatio() > refitThreshold){
+            System.out.println("BVH cost grew by " + String.format("%.2f", bvh.costRatio()) + " after refit, rebuilding");
+            build();
+        }
+    }
+
+    /**
+     * sets the factor the cost of the hierarchy may grow by refitting before it is rebuilt
+     * throws IllegalArgumentException if threshold is smaller than 1
+     * @param refitThreshold factor of cost after building, Double.POSITIVE_INFINITY to never rebuild
+     */
+    public void setRefitThreshold(final double refitThreshold){
+        if(refitThreshold < 1) throw new IllegalArgumentException();
+        this.refitThreshold = refitThreshold;
+    }
+
+    /**
+     * selects binary or four wide traversal of the bounding volume hierarchy
+     * four wide traversal tests all children of a node at once with the vector api if available
+     * ignored by other accelerators
+     * @param wide true for four wide traversal
+     */
+    public void setWideBVH(final boolean wide){
+        this.wideBVH = wide;
+        if(accelerator instanceof BVH) ((BVH) accelerator).setWide(wide);
+    }
+
+    /**
+     * selects packet tracing of primary rays
+     * rays of square pixel tiles are traced as one packet through the bounding volume hierarchy,
+     * 4 or 8 pay off for scenes with large objects on screen, packets that diverge fall back to single rays
+     * throws IllegalArgumentException if packetSize is negative
+     * @param packetSize edge length of tiles in pixels, 0 or 1 traces every ray on its own
+     */
+    public void setPacketSize(final int packetSize){
+        if(packetSize < 0) throw new IllegalArgumentException();
+        this.packetSize = packetSize;
+    }
+
+    /**
+     * @return edge length of pixel tiles traced as one ray packet, 0 or 1 if packets are not used
+     */
+    public int getPacketSize(){
+        return packetSize;
+    }
+
+    /**
+     * selects the order the pixels of a tile are traced in
+     * space filling curves keep neighbouring rays neighbours, so they find nodes, triangles and texels still cached,
+     * ignored by packet tracing, packets are square tiles already
+     * throws IllegalArgumentException if pixelOrder is null
+     * @param pixelOrder order of pixels within a tile
+     */
+    public void setPixelOrder(final PixelOrder pixelOrder){
+        if(pixelOrder == null) throw new IllegalArgumentException();
+        this.pixelOrder = pixelOrder;
+    }
+
+    /**
+     * @return order the pixels of a tile are traced in
+     */
+    public PixelOrder getPixelOrder(){
+        return pixelOrder;
     }
 
     /**
      * calculation of Raytracer hit points
-     * runs ray against every object in scene
-     * returns hit point with lowest positive t if more than one t is given
+     * runs ray through the accelerator and against every unbounded object
+     * intersections are kept in one HitRecord, only the closest one becomes a Hit
+     * returns hit point with lowest t if more than one t is given
      * returns null if no hit point is found
      *  @param r outgoing ray
      */
     public final Hit hit(final Ray r){
-        ArrayList<Hit> arrayList = new ArrayList<Hit>();
-        Hit hit;
-        for (Geometry geometry : itemList){
-            hit = geometry.hit(r);
-            if(hit != null){
-                arrayList.add(hit);
-            }
+        final HitRecord rec = records.get();
+        boolean found = accelerator.intersect(r, 0, Double.MAX_VALUE, rec);
+        for (Geometry geometry : unboundedItems){
+            if(geometry.intersect(r, 0, found ? rec.t : Double.MAX_VALUE, rec)) found = true;
         }
+        return found ? rec.toHit(r) : null;
+    }
 
-        double max = Double.MAX_VALUE;
-        Hit closestHitPoint = null;
-        for(Hit hitPoint : arrayList){
-            if(hitPoint.t < max){
-                max = hitPoint.t;
-                closestHitPoint = hitPoint;
+    /**
+     * closest hits of a packet of coherent rays, usually the primary rays of a pixel tile
+     * the accelerator visits its nodes once for the whole packet, unbounded geometries are tested per ray
+     * @param packet rays to trace, hits are kept in packet.hits
+     */
+    public final void hit(final RayPacket packet){
+        accelerator.hit(packet);
+        final HitRecord rec = packet.record;
+        for (Geometry geometry : unboundedItems){
+            for (int i = 0; i < packet.size(); i++){
+                if(geometry.intersect(packet.rays[i], 0, packet.tMax(i), rec)) packet.offer(i, rec.toHit(packet.rays[i]));
             }
         }
-        //System.out.println(closestHitPoint);
-        return closestHitPoint;
+    }
+
+    /**
+     * color a primary ray shows
+     * @param pixel hit of a ray, may be null
+     * @return color of hit material or background color
+     */
+    public final Color colorOf(final Hit pixel){
+        if(pixel != null) return pixel.geo.mat.colorFor(pixel, this, 0);
+        return backgroundColor;
+    }
+
+    /**
+     * any hit query for shadow rays
+     * stops at the first geometry hit before tMax instead of searching the closest one
+     * unbounded geometries are only tested if the accelerator found nothing
+     * @param r ray towards light source
+     * @param tMax distance of light source, Double.POSITIVE_INFINITY for directional lights
+     * @return true if anything lies between origin of ray and tMax
+     */
+    public final boolean occluded(final Ray r, final double tMax){
+        if(accelerator.occluded(r, tMax)) return true;
+        for (Geometry geometry : unboundedItems){
+            if(geometry.occludes(r, tMax)) return true;
+        }
+        return false;
     }
 
     /**